@@ -20,6 +20,7 @@ import java.io.Closeable;
 
 import javax.ws.rs.Path;
 
+import org.jclouds.googlecloudstorage.features.BatchApi;
 import org.jclouds.googlecloudstorage.features.BucketAccessControlsApi;
 import org.jclouds.googlecloudstorage.features.BucketApi;
 import org.jclouds.googlecloudstorage.features.DefaultObjectAccessControlsApi;
@@ -74,4 +75,10 @@ public interface GoogleCloudStorageApi extends Closeable {
     */
    @Delegate
    ResumableUploadApi getResumableUploadApi();
+
+   /**
+    * Provides access to batches of requests
+    */
+   @Delegate
+   BatchApi getBatchApi();
 }
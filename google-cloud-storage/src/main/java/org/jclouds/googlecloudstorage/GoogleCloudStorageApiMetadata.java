@@ -17,8 +17,40 @@
 package org.jclouds.googlecloudstorage;
 
 import static org.jclouds.Constants.PROPERTY_SESSION_INTERVAL;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.CONTENT_CACHE_DIRECTORY;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.CONTENT_CACHE_MAX_BYTES;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.CRC32C_PARALLEL_DEGREE;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.CRC32C_SEGMENT_SIZE;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.CRC32C_VALIDATION;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.DOWNLOAD_PARALLEL_DEGREE;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.DOWNLOAD_RANGE_ATTEMPTS;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.DOWNLOAD_RANGE_SIZE;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.EXISTENCE_INDEX_FALSE_POSITIVE_RATE;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.EXISTENCE_INDEX_TTL;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.GET_BLOB_FULL_METADATA;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.LIST_PARALLELISM;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.LIST_PREFETCH_DEPTH;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.LIST_RANGE_BUFFER_PAGES;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.METADATA_CACHE_REVALIDATE_AFTER;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.METADATA_CACHE_SIZE;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.METADATA_CACHE_TTL;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.MPU_CLEANUP_PARALLEL_DEGREE;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.MPU_MAX_BUFFERED_BYTES;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.MPU_PARALLEL_DEGREE;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.MPU_PART_SIZE;
 import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.OPERATION_COMPLETE_INTERVAL;
 import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.OPERATION_COMPLETE_TIMEOUT;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.READ_AHEAD_MAX_BYTES;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.READ_AHEAD_MIN_BYTES;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.REMOVE_BLOBS_ATTEMPTS;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.REMOVE_BLOBS_PARALLEL_DEGREE;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.RESUMABLE_ATTEMPTS;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.RESUMABLE_CHUNK_SIZE;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.REWRITE_ATTEMPTS;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.REWRITE_MAX_BYTES_PER_CALL;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.REWRITE_PARALLEL_DEGREE;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.SYNC_MAX_BYTES_PER_SECOND;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.SYNC_PARALLEL_DEGREE;
 import static org.jclouds.oauth.v2.config.OAuthProperties.AUDIENCE;
 import static org.jclouds.oauth.v2.config.OAuthProperties.JWS_ALG;
 import static org.jclouds.reflect.Reflection2.typeToken;
@@ -60,6 +92,38 @@ public class GoogleCloudStorageApiMetadata extends BaseHttpApiMetadata<GoogleClo
       properties.put(PROPERTY_SESSION_INTERVAL, 3600);
       properties.put(OPERATION_COMPLETE_INTERVAL, 2000);
       properties.put(OPERATION_COMPLETE_TIMEOUT, 600000);
+      properties.put(MPU_PART_SIZE, 32L * 1024L * 1024L);
+      properties.put(MPU_PARALLEL_DEGREE, 4);
+      properties.put(MPU_MAX_BUFFERED_BYTES, 128L * 1024L * 1024L);
+      properties.put(MPU_CLEANUP_PARALLEL_DEGREE, 8);
+      properties.put(LIST_PREFETCH_DEPTH, 1);
+      properties.put(LIST_PARALLELISM, 1);
+      properties.put(LIST_RANGE_BUFFER_PAGES, 8);
+      properties.put(GET_BLOB_FULL_METADATA, false);
+      properties.put(DOWNLOAD_RANGE_SIZE, 32L * 1024L * 1024L);
+      properties.put(DOWNLOAD_PARALLEL_DEGREE, 4);
+      properties.put(DOWNLOAD_RANGE_ATTEMPTS, 3);
+      properties.put(RESUMABLE_CHUNK_SIZE, 8 * 1024 * 1024);
+      properties.put(RESUMABLE_ATTEMPTS, 5);
+      properties.put(REMOVE_BLOBS_PARALLEL_DEGREE, 8);
+      properties.put(REMOVE_BLOBS_ATTEMPTS, 3);
+      properties.put(REWRITE_MAX_BYTES_PER_CALL, 0L);
+      properties.put(REWRITE_PARALLEL_DEGREE, 8);
+      properties.put(REWRITE_ATTEMPTS, 5);
+      properties.put(SYNC_PARALLEL_DEGREE, 8);
+      properties.put(SYNC_MAX_BYTES_PER_SECOND, 0L);
+      properties.put(METADATA_CACHE_SIZE, 0L);
+      properties.put(METADATA_CACHE_TTL, 60000L);
+      properties.put(METADATA_CACHE_REVALIDATE_AFTER, 5000L);
+      properties.put(EXISTENCE_INDEX_FALSE_POSITIVE_RATE, 0.01);
+      properties.put(EXISTENCE_INDEX_TTL, 600000L);
+      properties.put(CONTENT_CACHE_DIRECTORY, "");
+      properties.put(CONTENT_CACHE_MAX_BYTES, 10L * 1024L * 1024L * 1024L);
+      properties.put(READ_AHEAD_MIN_BYTES, 256L * 1024L);
+      properties.put(READ_AHEAD_MAX_BYTES, 16L * 1024L * 1024L);
+      properties.put(CRC32C_VALIDATION, true);
+      properties.put(CRC32C_SEGMENT_SIZE, 64L * 1024L * 1024L);
+      properties.put(CRC32C_PARALLEL_DEGREE, 4);
       return properties;
    }
 
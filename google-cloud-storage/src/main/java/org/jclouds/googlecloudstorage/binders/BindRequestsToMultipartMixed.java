@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.binders;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.Map;
+
+import org.jclouds.googlecloudstorage.features.BatchApi;
+import org.jclouds.http.HttpRequest;
+import org.jclouds.io.ContentMetadata;
+import org.jclouds.io.Payload;
+import org.jclouds.io.payloads.ByteArrayPayload;
+import org.jclouds.rest.Binder;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+
+/**
+ * Binds a list of requests as the parts of a {@code multipart/mixed} batch body. Each part is an
+ * {@code application/http} request line, headers and body; its {@code Content-ID} is its position, counting from one.
+ *
+ * @see <a href="https://cloud.google.com/storage/docs/json_api/v1/how-tos/batch" />
+ */
+public class BindRequestsToMultipartMixed implements Binder {
+
+   private static final SecureRandom RANDOM = new SecureRandom();
+
+   @Override
+   public <R extends HttpRequest> R bindToRequest(R request, Object input) {
+      checkArgument(input instanceof List, "this binder is only valid for a list of requests");
+      @SuppressWarnings("unchecked")
+      List<? extends HttpRequest> requests = (List<? extends HttpRequest>) input;
+      checkArgument(!requests.isEmpty() && requests.size() <= BatchApi.MAX_REQUESTS,
+            "a batch holds 1 to %s requests, was: %s", BatchApi.MAX_REQUESTS, requests.size());
+
+      String boundary = boundary();
+      ByteArrayOutputStream body = new ByteArrayOutputStream();
+      try {
+         for (int i = 0; i < requests.size(); i++) {
+            HttpRequest part = requests.get(i);
+            write(body, "--" + boundary + "\r\n");
+            write(body, "Content-Type: application/http\r\n");
+            write(body, "Content-ID: <" + (i + 1) + ">\r\n\r\n");
+            writeRequest(body, part);
+            write(body, "\r\n");
+         }
+         write(body, "--" + boundary + "--\r\n");
+      } catch (IOException ioe) {
+         throw Throwables.propagate(ioe);
+      }
+
+      Payload payload = new BatchPayload(body.toByteArray(), requests);
+      payload.getContentMetadata().setContentType("multipart/mixed; boundary=" + boundary);
+      request.setPayload(payload);
+      return request;
+   }
+
+   /** The encoded batch, keeping the requests it carries so they need not be parsed back out of the body. */
+   public static final class BatchPayload extends ByteArrayPayload {
+      private final List<HttpRequest> requests;
+
+      BatchPayload(byte[] content, List<? extends HttpRequest> requests) {
+         super(content);
+         this.requests = ImmutableList.copyOf(requests);
+      }
+
+      public List<HttpRequest> getRequests() {
+         return requests;
+      }
+   }
+
+   private static void writeRequest(ByteArrayOutputStream out, HttpRequest request) throws IOException {
+      String path = request.getEndpoint().getRawPath();
+      String query = request.getEndpoint().getRawQuery();
+      write(out, request.getMethod() + " " + (query == null ? path : path + "?" + query) + " HTTP/1.1\r\n");
+      for (Map.Entry<String, String> header : request.getHeaders().entries()) {
+         write(out, header.getKey() + ": " + header.getValue() + "\r\n");
+      }
+      Payload payload = request.getPayload();
+      if (payload == null) {
+         write(out, "\r\n");
+         return;
+      }
+      byte[] content;
+      InputStream in = payload.openStream();
+      try {
+         content = ByteStreams.toByteArray(in);
+      } finally {
+         Closeables.closeQuietly(in);
+      }
+      ContentMetadata metadata = payload.getContentMetadata();
+      if (metadata.getContentType() != null) {
+         write(out, "Content-Type: " + metadata.getContentType() + "\r\n");
+      }
+      write(out, "Content-Length: " + content.length + "\r\n\r\n");
+      out.write(content);
+   }
+
+   private static void write(ByteArrayOutputStream out, String text) throws IOException {
+      out.write(text.getBytes(UTF_8));
+   }
+
+   private static String boundary() {
+      byte[] random = new byte[12];
+      RANDOM.nextBytes(random);
+      return "batch_" + BaseEncoding.base16().lowerCase().encode(random);
+   }
+}
@@ -17,15 +17,26 @@
 package org.jclouds.googlecloudstorage.blobstore;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.io.BaseEncoding.base64;
 import static org.jclouds.googlecloudstorage.domain.DomainResourceReferences.ObjectRole.READER;
-
-import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.CRC32C_VALIDATION;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.GET_BLOB_FULL_METADATA;
+import static org.jclouds.googlecloudstorage.util.StorageRequests.encodeName;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 
 import org.jclouds.blobstore.BlobStoreContext;
 import org.jclouds.blobstore.domain.Blob;
@@ -46,7 +57,6 @@ import org.jclouds.blobstore.options.GetOptions;
 import org.jclouds.blobstore.options.ListContainerOptions;
 import org.jclouds.blobstore.options.PutOptions;
 import org.jclouds.blobstore.options.CopyOptions;
-import org.jclouds.blobstore.strategy.internal.FetchBlobMetadata;
 import org.jclouds.blobstore.util.BlobUtils;
 import org.jclouds.collect.Memoized;
 import org.jclouds.domain.Location;
@@ -56,64 +66,142 @@ import org.jclouds.googlecloudstorage.GoogleCloudStorageApi;
 import org.jclouds.googlecloudstorage.blobstore.functions.BlobMetadataToObjectTemplate;
 import org.jclouds.googlecloudstorage.blobstore.functions.BlobStoreListContainerOptionsToListObjectOptions;
 import org.jclouds.googlecloudstorage.blobstore.functions.BucketToStorageMetadata;
+import org.jclouds.googlecloudstorage.blobstore.functions.MediaResponseToBlobMetadata;
 import org.jclouds.googlecloudstorage.blobstore.functions.ObjectListToStorageMetadata;
 import org.jclouds.googlecloudstorage.blobstore.functions.ObjectToBlobMetadata;
+import org.jclouds.googlecloudstorage.blobstore.strategy.internal.BatchBlobRemover;
+import org.jclouds.googlecloudstorage.blobstore.strategy.internal.ChannelDownloader;
+import org.jclouds.googlecloudstorage.blobstore.strategy.internal.ComposeMultipartUploadStrategy;
+import org.jclouds.googlecloudstorage.blobstore.strategy.internal.ContainerClearer;
+import org.jclouds.googlecloudstorage.blobstore.strategy.internal.ContentCache;
+import org.jclouds.googlecloudstorage.blobstore.strategy.internal.ExistenceIndex;
+import org.jclouds.googlecloudstorage.blobstore.strategy.internal.MultipartComponentCleaner;
+import org.jclouds.googlecloudstorage.blobstore.strategy.internal.ObjectMetadataCache;
+import org.jclouds.googlecloudstorage.blobstore.strategy.internal.ObjectRewriter;
+import org.jclouds.googlecloudstorage.blobstore.strategy.internal.ParallelMultipartUploadStrategy;
+import org.jclouds.googlecloudstorage.blobstore.strategy.internal.ParallelRangedDownloader;
+import org.jclouds.googlecloudstorage.blobstore.strategy.internal.PartitionedObjectLister;
+import org.jclouds.googlecloudstorage.blobstore.strategy.internal.PrefetchingObjectLister;
+import org.jclouds.googlecloudstorage.blobstore.strategy.internal.ResumableUploader;
 import org.jclouds.googlecloudstorage.domain.Bucket;
+import org.jclouds.googlecloudstorage.domain.CopyObjectsResult;
 import org.jclouds.googlecloudstorage.domain.DomainResourceReferences;
+import org.jclouds.googlecloudstorage.domain.DomainResourceReferences.Projection;
 import org.jclouds.googlecloudstorage.domain.GoogleCloudStorageObject;
 import org.jclouds.googlecloudstorage.domain.ListPageWithPrefixes;
 import org.jclouds.googlecloudstorage.domain.ObjectAccessControls;
+import org.jclouds.googlecloudstorage.domain.RemoveBlobsResult;
 import org.jclouds.googlecloudstorage.domain.templates.BucketTemplate;
-import org.jclouds.googlecloudstorage.domain.templates.ComposeObjectTemplate;
 import org.jclouds.googlecloudstorage.domain.templates.ObjectAccessControlsTemplate;
 import org.jclouds.googlecloudstorage.domain.templates.ObjectTemplate;
+import org.jclouds.googlecloudstorage.options.DeleteObjectOptions;
 import org.jclouds.googlecloudstorage.options.InsertObjectOptions;
 import org.jclouds.googlecloudstorage.options.ListObjectOptions;
+import org.jclouds.googlecloudstorage.util.Crc32c;
+import org.jclouds.googlecloudstorage.util.Crc32cPayload;
+import org.jclouds.googlecloudstorage.util.Crc32cVerifyingInputStream;
+import org.jclouds.http.HttpResponse;
 import org.jclouds.http.HttpResponseException;
 import org.jclouds.io.ContentMetadata;
 import org.jclouds.io.Payload;
 import org.jclouds.io.PayloadSlicer;
+import org.jclouds.io.Payloads;
+import org.jclouds.javax.annotation.Nullable;
 
-import com.google.common.base.Charsets;
 import com.google.common.base.Function;
 import com.google.common.base.Supplier;
 import com.google.common.base.Throwables;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
 import com.google.common.hash.HashCode;
-import com.google.inject.Provider;
 
 public final class GoogleCloudStorageBlobStore extends BaseBlobStore {
 
+   /** The fields of a listing of multipart upload parts needed to predict the checksum of their composite. */
+   static final String PART_FIELDS = "items(name,generation,metageneration,size,crc32c),nextPageToken";
+
+   /** The fields of a listing of multipart upload parts that {@link #listMultipartUpload} reports. */
+   static final String LIST_PART_FIELDS = "items(name,generation,metageneration,size,etag),nextPageToken";
+
    private final GoogleCloudStorageApi api;
    private final BucketToStorageMetadata bucketToStorageMetadata;
    private final ObjectToBlobMetadata objectToBlobMetadata;
    private final ObjectListToStorageMetadata objectListToStorageMetadata;
-   private final Provider<FetchBlobMetadata> fetchBlobMetadataProvider;
    private final BlobMetadataToObjectTemplate blobMetadataToObjectTemplate;
    private final BlobStoreListContainerOptionsToListObjectOptions listContainerOptionsToListObjectOptions;
    private final Supplier<String> projectId;
    private final BlobToHttpGetOptions blob2ObjectGetOptions;
+   private final ParallelMultipartUploadStrategy multipartUploadStrategy;
+   private final ComposeMultipartUploadStrategy composeStrategy;
+   private final MultipartComponentCleaner componentCleaner;
+   private final PrefetchingObjectLister lister;
+   private final PartitionedObjectLister partitionedLister;
+   private final MediaResponseToBlobMetadata mediaResponseToBlobMetadata;
+   private final ParallelRangedDownloader rangedDownloader;
+   private final ChannelDownloader channelDownloader;
+   private final ResumableUploader resumableUploader;
+   private final BatchBlobRemover blobRemover;
+   private final ContainerClearer containerClearer;
+   private final ObjectRewriter objectRewriter;
+   private final ObjectMetadataCache metadataCache;
+   private final ExistenceIndex existenceIndex;
+   private final ContentCache contentCache;
+   private final boolean fullMetadataOnGet;
+   private final boolean crc32cValidation;
 
    @Inject GoogleCloudStorageBlobStore(BlobStoreContext context, BlobUtils blobUtils, Supplier<Location> defaultLocation,
             @Memoized Supplier<Set<? extends Location>> locations, PayloadSlicer slicer, GoogleCloudStorageApi api,
             BucketToStorageMetadata bucketToStorageMetadata, ObjectToBlobMetadata objectToBlobMetadata,
             ObjectListToStorageMetadata objectListToStorageMetadata,
-            Provider<FetchBlobMetadata> fetchBlobMetadataProvider,
             BlobMetadataToObjectTemplate blobMetadataToObjectTemplate,
             BlobStoreListContainerOptionsToListObjectOptions listContainerOptionsToListObjectOptions,
             @CurrentProject Supplier<String> projectId,
-            BlobToHttpGetOptions blob2ObjectGetOptions) {
+            BlobToHttpGetOptions blob2ObjectGetOptions,
+            ParallelMultipartUploadStrategy multipartUploadStrategy,
+            ComposeMultipartUploadStrategy composeStrategy,
+            MultipartComponentCleaner componentCleaner,
+            PrefetchingObjectLister lister,
+            PartitionedObjectLister partitionedLister,
+            MediaResponseToBlobMetadata mediaResponseToBlobMetadata,
+            ParallelRangedDownloader rangedDownloader,
+            ChannelDownloader channelDownloader,
+            ResumableUploader resumableUploader,
+            BatchBlobRemover blobRemover,
+            ContainerClearer containerClearer,
+            ObjectRewriter objectRewriter,
+            ObjectMetadataCache metadataCache,
+            ExistenceIndex existenceIndex,
+            ContentCache contentCache,
+            @Named(GET_BLOB_FULL_METADATA) boolean fullMetadataOnGet,
+            @Named(CRC32C_VALIDATION) boolean crc32cValidation) {
       super(context, blobUtils, defaultLocation, locations, slicer);
       this.api = api;
       this.bucketToStorageMetadata = bucketToStorageMetadata;
       this.objectToBlobMetadata = objectToBlobMetadata;
       this.objectListToStorageMetadata = objectListToStorageMetadata;
-      this.fetchBlobMetadataProvider = checkNotNull(fetchBlobMetadataProvider, "fetchBlobMetadataProvider");
       this.blobMetadataToObjectTemplate = blobMetadataToObjectTemplate;
       this.listContainerOptionsToListObjectOptions = listContainerOptionsToListObjectOptions;
       this.projectId = projectId;
       this.blob2ObjectGetOptions = checkNotNull(blob2ObjectGetOptions, "blob2ObjectGetOptions");
+      this.multipartUploadStrategy = checkNotNull(multipartUploadStrategy, "multipartUploadStrategy");
+      this.composeStrategy = checkNotNull(composeStrategy, "composeStrategy");
+      this.componentCleaner = checkNotNull(componentCleaner, "componentCleaner");
+      this.lister = checkNotNull(lister, "lister");
+      this.partitionedLister = checkNotNull(partitionedLister, "partitionedLister");
+      this.mediaResponseToBlobMetadata = checkNotNull(mediaResponseToBlobMetadata, "mediaResponseToBlobMetadata");
+      this.rangedDownloader = checkNotNull(rangedDownloader, "rangedDownloader");
+      this.channelDownloader = checkNotNull(channelDownloader, "channelDownloader");
+      this.resumableUploader = checkNotNull(resumableUploader, "resumableUploader");
+      this.blobRemover = checkNotNull(blobRemover, "blobRemover");
+      this.containerClearer = checkNotNull(containerClearer, "containerClearer");
+      this.objectRewriter = checkNotNull(objectRewriter, "objectRewriter");
+      this.metadataCache = checkNotNull(metadataCache, "metadataCache");
+      this.existenceIndex = checkNotNull(existenceIndex, "existenceIndex");
+      this.contentCache = checkNotNull(contentCache, "contentCache");
+      this.fullMetadataOnGet = fullMetadataOnGet;
+      this.crc32cValidation = crc32cValidation;
    }
 
    @Override
@@ -190,34 +278,52 @@ public final class GoogleCloudStorageBlobStore extends BaseBlobStore {
       return list(container, ListContainerOptions.NONE);
    }
 
+   /**
+    * The list response carries the full object resource for every item, so detailed listings are built from it
+    * directly rather than fetching each blob's metadata.
+    */
    @Override
    public PageSet<? extends StorageMetadata> list(String container, ListContainerOptions options) {
       ListObjectOptions listOptions = listContainerOptionsToListObjectOptions.apply(options);
       ListPageWithPrefixes<GoogleCloudStorageObject> gcsList = api.getObjectApi().listObjects(container, listOptions);
-      PageSet<? extends StorageMetadata> list = objectListToStorageMetadata.apply(gcsList);
-      return options.isDetailed() ? fetchBlobMetadataProvider.get().setContainerName(container).apply(list) : list;
+      return objectListToStorageMetadata.apply(gcsList);
    }
 
    /**
     * Checks whether an accessible object is available. Google cloud storage does not support directly support
-    * BucketExist or ObjectExist operations
+    * BucketExist or ObjectExist operations. Names that an existence index rules out are answered without a call; see
+    * {@link #indexContainer}.
     */
    @Override
    public boolean blobExists(String container, String name) {
-      try {
-         String urlName = name.contains("/") ? URLEncoder.encode(name, Charsets.UTF_8.toString()) : name;
-         return api.getObjectApi().objectExists(container, urlName);
-      } catch (UnsupportedEncodingException e) {
-         throw Throwables.propagate(e);
+      if (existenceIndex.isAbsent(container, name)) {
+         return false;
       }
+      return api.getObjectApi().objectExists(container, encodeName(name));
    }
 
    /**
-    * This supports multipart/related upload which has exactly 2 parts, media-part and metadata-part
+    * Lists the names in {@code container} under {@code prefix} into an existence index, after which
+    * {@link #blobExists} answers for names the index lacks without a call. The index sees blobs written through this
+    * blob store, but not those written by other clients, so it stops answering after
+    * {@link org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants#EXISTENCE_INDEX_TTL}; see
+    * {@link ExistenceIndex}.
+    *
+    * @param prefix
+    *           the prefix of the names to index, or null for the whole container
+    * @return the number of names indexed
+    */
+   public long indexContainer(String container, @Nullable String prefix) {
+      return existenceIndex.build(container, prefix);
+   }
+
+   /**
+    * This supports multipart/related upload which has exactly 2 parts, media-part and metadata-part. Payloads without a
+    * content length are streamed through a resumable upload instead; see {@link ResumableUploader}. The payload's
+    * CRC32C is computed as it is sent and checked against the stored object's.
     */
    @Override
    public String putBlob(String container, Blob blob) {
-      checkNotNull(blob.getPayload().getContentMetadata().getContentLength());
       HashCode md5 = blob.getMetadata().getContentMetadata().getContentMD5AsHashCode();
 
       ObjectTemplate template = blobMetadataToObjectTemplate.apply(blob.getMetadata());
@@ -225,7 +331,46 @@ public final class GoogleCloudStorageBlobStore extends BaseBlobStore {
       if (md5 != null) {
          template.md5Hash(base64().encode(md5.asBytes()));
       }
-      return api.getObjectApi().multipartUpload(container, template, blob.getPayload()).etag();
+      existenceIndex.added(container, template.name());
+      Crc32cPayload checked = crc32cValidation ? new Crc32cPayload(blob.getPayload()) : null;
+      Payload payload = checked == null ? blob.getPayload() : checked;
+      GoogleCloudStorageObject stored;
+      try {
+         if (payload.getContentMetadata().getContentLength() == null) {
+            // The response to the final chunk describes the generation this upload wrote.
+            stored = resumableUploader.upload(container, template, payload).object();
+            checkState(stored != null, "resumable upload of %s/%s completed without an object", container,
+                  template.name());
+         } else {
+            stored = api.getObjectApi().multipartUpload(container, template, payload);
+         }
+         if (checked != null) {
+            verifyUpload(container, stored, checked.crc32c());
+         }
+      } finally {
+         metadataCache.invalidate(container, template.name());
+      }
+      return stored.etag();
+   }
+
+   /**
+    * Deletes an upload whose stored CRC32C differs from the one expected, and fails. The metadata part of an upload
+    * precedes its data, so the checksum computed as the data is sent cannot be sent with it without reading the
+    * payload twice. {@code written} must be the object a write returned, never one read back afterwards, so that only
+    * the generation this client wrote is deleted.
+    */
+   private void verifyUpload(String container, GoogleCloudStorageObject written, String expected) {
+      if (written.crc32c() == null || written.crc32c().equals(expected)) {
+         return;
+      }
+      if (written.generation() == null) {
+         throw new IllegalStateException(String.format("crc32c of %s/%s was %s, expected %s; generation unknown, not "
+               + "deleted", container, written.name(), written.crc32c(), expected));
+      }
+      api.getObjectApi().deleteObject(container, encodeName(written.name()),
+            new DeleteObjectOptions().ifGenerationMatch(written.generation()));
+      throw new IllegalStateException(String.format("crc32c of %s/%s was %s, expected %s; deleted generation %s",
+            container, written.name(), written.crc32c(), expected, written.generation()));
    }
 
    @Override
@@ -237,36 +382,182 @@ public final class GoogleCloudStorageBlobStore extends BaseBlobStore {
       }
    }
 
+   /**
+    * Uploads the parts concurrently; see {@link ParallelMultipartUploadStrategy}.
+    */
+   @Override
+   protected String putMultipartBlob(String container, Blob blob, PutOptions options) {
+      existenceIndex.added(container, blob.getMetadata().getName());
+      String etag = multipartUploadStrategy.execute(this, container, blob);
+      metadataCache.invalidate(container, blob.getMetadata().getName());
+      return etag;
+   }
+
+   /**
+    * Metadata is read without the object's ACL, which blob metadata has no place for. Lookups go through the metadata
+    * cache when it is on; see {@link ObjectMetadataCache}.
+    */
    @Override
    public BlobMetadata blobMetadata(String container, String name) {
-      return objectToBlobMetadata.apply(api.getObjectApi().getObject(container, name));
+      return objectToBlobMetadata.apply(metadataCache.get(container, name));
+   }
+
+   /** Hits, misses and evictions of the metadata cache; all zero while it is off. */
+   public CacheStats metadataCacheStats() {
+      return metadataCache.stats();
    }
 
+   /**
+    * Lists everything in {@code container} matching {@code options}, following page tokens while the caller iterates.
+    * Recursive listings that do not start from a marker are split into key ranges listed concurrently; see
+    * {@link PartitionedObjectLister}. Results are in name order either way.
+    */
+   public Iterable<StorageMetadata> listAll(String container, ListContainerOptions options) {
+      ListObjectOptions listOptions = listContainerOptionsToListObjectOptions.apply(options);
+      if (options.isRecursive() && options.getDelimiter() == null && options.getMarker() == null) {
+         return Iterables.<GoogleCloudStorageObject, StorageMetadata> transform(
+               partitionedLister.objects(container, listOptions), objectToBlobMetadata);
+      }
+      return Iterables.<StorageMetadata> concat(
+            Iterables.transform(lister.pages(container, listOptions), objectListToStorageMetadata));
+   }
+
+   /**
+    * With the content cache on, whole blobs are served from disk when this host has their current generation, at the
+    * cost of a metadata request; see {@link ContentCache}. Reads of ranges or with conditions always download. A
+    * whole blob downloaded in a single request is checked against the CRC32C in its response headers as it is read.
+    */
    @Override
    public Blob getBlob(String container, String name, GetOptions options) {
-      GoogleCloudStorageObject gcsObject = api.getObjectApi().getObject(container, name);
-      if (gcsObject == null) {
+      org.jclouds.http.options.GetOptions httpOptions = blob2ObjectGetOptions.apply(options);
+      if (contentCache.isEnabled() && httpOptions.buildRequestHeaders().isEmpty()
+            && httpOptions.buildQueryParameters().isEmpty()) {
+         GoogleCloudStorageObject gcsObject = metadataCache.get(container, name);
+         if (gcsObject == null) {
+            return null;
+         }
+         FileChannel cached = contentCache.open(container, gcsObject);
+         if (cached != null) {
+            MutableBlobMetadata metadata = objectToBlobMetadata.apply(gcsObject);
+            Blob blob = new BlobImpl(metadata);
+            Payload payload = Payloads.newInputStreamPayload(Channels.newInputStream(cached));
+            payload.setContentMetadata(metadata.getContentMetadata());
+            blob.setPayload(payload);
+            return blob;
+         }
+      }
+      if (fullMetadataOnGet) {
+         GoogleCloudStorageObject gcsObject = metadataCache.get(container, name);
+         if (gcsObject == null) {
+            return null;
+         }
+         MutableBlobMetadata metadata = objectToBlobMetadata.apply(gcsObject);
+         Blob blob = new BlobImpl(metadata);
+         Payload payload = api.getObjectApi().download(container, name, httpOptions).getPayload();
+         payload.setContentMetadata(metadata.getContentMetadata()); // Doing this first retains it on setPayload.
+         blob.setPayload(payload);
+         return blob;
+      }
+      HttpResponse response = api.getObjectApi().downloadResponse(container, name, httpOptions);
+      if (response == null) {
          return null;
       }
-      org.jclouds.http.options.GetOptions httpOptions = blob2ObjectGetOptions.apply(options);
-      MutableBlobMetadata metadata = objectToBlobMetadata.apply(gcsObject);
+      MutableBlobMetadata metadata = mediaResponseToBlobMetadata.apply(container, name, response);
       Blob blob = new BlobImpl(metadata);
-      // TODO: Does getObject not get the payload?!
-      Payload payload = api.getObjectApi().download(container, name, httpOptions).getPayload();
+      Payload payload = response.getPayload();
+      if (payload == null) {
+         payload = Payloads.newByteArrayPayload(new byte[0]);
+      } else {
+         payload = verifyingCrc32c(payload, MediaResponseToBlobMetadata.wholeObjectCrc32c(response), container, name);
+      }
       payload.setContentMetadata(metadata.getContentMetadata()); // Doing this first retains it on setPayload.
       blob.setPayload(payload);
       return blob;
    }
 
+   /** Wraps {@code payload} so that reading it to the end fails if its bytes do not match {@code crc32c}. */
+   private Payload verifyingCrc32c(Payload payload, @Nullable String crc32c, String container, String name) {
+      if (!crc32cValidation || crc32c == null) {
+         return payload;
+      }
+      try {
+         return Payloads.newInputStreamPayload(
+               new Crc32cVerifyingInputStream(payload.openStream(), crc32c, container + "/" + name));
+      } catch (IOException ioe) {
+         throw Throwables.propagate(ioe);
+      }
+   }
+
+   /**
+    * Downloads a blob into {@code target} as concurrent byte ranges of a single generation; see
+    * {@link ParallelRangedDownloader}.
+    *
+    * @return the blob's size in bytes
+    */
+   public long downloadBlob(String container, String name, FileChannel target) {
+      return rangedDownloader.download(container, name, target);
+   }
+
+   /**
+    * Reads a blob into {@code target} from its position, without an intermediate copy for heap buffers.
+    *
+    * @return the number of bytes read
+    * @throws java.nio.BufferOverflowException if the blob does not fit in the space remaining in {@code target}
+    */
+   public int readBlob(String container, String name, ByteBuffer target, GetOptions options) {
+      return channelDownloader.read(container, name, target, blob2ObjectGetOptions.apply(options));
+   }
+
+   /**
+    * Writes a blob to {@code target} in a single request, leaving the channel open.
+    *
+    * @return the number of bytes written
+    */
+   public long transferBlob(String container, String name, WritableByteChannel target, GetOptions options) {
+      return channelDownloader.transfer(container, name, target, blob2ObjectGetOptions.apply(options));
+   }
+
+   /**
+    * Writes a blob to the file at {@code target} in a single request, replacing its contents.
+    *
+    * @return the number of bytes written
+    */
+   public long transferBlob(String container, String name, Path target, GetOptions options) {
+      return channelDownloader.transfer(container, name, target, blob2ObjectGetOptions.apply(options));
+   }
+
    @Override
    public void removeBlob(String container, String name) {
-      String urlName;
+      api.getObjectApi().deleteObject(container, encodeName(name));
+      metadataCache.invalidate(container, name);
+   }
+
+   /**
+    * Deletes {@code names} in batches, several at a time. Blobs that do not exist count as removed.
+    *
+    * @throws RuntimeException the error of a blob that could not be removed; the others have been attempted
+    */
+   @Override
+   public void removeBlobs(String container, Iterable<String> names) {
+      checkComplete(removeBlobsWithResult(container, names));
+   }
+
+   /** Throws the first failure of a bulk removal, if any. */
+   private static void checkComplete(RemoveBlobsResult result) {
+      if (!result.isComplete()) {
+         throw Throwables.propagate(result.failures().values().iterator().next());
+      }
+   }
+
+   /**
+    * Deletes {@code names} in batches, several at a time, and reports the outcome for each blob rather than throwing.
+    */
+   public RemoveBlobsResult removeBlobsWithResult(String container, Iterable<String> names) {
       try {
-         urlName = name.contains("/") ? URLEncoder.encode(name, Charsets.UTF_8.toString()) : name;
-      } catch (UnsupportedEncodingException uee) {
-         throw Throwables.propagate(uee);
+         return blobRemover.remove(container, names);
+      } finally {
+         metadataCache.invalidateAll(container);
       }
-      api.getObjectApi().deleteObject(container, urlName);
    }
 
    @Override
@@ -291,28 +582,67 @@ public final class GoogleCloudStorageBlobStore extends BaseBlobStore {
       } else {
          api.getObjectAccessControlsApi().deleteObjectAccessControls(container, name, "allUsers");
       }
+      metadataCache.invalidate(container, name);
    }
 
+   /**
+    * Deletes every object of {@code container}, noncurrent versions included, then the bucket itself. The bucket is
+    * deleted straight after the clear, as the generic implementation would list and clear it once more.
+    */
    @Override
-   protected boolean deleteAndVerifyContainerGone(String container) {
-      ListPageWithPrefixes<GoogleCloudStorageObject> list = api.getObjectApi().listObjects(container);
+   public void deleteContainer(String container) {
+      try {
+         checkComplete(containerClearer.clear(container, new ListObjectOptions().versions(true)
+               .projection(Projection.NO_ACL).fields(ContainerClearer.CLEAR_FIELDS)));
+      } finally {
+         metadataCache.invalidateAll(container);
+      }
+      checkState(deleteAndVerifyContainerGone(container), "%s still exists after deleting!", container);
+      existenceIndex.drop(container);
+   }
 
-      if (list == null || (!list.iterator().hasNext() && list.prefixes().isEmpty())) {
-         if (!api.getBucketApi().deleteBucket(container)) {
-            return true;
-         } else {
-            return !api.getBucketApi().bucketExist(container);
-         }
+   /**
+    * Recursive clears list and delete in a pipeline, in batches; see {@link ContainerClearer}. Others delete one
+    * directory level at a time, as the generic implementation does.
+    */
+   @Override
+   public void clearContainer(String container, ListContainerOptions options) {
+      if (!options.isRecursive() || options.getDelimiter() != null) {
+         super.clearContainer(container, options);
+         metadataCache.invalidateAll(container);
+         return;
+      }
+      try {
+         checkComplete(containerClearer.clear(container, listContainerOptionsToListObjectOptions.apply(options)));
+      } finally {
+         metadataCache.invalidateAll(container);
       }
+   }
 
-      return false;
+   @Override
+   protected boolean deleteAndVerifyContainerGone(String container) {
+      if (!containerClearer.isEmpty(container, false)) {
+         return false;
+      }
+      if (!api.getBucketApi().deleteBucket(container)) {
+         return true;
+      } else {
+         return !api.getBucketApi().bucketExist(container);
+      }
    }
 
+   /**
+    * Copies with the rewrite method, so that large objects and copies across locations or storage classes complete;
+    * see {@link ObjectRewriter}.
+    */
    @Override
    public String copyBlob(String fromContainer, String fromName, String toContainer, String toName,
          CopyOptions options) {
+      existenceIndex.added(toContainer, toName);
       if (!options.getContentMetadata().isPresent() && !options.getUserMetadata().isPresent()) {
-         return api.getObjectApi().copyObject(toContainer, toName, fromContainer, fromName).etag();
+         String etag = objectRewriter.rewrite(fromContainer, fromName, toContainer, toName, null, null).etag();
+         metadataCache.invalidate(toContainer, toName);
+         return etag;
       }
 
       ObjectTemplate template = new ObjectTemplate();
@@ -349,7 +679,31 @@ public final class GoogleCloudStorageBlobStore extends BaseBlobStore {
          template.customMetadata(options.getUserMetadata().get());
       }
 
-      return api.getObjectApi().copyObject(toContainer, toName, fromContainer, fromName, template).etag();
+      String etag = objectRewriter.rewrite(fromContainer, fromName, toContainer, toName, template, null).etag();
+      metadataCache.invalidate(toContainer, toName);
+      return etag;
+   }
+
+   /**
+    * Copies each of {@code names} to the same name in {@code toContainer}, several at a time, within the service.
+    *
+    * @param progress
+    *           receives the bytes copied so far after each rewrite call; may be null
+    */
+   public CopyObjectsResult copyBlobs(String fromContainer, Iterable<String> names, final String toContainer,
+         @Nullable ObjectRewriter.Progress progress) {
+      Iterable<String> indexed = Iterables.transform(names, new Function<String, String>() {
+         @Override
+         public String apply(String name) {
+            existenceIndex.added(toContainer, name);
+            return name;
+         }
+      });
+      try {
+         return objectRewriter.rewriteAll(fromContainer, indexed, toContainer, progress);
+      } finally {
+         metadataCache.invalidateAll(toContainer);
+      }
    }
 
    @Override
@@ -358,6 +712,7 @@ public final class GoogleCloudStorageBlobStore extends BaseBlobStore {
       return MultipartUpload.create(container, blobMetadata.getName(), uploadId, blobMetadata);
    }
 
+   /** Deletes the listed parts and waits for them; throws the first error if a part could not be deleted. */
    @Override
    public void abortMultipartUpload(MultipartUpload mpu) {
       ImmutableList.Builder<String> builder = ImmutableList.builder();
@@ -365,42 +720,97 @@ public final class GoogleCloudStorageBlobStore extends BaseBlobStore {
       for (MultipartPart part : parts) {
          builder.add(getMPUPartName(mpu, part.partNumber()));
       }
-      removeBlobs(mpu.containerName(), builder.build());
+      try {
+         componentCleaner.schedule(mpu.containerName(), builder.build()).get();
+      } catch (InterruptedException ie) {
+         Thread.currentThread().interrupt();
+         throw Throwables.propagate(ie);
+      } catch (ExecutionException ee) {
+         throw Throwables.propagate(ee.getCause());
+      }
    }
 
+   /**
+    * Composes the parts into the destination; see {@link ComposeMultipartUploadStrategy}. Composite objects have no
+    * MD5, so with CRC32C validation on, the destination's CRC32C is checked against one combined from those of the
+    * parts, read from a listing of the upload. On a mismatch the destination is deleted and the parts are kept.
+    */
    @Override
    public String completeMultipartUpload(MultipartUpload mpu, List<MultipartPart> parts) {
-      ImmutableList.Builder<GoogleCloudStorageObject> builder = ImmutableList.builder();
+      ImmutableList.Builder<String> partNames = ImmutableList.builder();
       for (MultipartPart part : parts) {
-         builder.add(api.getObjectApi().getObject(mpu.containerName(), getMPUPartName(mpu, part.partNumber())));
+         partNames.add(getMPUPartName(mpu, part.partNumber()));
+      }
+      existenceIndex.added(mpu.containerName(), mpu.blobName());
+      GoogleCloudStorageObject composed;
+      try {
+         composed = composeStrategy.execute(mpu, partNames.build());
+         if (crc32cValidation) {
+            verifyComposite(mpu, partNames.build(), composed);
+         }
+      } finally {
+         metadataCache.invalidate(mpu.containerName(), mpu.blobName());
       }
-      ObjectTemplate destination = blobMetadataToObjectTemplate.apply(mpu.blobMetadata());
-      ComposeObjectTemplate template = ComposeObjectTemplate.builder().fromGoogleCloudStorageObject(builder.build())
-            .destination(destination).build();
-      return api.getObjectApi().composeObjects(mpu.containerName(), mpu.blobName(), template).etag();
-      // TODO: delete components?
+      // The destination no longer depends on its components, so do not wait for their deletion.
+      componentCleaner.schedule(mpu.containerName(), partNames.build());
+      return composed.etag();
    }
 
+   /**
+    * Predicts the CRC32C of a composite object from those of its parts, in order, and checks the composed object
+    * against it. Nothing is checked if a part or the composite has no CRC32C.
+    */
+   private void verifyComposite(MultipartUpload mpu, List<String> partNames, GoogleCloudStorageObject composed) {
+      if (composed.crc32c() == null) {
+         return;
+      }
+      Map<String, GoogleCloudStorageObject> stored = Maps.newHashMap();
+      for (GoogleCloudStorageObject object : lister.objects(mpu.containerName(), new ListObjectOptions()
+            .prefix(mpu.id() + "_").projection(Projection.NO_ACL).fields(PART_FIELDS))) {
+         stored.put(object.name(), object);
+      }
+      long expected = 0;
+      for (String partName : partNames) {
+         GoogleCloudStorageObject part = stored.get(partName);
+         if (part == null || part.crc32c() == null) {
+            return;
+         }
+         expected = Crc32c.combine(expected, Crc32c.fromBase64(part.crc32c()), part.size());
+      }
+      verifyUpload(mpu.containerName(), composed, Crc32c.toBase64(expected));
+   }
+
+   /** With CRC32C validation on, each part is checked like {@link #putBlob}, against what was sent. */
    @Override
    public MultipartPart uploadMultipartPart(MultipartUpload mpu, int partNumber, Payload payload) {
       String partName = getMPUPartName(mpu, partNumber);
       long partSize = payload.getContentMetadata().getContentLength();
       InsertObjectOptions insertOptions = new InsertObjectOptions().name(partName);
+      existenceIndex.added(mpu.containerName(), partName);
+      Crc32cPayload checked = crc32cValidation ? new Crc32cPayload(payload) : null;
       GoogleCloudStorageObject object = api.getObjectApi().simpleUpload(mpu.containerName(),
-            mpu.blobMetadata().getContentMetadata().getContentType(), partSize, payload, insertOptions);
+            mpu.blobMetadata().getContentMetadata().getContentType(), partSize, checked == null ? payload : checked,
+            insertOptions);
+      if (checked != null) {
+         verifyUpload(mpu.containerName(), object, checked.crc32c());
+      }
       return MultipartPart.create(partNumber, partSize, object.etag());
    }
 
+   /**
+    * Lists every page of parts, prefetching the next page while the current one is parsed. Objects are read straight
+    * from the listing; intermediate compose objects and unrelated objects sharing the prefix are skipped.
+    */
    @Override
    public List<MultipartPart> listMultipartUpload(MultipartUpload mpu) {
+      String prefix = mpu.id() + "_";
       ImmutableList.Builder<MultipartPart> parts = ImmutableList.builder();
-      PageSet<? extends StorageMetadata> pageSet = list(mpu.containerName(),
-            new ListContainerOptions().prefix(mpu.blobName() + "_"));
-      // TODO: pagination
-      for (StorageMetadata sm : pageSet) {
-         int lastUnderscore = sm.getName().lastIndexOf('_');
-         int partNumber = Integer.parseInt(sm.getName().substring(lastUnderscore + 1));
-         parts.add(MultipartPart.create(partNumber, sm.getSize(), sm.getETag()));
+      for (GoogleCloudStorageObject object : lister.objects(mpu.containerName(),
+            new ListObjectOptions().prefix(prefix).projection(Projection.NO_ACL).fields(LIST_PART_FIELDS))) {
+         int partNumber = parsePartNumber(object.name(), prefix.length());
+         if (partNumber != -1) {
+            parts.add(MultipartPart.create(partNumber, object.size(), object.etag()));
+         }
       }
       return parts.build();
    }
@@ -415,13 +825,31 @@ public final class GoogleCloudStorageBlobStore extends BaseBlobStore {
       return 5L * 1024L * 1024L * 1024L;
    }
 
+   /**
+    * Compose accepts 32 sources per request; {@link ComposeMultipartUploadStrategy} composes larger uploads as a tree.
+    */
    @Override
    public int getMaximumNumberOfParts() {
-      // TODO: should this be 32?  See: https://cloud.google.com/storage/docs/composite-objects
       return 10 * 1000;
    }
 
    private static String getMPUPartName(MultipartUpload mpu, int partNumber) {
       return String.format("%s_%08d", mpu.id(), partNumber);
    }
+
+   /** Returns the part number of {@code <uploadId>_%08d}, given the length of its prefix, or -1. */
+   private static int parsePartNumber(String name, int prefixLength) {
+      if (name.length() != prefixLength + 8) {
+         return -1;
+      }
+      int partNumber = 0;
+      for (int i = prefixLength; i < name.length(); i++) {
+         char c = name.charAt(i);
+         if (c < '0' || c > '9') {
+            return -1;
+         }
+         partNumber = partNumber * 10 + (c - '0');
+      }
+      return partNumber;
+   }
 }
@@ -19,12 +19,26 @@ package org.jclouds.googlecloudstorage.blobstore.functions;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import org.jclouds.blobstore.options.ListContainerOptions;
+import org.jclouds.googlecloudstorage.domain.DomainResourceReferences.Projection;
 import org.jclouds.googlecloudstorage.options.ListObjectOptions;
 
 import com.google.common.base.Function;
 
+/**
+ * Converts blobstore listing options. Listings leave out ACLs and select only the fields that blob metadata is built
+ * from; see {@link org.jclouds.googlecloudstorage.blobstore.functions.ObjectToBlobMetadata}.
+ */
 public class BlobStoreListContainerOptionsToListObjectOptions implements
          Function<ListContainerOptions, ListObjectOptions> {
+
+   /**
+    * The fields a listing asks for: those blob metadata is built from, including the id and URIs. Storage details such
+    * as owner, storage class and checksums other than MD5 are left out.
+    */
+   public static final String LIST_FIELDS = "items(id,selfLink,mediaLink,name,bucket,generation,metageneration,size,"
+         + "updated,etag,md5Hash,contentType,contentEncoding,contentDisposition,contentLanguage,metadata),"
+         + "nextPageToken,prefixes";
+
    public ListObjectOptions apply(ListContainerOptions from) {
       if (from.getDir() != null && (from.getPrefix() != null || from.getDelimiter() != null)) {
          throw new IllegalArgumentException("Cannot pass both directory and prefix/delimiter");
@@ -53,6 +67,6 @@ public class BlobStoreListContainerOptionsToListObjectOptions implements
       if (from.getMaxResults() != null) {
          httpOptions = httpOptions.maxResults(from.getMaxResults());
       }
-      return httpOptions;
+      return httpOptions.projection(Projection.NO_ACL).fields(LIST_FIELDS);
    }
 }
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.functions;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Map;
+
+import javax.inject.Inject;
+
+import org.jclouds.blobstore.domain.MutableBlobMetadata;
+import org.jclouds.blobstore.domain.StorageType;
+import org.jclouds.blobstore.domain.internal.MutableBlobMetadataImpl;
+import org.jclouds.date.DateService;
+import org.jclouds.http.HttpResponse;
+import org.jclouds.io.ContentMetadata;
+import org.jclouds.javax.annotation.Nullable;
+
+import com.google.common.collect.Maps;
+import com.google.common.hash.HashCode;
+import com.google.common.io.BaseEncoding;
+
+/**
+ * Builds blob metadata from the headers of an {@code alt=media} response, so that a download needs no separate metadata
+ * request. The headers carry everything but the object's id and links.
+ *
+ * @see <a href="https://cloud.google.com/storage/docs/xml-api/reference-headers" />
+ */
+public class MediaResponseToBlobMetadata {
+
+   public static final String GENERATION = "x-goog-generation";
+   public static final String METAGENERATION = "x-goog-metageneration";
+   public static final String HASH = "x-goog-hash";
+   public static final String STORED_CONTENT_LENGTH = "x-goog-stored-content-length";
+   public static final String STORED_CONTENT_ENCODING = "x-goog-stored-content-encoding";
+   public static final String USER_METADATA_PREFIX = "x-goog-meta-";
+
+   private final DateService dateService;
+
+   @Inject MediaResponseToBlobMetadata(DateService dateService) {
+      this.dateService = checkNotNull(dateService, "dateService");
+   }
+
+   public MutableBlobMetadata apply(String container, String name, HttpResponse from) {
+      MutableBlobMetadata to = new MutableBlobMetadataImpl();
+      to.setContainer(container);
+      to.setName(name);
+      to.setType(StorageType.BLOB);
+      to.setETag(from.getFirstHeaderOrNull("ETag"));
+      String lastModified = from.getFirstHeaderOrNull("Last-Modified");
+      if (lastModified != null) {
+         to.setLastModified(dateService.rfc822DateParse(lastModified));
+      }
+
+      // Header names match the prefix in any case, but keys keep the case they were stored with.
+      Map<String, String> userMetadata = Maps.newLinkedHashMap();
+      for (Map.Entry<String, String> header : from.getHeaders().entries()) {
+         String key = header.getKey();
+         if (key.regionMatches(true, 0, USER_METADATA_PREFIX, 0, USER_METADATA_PREFIX.length())) {
+            userMetadata.put(key.substring(USER_METADATA_PREFIX.length()), header.getValue());
+         }
+      }
+      to.setUserMetadata(userMetadata);
+
+      Long length = null;
+      if (from.getPayload() != null) {
+         ContentMetadata content = from.getPayload().getContentMetadata();
+         to.getContentMetadata().setContentType(content.getContentType());
+         to.getContentMetadata().setContentDisposition(content.getContentDisposition());
+         to.getContentMetadata().setContentEncoding(content.getContentEncoding());
+         to.getContentMetadata().setContentLanguage(content.getContentLanguage());
+         length = content.getContentLength();
+      }
+      to.getContentMetadata().setContentLength(length == null ? Long.valueOf(0) : length);
+      to.getContentMetadata().setContentMD5(md5(from));
+      to.setSize(storedLength(from, length));
+      return to;
+   }
+
+   /** The object's generation, or null if the response does not carry it. */
+   @Nullable
+   public static Long generation(HttpResponse response) {
+      String generation = response.getFirstHeaderOrNull(GENERATION);
+      return generation == null ? null : Long.valueOf(generation);
+   }
+
+   /**
+    * The named hash from {@code x-goog-hash}, such as {@code md5} or {@code crc32c}, base64 encoded. The service sends
+    * one header per hash, or a single comma-separated header.
+    */
+   @Nullable
+   public static String hash(HttpResponse response, String type) {
+      for (String header : response.getHeaders().get(HASH)) {
+         for (String hash : header.split(",")) {
+            hash = hash.trim();
+            if (hash.startsWith(type + "=")) {
+               return hash.substring(type.length() + 1);
+            }
+         }
+      }
+      return null;
+   }
+
+   /**
+    * The object's CRC32C if the response body is the whole object as stored, so that its bytes can be checked against
+    * it; null for ranges, and for objects stored gzip-encoded, which may arrive decompressed.
+    */
+   @Nullable
+   public static String wholeObjectCrc32c(HttpResponse response) {
+      String storedEncoding = response.getFirstHeaderOrNull(STORED_CONTENT_ENCODING);
+      if (response.getStatusCode() != 200 || "gzip".equalsIgnoreCase(storedEncoding)) {
+         return null;
+      }
+      return hash(response, "crc32c");
+   }
+
+   @Nullable
+   private static HashCode md5(HttpResponse response) {
+      String md5 = hash(response, "md5");
+      // Composite objects have no MD5.
+      return md5 == null ? null : HashCode.fromBytes(BaseEncoding.base64().decode(md5));
+   }
+
+   /** The size of the whole object: its stored length, else the total of a content range, else this response. */
+   @Nullable
+   private static Long storedLength(HttpResponse response, @Nullable Long length) {
+      String stored = response.getFirstHeaderOrNull(STORED_CONTENT_LENGTH);
+      if (stored != null) {
+         return Long.valueOf(stored);
+      }
+      String range = response.getFirstHeaderOrNull("Content-Range");
+      if (range != null && range.indexOf('/') != -1 && !range.endsWith("/*")) {
+         return Long.valueOf(range.substring(range.indexOf('/') + 1).trim());
+      }
+      return length;
+   }
+}
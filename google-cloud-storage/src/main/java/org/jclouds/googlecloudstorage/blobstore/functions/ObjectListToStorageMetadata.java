@@ -16,7 +16,8 @@
  */
 package org.jclouds.googlecloudstorage.blobstore.functions;
 
-import java.util.SortedSet;
+import java.util.Arrays;
+import java.util.List;
 
 import javax.inject.Inject;
 
@@ -25,14 +26,15 @@ import org.jclouds.blobstore.domain.PageSet;
 import org.jclouds.blobstore.domain.StorageMetadata;
 import org.jclouds.blobstore.domain.StorageType;
 import org.jclouds.blobstore.domain.internal.MutableStorageMetadataImpl;
-import org.jclouds.blobstore.domain.internal.PageSetImpl;
 import org.jclouds.googlecloudstorage.domain.GoogleCloudStorageObject;
 import org.jclouds.googlecloudstorage.domain.ListPageWithPrefixes;
 
 import com.google.common.base.Function;
-import com.google.common.collect.Iterables;
-import com.google.common.collect.Sets;
 
+/**
+ * Converts a listing page into a name-ordered {@link PageSet}. Objects and prefixes each arrive sorted, so they are
+ * merged in a single pass into an array; a page found out of order is sorted instead.
+ */
 public class ObjectListToStorageMetadata
       implements Function<ListPageWithPrefixes<GoogleCloudStorageObject>, PageSet<? extends StorageMetadata>> {
    private final ObjectToBlobMetadata object2blobMd;
@@ -46,13 +48,51 @@ public class ObjectListToStorageMetadata
          from = ListPageWithPrefixes.create(null, null, null);
       }
 
-      SortedSet<StorageMetadata> results = Sets.<StorageMetadata> newTreeSet(Iterables.transform(from, object2blobMd));
-      for (String prefix : from.prefixes()) {
-          MutableStorageMetadata metadata = new MutableStorageMetadataImpl();
-          metadata.setType(StorageType.RELATIVE_PATH);
-          metadata.setName(prefix);
-          results.add(metadata);
+      List<String> prefixes = from.prefixes();
+      StorageMetadata[] results = new StorageMetadata[from.size() + prefixes.size()];
+      int size = 0;
+      boolean sorted = true;
+      for (int item = 0, prefix = 0; item < from.size() || prefix < prefixes.size();) {
+         StorageMetadata next;
+         // On equal names the object wins, as it did when prefixes were added to a set of objects.
+         if (prefix == prefixes.size()
+               || (item < from.size() && from.get(item).name().compareTo(prefixes.get(prefix)) <= 0)) {
+            next = object2blobMd.apply(from.get(item++));
+         } else {
+            next = relativePath(prefixes.get(prefix++));
+         }
+         if (size > 0) {
+            int order = results[size - 1].getName().compareTo(next.getName());
+            if (order == 0) {
+               continue;
+            }
+            sorted &= order < 0;
+         }
+         results[size++] = next;
+      }
+      if (!sorted) {
+         size = sortDistinct(results, size);
+      }
+      return new SortedArrayPageSet(results, size, from.nextPageToken());
+   }
+
+   private static StorageMetadata relativePath(String prefix) {
+      MutableStorageMetadata metadata = new MutableStorageMetadataImpl();
+      metadata.setType(StorageType.RELATIVE_PATH);
+      metadata.setName(prefix);
+      return metadata;
+   }
+
+   /** Sorts the first {@code size} entries by name, keeps the first of each name, and returns the new size. */
+   private static int sortDistinct(StorageMetadata[] entries, int size) {
+      // A stable sort keeps the entry that came first, matching insertion into a set.
+      Arrays.sort(entries, 0, size);
+      int distinct = 0;
+      for (int i = 0; i < size; i++) {
+         if (distinct == 0 || !entries[distinct - 1].getName().equals(entries[i].getName())) {
+            entries[distinct++] = entries[i];
+         }
       }
-      return new PageSetImpl<StorageMetadata>(results, from.nextPageToken());
+      return distinct;
    }
 }
@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.functions;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.jclouds.blobstore.domain.PageSet;
+import org.jclouds.blobstore.domain.StorageMetadata;
+
+import com.google.common.collect.Iterators;
+
+/**
+ * An immutable page of storage metadata held in an array sorted by name, with no two entries sharing a name. Lookups
+ * binary search on the name, matching the ordering and equality of the {@code TreeSet} pages it replaces.
+ */
+final class SortedArrayPageSet extends AbstractSet<StorageMetadata> implements PageSet<StorageMetadata> {
+
+   private final StorageMetadata[] entries;
+   private final int size;
+   private final String nextMarker;
+
+   /** Takes ownership of the first {@code size} entries, which must already be sorted and distinct by name. */
+   SortedArrayPageSet(StorageMetadata[] entries, int size, String nextMarker) {
+      this.entries = entries;
+      this.size = size;
+      this.nextMarker = nextMarker;
+   }
+
+   @Override
+   public Iterator<StorageMetadata> iterator() {
+      return Iterators.limit(Iterators.forArray(entries), size);
+   }
+
+   @Override
+   public int size() {
+      return size;
+   }
+
+   @Override
+   public boolean contains(Object o) {
+      return o instanceof StorageMetadata && ((StorageMetadata) o).getName() != null
+            && Arrays.binarySearch(entries, 0, size, o) >= 0;
+   }
+
+   @Override
+   public String getNextMarker() {
+      return nextMarker;
+   }
+}
@@ -0,0 +1,243 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.strategy.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.jclouds.Constants.PROPERTY_USER_THREADS;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.REMOVE_BLOBS_ATTEMPTS;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.REMOVE_BLOBS_PARALLEL_DEGREE;
+import static org.jclouds.googlecloudstorage.util.StorageRequests.encodeName;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.jclouds.blobstore.reference.BlobStoreConstants;
+import org.jclouds.googlecloudstorage.domain.BatchResult;
+import org.jclouds.googlecloudstorage.domain.GoogleCloudStorageObject;
+import org.jclouds.googlecloudstorage.domain.RemoveBlobsResult;
+import org.jclouds.googlecloudstorage.features.Batch;
+import org.jclouds.googlecloudstorage.features.BatchApi;
+import org.jclouds.googlecloudstorage.options.DeleteObjectOptions;
+import org.jclouds.googlecloudstorage.util.StorageRequests;
+import org.jclouds.javax.annotation.Nullable;
+import org.jclouds.logging.Logger;
+
+import com.google.common.base.Function;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Deletes many objects with batches of {@link BatchApi#MAX_REQUESTS} deletes, sending at most
+ * {@link org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants#REMOVE_BLOBS_PARALLEL_DEGREE} batches at
+ * a time. An object that does not exist counts as removed. Deletes that fail with a server error or get no response
+ * are sent again in a later batch, up to
+ * {@link org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants#REMOVE_BLOBS_ATTEMPTS} times; other
+ * failures are final.
+ */
+@Singleton
+public class BatchBlobRemover {
+
+   /** The pause before the second attempt; it doubles with each attempt after that. */
+   private static final long BACKOFF_MILLIS = 50;
+
+   @Resource
+   @Named(BlobStoreConstants.BLOBSTORE_LOGGER)
+   protected Logger logger = Logger.NULL;
+
+   private final Provider<Batch> batches;
+   private final ListeningExecutorService userExecutor;
+   private final int parallelDegree;
+   private final int attempts;
+
+   @Inject BatchBlobRemover(Provider<Batch> batches,
+         @Named(PROPERTY_USER_THREADS) ListeningExecutorService userExecutor,
+         @Named(REMOVE_BLOBS_PARALLEL_DEGREE) int parallelDegree, @Named(REMOVE_BLOBS_ATTEMPTS) int attempts) {
+      checkArgument(parallelDegree > 0, "parallelDegree must be positive, was: %s", parallelDegree);
+      checkArgument(attempts > 0, "attempts must be positive, was: %s", attempts);
+      this.batches = checkNotNull(batches, "batches");
+      this.userExecutor = checkNotNull(userExecutor, "userExecutor");
+      this.parallelDegree = parallelDegree;
+      this.attempts = attempts;
+   }
+
+   /**
+    * Deletes {@code names} from {@code bucketName}. Names are read as batches are sent, so {@code names} may be a lazy
+    * view of a listing.
+    */
+   public RemoveBlobsResult remove(String bucketName, Iterable<String> names) {
+      return removeTargets(bucketName, Iterables.transform(names, new Function<String, Target>() {
+         @Override
+         public Target apply(String name) {
+            return new Target(name, null);
+         }
+      }));
+   }
+
+   /**
+    * Permanently deletes the listed generation of each of {@code objects}, which may include noncurrent versions.
+    * Objects are read as batches are sent, so {@code objects} may be a lazy view of a listing. Failures are keyed by
+    * {@code name#generation}.
+    */
+   public RemoveBlobsResult removeVersions(String bucketName, Iterable<GoogleCloudStorageObject> objects) {
+      return removeTargets(bucketName, Iterables.transform(objects, new Function<GoogleCloudStorageObject, Target>() {
+         @Override
+         public Target apply(GoogleCloudStorageObject object) {
+            return new Target(object.name(), object.generation());
+         }
+      }));
+   }
+
+   private RemoveBlobsResult removeTargets(final String bucketName, Iterable<Target> targets) {
+      final Tally tally = new Tally();
+      final Semaphore inFlight = new Semaphore(parallelDegree);
+      try {
+         for (final List<Target> group : Iterables.partition(targets, BatchApi.MAX_REQUESTS)) {
+            inFlight.acquire();
+            try {
+               userExecutor.execute(new Runnable() {
+                  @Override
+                  public void run() {
+                     try {
+                        remove(bucketName, group, tally);
+                     } finally {
+                        inFlight.release();
+                     }
+                  }
+               });
+            } catch (RejectedExecutionException ree) {
+               inFlight.release();
+               throw ree;
+            }
+         }
+      } catch (InterruptedException ie) {
+         Thread.currentThread().interrupt();
+         throw Throwables.propagate(ie);
+      } finally {
+         // Reading targets or sending a batch may fail; the batches already sent end before the caller sees it.
+         awaitBatches(inFlight);
+      }
+      logger.debug("removed %d objects from %s, %d did not exist, %d failed", tally.deleted.get(), bucketName,
+            tally.notFound.get(), tally.failures.size());
+      return RemoveBlobsResult.create(tally.deleted.get(), tally.notFound.get(), tally.failures);
+   }
+
+   /** Waits until every batch sent has ended, which is when all permits are free again, even if interrupted. */
+   private void awaitBatches(Semaphore inFlight) {
+      inFlight.acquireUninterruptibly(parallelDegree);
+   }
+
+   /** Deletes up to {@link BatchApi#MAX_REQUESTS} objects, sending again only the deletes that may succeed later. */
+   private void remove(String bucketName, List<Target> targets, Tally tally) {
+      List<Target> pending = targets;
+      Map<Target, Throwable> errors = Maps.newHashMap();
+      for (int attempt = 1; !pending.isEmpty(); attempt++) {
+         if (attempt > 1) {
+            Uninterruptibles.sleepUninterruptibly(BACKOFF_MILLIS << (attempt - 2), TimeUnit.MILLISECONDS);
+         }
+         List<Target> retry = Lists.newArrayList();
+         try {
+            Batch batch = batches.get();
+            for (Target target : pending) {
+               if (target.generation == null) {
+                  batch.queue().getObjectApi().deleteObject(bucketName, encodeName(target.name));
+               } else {
+                  batch.queue().getObjectApi().deleteObject(bucketName, encodeName(target.name),
+                        new DeleteObjectOptions().generation(target.generation));
+               }
+            }
+            List<BatchResult> results = batch.execute();
+            for (int i = 0; i < pending.size(); i++) {
+               BatchResult result = results.get(i);
+               Target target = pending.get(i);
+               if (result.isSuccess()) {
+                  // The delete's fallback turns a 404 into false.
+                  (Boolean.TRUE.equals(result.value()) ? tally.deleted : tally.notFound).incrementAndGet();
+               } else if (isRetryable(result)) {
+                  retry.add(target);
+                  errors.put(target, result.error());
+               } else {
+                  tally.failures.put(target.toString(), result.error());
+               }
+            }
+         } catch (RuntimeException re) {
+            if (!StorageRequests.isRetryable(re)) {
+               for (Target target : pending) {
+                  tally.failures.put(target.toString(), re);
+               }
+               return;
+            }
+            retry.addAll(pending);
+            for (Target target : pending) {
+               errors.put(target, re);
+            }
+         }
+         if (!retry.isEmpty() && attempt >= attempts) {
+            for (Target target : retry) {
+               tally.failures.put(target.toString(), errors.get(target));
+            }
+            return;
+         }
+         if (!retry.isEmpty()) {
+            logger.debug("retrying %d of %d deletes from %s", retry.size(), pending.size(), bucketName);
+         }
+         pending = retry;
+      }
+   }
+
+   /** Server errors and missing responses may not happen again; a client error will. */
+   private static boolean isRetryable(BatchResult result) {
+      return result.statusCode() == 0 || result.statusCode() >= 500 || result.statusCode() == 429;
+   }
+
+   /** An object to delete, or one generation of it. */
+   private static final class Target {
+      private final String name;
+      @Nullable private final Long generation;
+
+      Target(String name, @Nullable Long generation) {
+         this.name = name;
+         this.generation = generation;
+      }
+
+      @Override
+      public String toString() {
+         return generation == null ? name : name + "#" + generation;
+      }
+   }
+
+   private static final class Tally {
+      private final AtomicLong deleted = new AtomicLong();
+      private final AtomicLong notFound = new AtomicLong();
+      private final ConcurrentMap<String, Throwable> failures = Maps.newConcurrentMap();
+   }
+}
@@ -0,0 +1,305 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.strategy.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.jclouds.Constants.PROPERTY_USER_THREADS;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.SYNC_MAX_BYTES_PER_SECOND;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.SYNC_PARALLEL_DEGREE;
+import static org.jclouds.googlecloudstorage.util.StorageRequests.NAME_ORDER;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.blobstore.reference.BlobStoreConstants;
+import org.jclouds.googlecloudstorage.domain.DomainResourceReferences.Projection;
+import org.jclouds.googlecloudstorage.domain.GoogleCloudStorageObject;
+import org.jclouds.googlecloudstorage.domain.RemoveBlobsResult;
+import org.jclouds.googlecloudstorage.domain.SyncResult;
+import org.jclouds.googlecloudstorage.features.BatchApi;
+import org.jclouds.googlecloudstorage.options.ListObjectOptions;
+import org.jclouds.javax.annotation.Nullable;
+import org.jclouds.logging.Logger;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.PeekingIterator;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.RateLimiter;
+
+/**
+ * Makes a destination bucket hold the same objects as a source bucket. Both buckets are listed in name order as
+ * streams and merge-joined, so memory does not grow with the number of objects: an object missing from the
+ * destination, or whose size or hash differs, is copied with {@link ObjectRewriter}; one only in the destination is
+ * optionally deleted with {@link BatchBlobRemover}.
+ * <p>
+ * Up to {@link org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants#SYNC_PARALLEL_DEGREE} copies run
+ * at a time, and copies start at no more than
+ * {@link org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants#SYNC_MAX_BYTES_PER_SECOND}. A
+ * {@link Checkpoint} receives the name from which an interrupted sync can resume.
+ * <p>
+ * Names are added to the {@link ExistenceIndex} before they are copied, and the {@link ObjectMetadataCache} entries of
+ * names copied or deleted are invalidated, as for writes through the blob store.
+ */
+@Singleton
+public class BucketSynchronizer {
+
+   /** The number of listed objects between two checkpoints. */
+   static final int CHECKPOINT_INTERVAL = 1000;
+
+   /** The fields comparing objects needs; listings leave out everything else. */
+   static final String SYNC_FIELDS = "items(name,generation,metageneration,size,md5Hash,crc32c),nextPageToken";
+
+   /** Receives the progress of a sync, for storing where to resume it. */
+   public interface Checkpoint {
+      /**
+       * Every object ordered before {@code resumeFrom} has been synced or has failed. Passing {@code resumeFrom} to a
+       * later sync skips those objects. Null once both listings have been read to the end.
+       */
+      void reached(@Nullable String resumeFrom);
+   }
+
+   @Resource
+   @Named(BlobStoreConstants.BLOBSTORE_LOGGER)
+   protected Logger logger = Logger.NULL;
+
+   private final PrefetchingObjectLister lister;
+   private final ObjectRewriter rewriter;
+   private final BatchBlobRemover remover;
+   private final ExistenceIndex existenceIndex;
+   private final ObjectMetadataCache metadataCache;
+   private final ListeningExecutorService userExecutor;
+   private final int parallelDegree;
+   private final long maxBytesPerSecond;
+
+   @Inject BucketSynchronizer(PrefetchingObjectLister lister, ObjectRewriter rewriter, BatchBlobRemover remover,
+         ExistenceIndex existenceIndex, ObjectMetadataCache metadataCache,
+         @Named(PROPERTY_USER_THREADS) ListeningExecutorService userExecutor,
+         @Named(SYNC_PARALLEL_DEGREE) int parallelDegree, @Named(SYNC_MAX_BYTES_PER_SECOND) long maxBytesPerSecond) {
+      checkArgument(parallelDegree > 0, "parallelDegree must be positive, was: %s", parallelDegree);
+      checkArgument(maxBytesPerSecond >= 0, "maxBytesPerSecond must not be negative, was: %s", maxBytesPerSecond);
+      this.lister = checkNotNull(lister, "lister");
+      this.rewriter = checkNotNull(rewriter, "rewriter");
+      this.remover = checkNotNull(remover, "remover");
+      this.existenceIndex = checkNotNull(existenceIndex, "existenceIndex");
+      this.metadataCache = checkNotNull(metadataCache, "metadataCache");
+      this.userExecutor = checkNotNull(userExecutor, "userExecutor");
+      this.parallelDegree = parallelDegree;
+      this.maxBytesPerSecond = maxBytesPerSecond;
+   }
+
+   /**
+    * Copies every object of {@code sourceBucket} that {@code destinationBucket} lacks or holds with other content,
+    * comparing sizes and then MD5 or CRC32C hashes. Objects with neither hash on both sides are copied.
+    *
+    * @param deleteExtras
+    *           whether to delete objects of the destination that the source does not have
+    * @param resumeFrom
+    *           a name passed to a {@link Checkpoint} by an earlier sync, or null to start at the first object
+    * @param checkpoint
+    *           receives resume points as the sync goes; may be null
+    */
+   public SyncResult sync(String sourceBucket, String destinationBucket, boolean deleteExtras,
+         @Nullable String resumeFrom, @Nullable Checkpoint checkpoint) {
+      ListObjectOptions options = new ListObjectOptions().projection(Projection.NO_ACL).fields(SYNC_FIELDS);
+      if (resumeFrom != null) {
+         options.startOffset(resumeFrom);
+      }
+      Run run = new Run(sourceBucket, destinationBucket);
+      PeekingIterator<GoogleCloudStorageObject> source = Iterators.peekingIterator(
+            lister.objects(sourceBucket, options).iterator());
+      PeekingIterator<GoogleCloudStorageObject> destination = Iterators.peekingIterator(
+            lister.objects(destinationBucket, options).iterator());
+      List<String> extras = Lists.newArrayListWithCapacity(BatchApi.MAX_REQUESTS);
+      try {
+         for (long listed = 1; source.hasNext() || destination.hasNext(); listed++) {
+            int order = !destination.hasNext() ? -1 : !source.hasNext() ? 1
+                  : NAME_ORDER.compare(source.peek().name(), destination.peek().name());
+            if (order < 0) {
+               run.copy(source.next());
+            } else if (order > 0) {
+               GoogleCloudStorageObject extra = destination.next();
+               run.lastListed = extra.name();
+               if (deleteExtras) {
+                  run.inFlight.add(extra.name());
+                  extras.add(extra.name());
+                  if (extras.size() == BatchApi.MAX_REQUESTS) {
+                     run.delete(extras);
+                     extras = Lists.newArrayListWithCapacity(BatchApi.MAX_REQUESTS);
+                  }
+               }
+            } else {
+               GoogleCloudStorageObject object = source.next();
+               if (isSame(object, destination.next())) {
+                  run.lastListed = object.name();
+                  run.unchanged.incrementAndGet();
+               } else {
+                  run.copy(object);
+               }
+            }
+            if (checkpoint != null && listed % CHECKPOINT_INTERVAL == 0) {
+               checkpoint.reached(run.resumeFrom());
+            }
+         }
+         if (!extras.isEmpty()) {
+            run.delete(extras);
+         }
+         // Every task has ended once all permits are free again.
+         run.permits.acquire(parallelDegree);
+      } catch (InterruptedException ie) {
+         Thread.currentThread().interrupt();
+         throw Throwables.propagate(ie);
+      }
+      if (checkpoint != null) {
+         checkpoint.reached(null);
+      }
+      SyncResult result = SyncResult.create(run.copied.get(), run.bytesCopied.get(), run.unchanged.get(),
+            run.deleted.get(), run.failures);
+      logger.debug("synced %s to %s: %s", sourceBucket, destinationBucket, result);
+      return result;
+   }
+
+   /** Whether two objects have the same content, as far as their sizes and hashes tell. */
+   static boolean isSame(GoogleCloudStorageObject source, GoogleCloudStorageObject destination) {
+      if (source.size() != destination.size()) {
+         return false;
+      }
+      if (source.md5Hash() != null && destination.md5Hash() != null) {
+         return source.md5Hash().equals(destination.md5Hash());
+      }
+      if (source.crc32c() != null && destination.crc32c() != null) {
+         return source.crc32c().equals(destination.crc32c());
+      }
+      return false;
+   }
+
+   /** The state of one sync. */
+   private final class Run {
+      private final String sourceBucket;
+      private final String destinationBucket;
+      private final Semaphore permits = new Semaphore(parallelDegree);
+      @Nullable private final RateLimiter bandwidth = maxBytesPerSecond == 0 ? null
+            : RateLimiter.create(maxBytesPerSecond);
+      /** Names being copied or deleted, which a resumed sync must visit again. */
+      private final ConcurrentSkipListSet<String> inFlight = new ConcurrentSkipListSet<String>(NAME_ORDER);
+      private final AtomicLong copied = new AtomicLong();
+      private final AtomicLong bytesCopied = new AtomicLong();
+      private final AtomicLong unchanged = new AtomicLong();
+      private final AtomicLong deleted = new AtomicLong();
+      private final ConcurrentMap<String, Throwable> failures = Maps.newConcurrentMap();
+      /** The last name taken from either listing; only the listing thread writes it. */
+      private volatile String lastListed;
+
+      Run(String sourceBucket, String destinationBucket) {
+         this.sourceBucket = sourceBucket;
+         this.destinationBucket = destinationBucket;
+      }
+
+      /** The first name still in flight, or else the last one listed, which a resumed sync would find in sync. */
+      @Nullable String resumeFrom() {
+         String first = Iterables.getFirst(inFlight, null);
+         return first != null ? first : lastListed;
+      }
+
+      void copy(final GoogleCloudStorageObject object) throws InterruptedException {
+         inFlight.add(object.name());
+         lastListed = object.name();
+         if (bandwidth != null) {
+            for (long remaining = object.size(); remaining > 0; remaining -= Integer.MAX_VALUE) {
+               bandwidth.acquire((int) Math.min(remaining, Integer.MAX_VALUE));
+            }
+         }
+         existenceIndex.added(destinationBucket, object.name());
+         submit(ImmutableList.of(object.name()), new Runnable() {
+            @Override
+            public void run() {
+               try {
+                  GoogleCloudStorageObject copy = rewriter.rewrite(sourceBucket, object.name(),
+                        object.generation(), destinationBucket, object.name(), null, null);
+                  copied.incrementAndGet();
+                  bytesCopied.addAndGet(copy.size());
+               } finally {
+                  metadataCache.invalidate(destinationBucket, object.name());
+               }
+            }
+         });
+      }
+
+      /**
+       * Deletes {@code names} from the listing thread. The remover sends its batches on the user executor and waits
+       * for them, so running it as a task there could leave no thread free for the batches.
+       */
+      void delete(List<String> names) {
+         try {
+            RemoveBlobsResult result = remover.remove(destinationBucket, names);
+            deleted.addAndGet(result.deleted() + result.notFound());
+            failures.putAll(result.failures());
+         } catch (RuntimeException re) {
+            logger.warn(re, "could not delete %s from %s", names, destinationBucket);
+            for (String name : names) {
+               failures.put(name, re);
+            }
+         } finally {
+            for (String name : names) {
+               metadataCache.invalidate(destinationBucket, name);
+            }
+            inFlight.removeAll(names);
+         }
+      }
+
+      /** Runs {@code task} on the user executor, recording its failure against each of {@code names}. */
+      private void submit(final List<String> names, final Runnable task) throws InterruptedException {
+         permits.acquire();
+         try {
+            userExecutor.execute(new Runnable() {
+               @Override
+               public void run() {
+                  try {
+                     task.run();
+                  } catch (RuntimeException re) {
+                     logger.warn(re, "could not sync %s from %s to %s", names, sourceBucket, destinationBucket);
+                     for (String name : names) {
+                        failures.put(name, re);
+                     }
+                  } finally {
+                     inFlight.removeAll(names);
+                     permits.release();
+                  }
+               }
+            });
+         } catch (RejectedExecutionException ree) {
+            inFlight.removeAll(names);
+            permits.release();
+            throw ree;
+         }
+      }
+   }
+}
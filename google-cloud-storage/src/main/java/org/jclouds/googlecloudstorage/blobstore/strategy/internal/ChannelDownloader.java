@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.strategy.internal;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.CRC32C_VALIDATION;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.blobstore.KeyNotFoundException;
+import org.jclouds.googlecloudstorage.GoogleCloudStorageApi;
+import org.jclouds.googlecloudstorage.blobstore.functions.MediaResponseToBlobMetadata;
+import org.jclouds.googlecloudstorage.util.Crc32cVerifyingInputStream;
+import org.jclouds.http.HttpResponse;
+import org.jclouds.http.options.HttpRequestOptions;
+import org.jclouds.io.Payload;
+
+import com.google.common.base.Throwables;
+import com.google.common.io.Closeables;
+
+/**
+ * Reads object data straight into a caller's {@link ByteBuffer}, channel or file. The response stream is read directly
+ * into heap buffers; direct buffers and channels are filled through one reused per-thread buffer, so reads allocate
+ * nothing per call. Whole objects are checked against their CRC32C as they are read, unless
+ * {@link org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants#CRC32C_VALIDATION} is off.
+ */
+@Singleton
+public class ChannelDownloader {
+
+   private static final int SCRATCH_SIZE = 64 * 1024;
+
+   private final GoogleCloudStorageApi api;
+   private final boolean crc32cValidation;
+   private final ThreadLocal<ByteBuffer> scratch = new ThreadLocal<ByteBuffer>() {
+      @Override
+      protected ByteBuffer initialValue() {
+         return ByteBuffer.allocate(SCRATCH_SIZE);
+      }
+   };
+
+   @Inject ChannelDownloader(GoogleCloudStorageApi api, @Named(CRC32C_VALIDATION) boolean crc32cValidation) {
+      this.api = checkNotNull(api, "api");
+      this.crc32cValidation = crc32cValidation;
+   }
+
+   /**
+    * Reads the object into {@code target} from its position, advancing the position past the bytes read.
+    *
+    * @return the number of bytes read
+    * @throws BufferOverflowException if the object is larger than the space remaining in {@code target}
+    * @throws KeyNotFoundException if the object does not exist
+    */
+   public int read(String bucketName, String objectName, ByteBuffer target, HttpRequestOptions options) {
+      checkNotNull(target, "target");
+      HttpResponse response = download(bucketName, objectName, options);
+      InputStream in = openStream(bucketName, objectName, response);
+      try {
+         Long length = response.getPayload() == null ? null
+               : response.getPayload().getContentMetadata().getContentLength();
+         if (length != null && length > target.remaining()) {
+            throw new BufferOverflowException();
+         }
+         int start = target.position();
+         if (target.hasArray()) {
+            byte[] array = target.array();
+            while (target.hasRemaining()) {
+               int read = in.read(array, target.arrayOffset() + target.position(), target.remaining());
+               if (read == -1) {
+                  break;
+               }
+               target.position(target.position() + read);
+            }
+         } else {
+            byte[] buffer = scratch.get().array();
+            while (target.hasRemaining()) {
+               int read = in.read(buffer, 0, Math.min(buffer.length, target.remaining()));
+               if (read == -1) {
+                  break;
+               }
+               target.put(buffer, 0, read);
+            }
+         }
+         if (!target.hasRemaining() && in.read() != -1) {
+            throw new BufferOverflowException();
+         }
+         return target.position() - start;
+      } catch (IOException ioe) {
+         throw Throwables.propagate(ioe);
+      } finally {
+         Closeables.closeQuietly(in);
+      }
+   }
+
+   /**
+    * Writes the object to {@code target}, which is left open.
+    *
+    * @return the number of bytes written
+    * @throws KeyNotFoundException if the object does not exist
+    */
+   public long transfer(String bucketName, String objectName, WritableByteChannel target,
+         HttpRequestOptions options) {
+      checkNotNull(target, "target");
+      InputStream in = openStream(bucketName, objectName, download(bucketName, objectName, options));
+      try {
+         ByteBuffer buffer = scratch.get();
+         long total = 0;
+         for (int read; (read = in.read(buffer.array())) != -1;) {
+            buffer.clear();
+            buffer.limit(read);
+            while (buffer.hasRemaining()) {
+               target.write(buffer);
+            }
+            total += read;
+         }
+         return total;
+      } catch (IOException ioe) {
+         throw Throwables.propagate(ioe);
+      } finally {
+         Closeables.closeQuietly(in);
+      }
+   }
+
+   /**
+    * Writes the object to the file at {@code target}, replacing its contents, with
+    * {@link FileChannel#transferFrom}.
+    *
+    * @return the number of bytes written
+    * @throws KeyNotFoundException if the object does not exist
+    */
+   public long transfer(String bucketName, String objectName, Path target, HttpRequestOptions options) {
+      checkNotNull(target, "target");
+      InputStream in = openStream(bucketName, objectName, download(bucketName, objectName, options));
+      try {
+         FileChannel file = FileChannel.open(target, CREATE, WRITE, TRUNCATE_EXISTING);
+         try {
+            return file.transferFrom(Channels.newChannel(in), 0, Long.MAX_VALUE);
+         } finally {
+            file.close();
+         }
+      } catch (IOException ioe) {
+         throw Throwables.propagate(ioe);
+      } finally {
+         Closeables.closeQuietly(in);
+      }
+   }
+
+   private HttpResponse download(String bucketName, String objectName, HttpRequestOptions options) {
+      HttpResponse response = api.getObjectApi().downloadResponse(bucketName, objectName, options);
+      if (response == null) {
+         throw new KeyNotFoundException(bucketName, objectName, "download");
+      }
+      return response;
+   }
+
+   private InputStream openStream(String bucketName, String objectName, HttpResponse response) {
+      Payload payload = response.getPayload();
+      try {
+         // An empty object may arrive without a payload.
+         InputStream in = payload == null ? new ByteArrayInputStream(new byte[0]) : payload.openStream();
+         String crc32c = crc32cValidation ? MediaResponseToBlobMetadata.wholeObjectCrc32c(response) : null;
+         return crc32c == null ? in : new Crc32cVerifyingInputStream(in, crc32c, bucketName + "/" + objectName);
+      } catch (IOException ioe) {
+         throw Throwables.propagate(ioe);
+      }
+   }
+}
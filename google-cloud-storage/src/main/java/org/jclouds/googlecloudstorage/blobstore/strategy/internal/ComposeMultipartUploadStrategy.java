@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.strategy.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.jclouds.Constants.PROPERTY_USER_THREADS;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.blobstore.domain.MultipartUpload;
+import org.jclouds.blobstore.reference.BlobStoreConstants;
+import org.jclouds.googlecloudstorage.GoogleCloudStorageApi;
+import org.jclouds.googlecloudstorage.blobstore.functions.BlobMetadataToObjectTemplate;
+import org.jclouds.googlecloudstorage.domain.GoogleCloudStorageObject;
+import org.jclouds.googlecloudstorage.domain.templates.ComposeObjectTemplate;
+import org.jclouds.googlecloudstorage.domain.templates.ComposeObjectTemplate.SourceObject;
+import org.jclouds.googlecloudstorage.domain.templates.ObjectTemplate;
+import org.jclouds.logging.Logger;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Composes the parts of a multipart upload into its destination object. A compose request accepts at most
+ * {@value #MAX_COMPONENTS} sources, so larger uploads are merged as a tree: each level composes groups of up to
+ * {@value #MAX_COMPONENTS} objects into intermediate objects, in parallel, until a single request can produce the
+ * destination. N parts take about log32(N) rounds.
+ *
+ * @see <a href="https://cloud.google.com/storage/docs/composite-objects" />
+ */
+@Singleton
+public class ComposeMultipartUploadStrategy {
+
+   public static final int MAX_COMPONENTS = 32;
+
+   @Resource
+   @Named(BlobStoreConstants.BLOBSTORE_LOGGER)
+   protected Logger logger = Logger.NULL;
+
+   private final GoogleCloudStorageApi api;
+   private final ListeningExecutorService userExecutor;
+   private final BlobMetadataToObjectTemplate blobMetadataToObjectTemplate;
+   private final MultipartComponentCleaner componentCleaner;
+
+   @Inject ComposeMultipartUploadStrategy(GoogleCloudStorageApi api,
+         @Named(PROPERTY_USER_THREADS) ListeningExecutorService userExecutor,
+         BlobMetadataToObjectTemplate blobMetadataToObjectTemplate, MultipartComponentCleaner componentCleaner) {
+      this.api = checkNotNull(api, "api");
+      this.userExecutor = checkNotNull(userExecutor, "userExecutor");
+      this.blobMetadataToObjectTemplate = checkNotNull(blobMetadataToObjectTemplate, "blobMetadataToObjectTemplate");
+      this.componentCleaner = checkNotNull(componentCleaner, "componentCleaner");
+   }
+
+   /**
+    * Name of the {@code index}th intermediate object composed at {@code level} of the tree. These share the
+    * {@code <uploadId>_} prefix of the parts so that listing the upload finds them as well.
+    */
+   public static String intermediateName(MultipartUpload mpu, int level, int index) {
+      return String.format("%s_compose_%d_%08d", mpu.id(), level, index);
+   }
+
+   /**
+    * Composes {@code partNames}, in order, into the destination of {@code mpu}. Parts are addressed by name only, since
+    * each upload owns its part names; intermediate objects are pinned to the generation their compose returned.
+    *
+    * @return the destination object
+    */
+   public GoogleCloudStorageObject execute(MultipartUpload mpu, List<String> partNames) {
+      checkArgument(!partNames.isEmpty(), "no parts to compose for upload %s", mpu.id());
+      List<SourceObject> sources = Lists.newArrayListWithCapacity(partNames.size());
+      for (String partName : partNames) {
+         sources.add(SourceObject.nameOnly(partName));
+      }
+
+      List<String> intermediates = Lists.newArrayList();
+      try {
+         for (int level = 1; sources.size() > MAX_COMPONENTS; level++) {
+            sources = composeLevel(mpu, level, sources, intermediates);
+         }
+         ObjectTemplate destination = blobMetadataToObjectTemplate.apply(mpu.blobMetadata());
+         return api.getObjectApi().composeObjects(mpu.containerName(), mpu.blobName(),
+               ComposeObjectTemplate.create(sources, destination));
+      } finally {
+         componentCleaner.schedule(mpu.containerName(), intermediates);
+      }
+   }
+
+   private List<SourceObject> composeLevel(MultipartUpload mpu, int level, List<SourceObject> sources,
+         List<String> intermediates) {
+      List<List<SourceObject>> groups = Lists.partition(sources, MAX_COMPONENTS);
+      List<ListenableFuture<SourceObject>> futures = Lists.newArrayListWithCapacity(groups.size());
+      for (int index = 0; index < groups.size(); index++) {
+         List<SourceObject> group = groups.get(index);
+         if (group.size() == 1) {
+            // Nothing to merge; carry the source up to the next level.
+            futures.add(Futures.immediateFuture(group.get(0)));
+         } else {
+            String name = intermediateName(mpu, level, index);
+            intermediates.add(name);
+            futures.add(compose(mpu, name, group));
+         }
+      }
+      try {
+         return Futures.allAsList(futures).get();
+      } catch (InterruptedException ie) {
+         Thread.currentThread().interrupt();
+         cancel(futures);
+         throw Throwables.propagate(ie);
+      } catch (ExecutionException ee) {
+         cancel(futures);
+         throw Throwables.propagate(ee.getCause());
+      }
+   }
+
+   private ListenableFuture<SourceObject> compose(final MultipartUpload mpu, final String name,
+         final List<SourceObject> group) {
+      final ObjectTemplate template = new ObjectTemplate().name(name)
+            .contentType(mpu.blobMetadata().getContentMetadata().getContentType());
+      return userExecutor.submit(new Callable<SourceObject>() {
+         @Override
+         public SourceObject call() {
+            GoogleCloudStorageObject composed = api.getObjectApi().composeObjects(mpu.containerName(), name,
+                  ComposeObjectTemplate.create(ImmutableList.copyOf(group), template));
+            return SourceObject.createWithPrecondition(composed.name(), composed.generation(),
+                  composed.generation());
+         }
+      });
+   }
+
+   private static void cancel(List<? extends ListenableFuture<?>> futures) {
+      for (ListenableFuture<?> future : futures) {
+         future.cancel(true);
+      }
+   }
+}
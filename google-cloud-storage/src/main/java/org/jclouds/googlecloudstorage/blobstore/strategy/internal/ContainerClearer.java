@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.strategy.internal;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collection;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.jclouds.googlecloudstorage.GoogleCloudStorageApi;
+import org.jclouds.googlecloudstorage.domain.DomainResourceReferences.Projection;
+import org.jclouds.googlecloudstorage.domain.GoogleCloudStorageObject;
+import org.jclouds.googlecloudstorage.domain.ListPageWithPrefixes;
+import org.jclouds.googlecloudstorage.domain.RemoveBlobsResult;
+import org.jclouds.googlecloudstorage.options.ListObjectOptions;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Iterables;
+
+/**
+ * Empties a bucket, or the part of it under a prefix, as a pipeline: the {@link PrefetchingObjectLister} keeps the
+ * next pages requested while the {@link BatchBlobRemover} deletes the objects already listed. The lister never runs
+ * more than its prefetch depth ahead, and the remover takes no more objects than it has batches in flight, so memory
+ * stays bounded however large the bucket.
+ */
+@Singleton
+public class ContainerClearer {
+
+   /** The fields deleting listed objects needs, for listings made only to clear a bucket. */
+   public static final String CLEAR_FIELDS = "items(name,generation,metageneration,size),nextPageToken,prefixes";
+
+   private final GoogleCloudStorageApi api;
+   private final PrefetchingObjectLister lister;
+   private final BatchBlobRemover remover;
+
+   @Inject ContainerClearer(GoogleCloudStorageApi api, PrefetchingObjectLister lister, BatchBlobRemover remover) {
+      this.api = checkNotNull(api, "api");
+      this.lister = checkNotNull(lister, "lister");
+      this.remover = checkNotNull(remover, "remover");
+   }
+
+   /**
+    * Deletes every object of {@code bucketName} matching {@code options}. With {@link ListObjectOptions#versions}
+    * set, every listed generation is deleted permanently, noncurrent versions included; otherwise only live objects
+    * are deleted, which on a bucket with versioning keeps them as noncurrent versions.
+    */
+   public RemoveBlobsResult clear(String bucketName, ListObjectOptions options) {
+      Iterable<GoogleCloudStorageObject> objects = lister.objects(bucketName, options);
+      if (isVersions(options)) {
+         return remover.removeVersions(bucketName, objects);
+      }
+      return remover.remove(bucketName, Iterables.transform(objects, new Function<GoogleCloudStorageObject, String>() {
+         @Override
+         public String apply(GoogleCloudStorageObject object) {
+            return object.name();
+         }
+      }));
+   }
+
+   /**
+    * Whether {@code bucketName} holds no object, counting noncurrent versions if {@code versions}. A bucket that does
+    * not exist is empty. Asks for a single result, so the check is cheap however large the bucket.
+    */
+   public boolean isEmpty(String bucketName, boolean versions) {
+      ListPageWithPrefixes<GoogleCloudStorageObject> page = api.getObjectApi().listObjects(bucketName,
+            new ListObjectOptions().versions(versions).maxResults(1).projection(Projection.NO_ACL)
+                  .fields(CLEAR_FIELDS));
+      return page == null || (Iterables.isEmpty(page) && page.prefixes().isEmpty());
+   }
+
+   private static boolean isVersions(ListObjectOptions options) {
+      Collection<String> versions = options.buildQueryParameters().get("versions");
+      return versions.contains("true");
+   }
+}
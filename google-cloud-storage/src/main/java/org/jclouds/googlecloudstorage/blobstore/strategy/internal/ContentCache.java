@@ -0,0 +1,257 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.strategy.internal;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.CONTENT_CACHE_DIRECTORY;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.CONTENT_CACHE_MAX_BYTES;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.blobstore.reference.BlobStoreConstants;
+import org.jclouds.googlecloudstorage.domain.GoogleCloudStorageObject;
+import org.jclouds.googlecloudstorage.options.GetObjectOptions;
+import org.jclouds.javax.annotation.Nullable;
+import org.jclouds.logging.Logger;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hashing;
+
+/**
+ * Keeps the content of objects in files under
+ * {@link org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants#CONTENT_CACHE_DIRECTORY}, one file per
+ * generation, so that an object read again is served from disk. Callers find the object's current generation with a
+ * metadata request, which is all a reread costs while the generation is unchanged.
+ * <p>
+ * The directory can be shared by the processes of a host. Files are downloaded under a temporary name and renamed
+ * into place atomically, so a file is either absent or complete. A file served is kept open, so it stays readable
+ * when another process evicts it. Each use updates a file's modification time, and once the files exceed
+ * {@link org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants#CONTENT_CACHE_MAX_BYTES}, the least
+ * recently used ones are deleted under a lock on the directory.
+ */
+@Singleton
+public class ContentCache {
+
+   private static final String TEMP_SUFFIX = ".tmp";
+   private static final String LOCK_FILE = ".lock";
+   /** Temporary files this old were left by a process that stopped while downloading. */
+   private static final long ABANDONED_TEMP_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+   private static final Comparator<Entry> LEAST_RECENTLY_USED = new Comparator<Entry>() {
+      @Override
+      public int compare(Entry a, Entry b) {
+         return a.lastUsed < b.lastUsed ? -1 : a.lastUsed == b.lastUsed ? 0 : 1;
+      }
+   };
+
+   @Resource
+   @Named(BlobStoreConstants.BLOBSTORE_LOGGER)
+   protected Logger logger = Logger.NULL;
+
+   private final ChannelDownloader downloader;
+   @Nullable private final Path directory;
+   private final long maxBytes;
+
+   @Inject ContentCache(ChannelDownloader downloader, @Named(CONTENT_CACHE_DIRECTORY) String directory,
+         @Named(CONTENT_CACHE_MAX_BYTES) long maxBytes) {
+      checkArgument(maxBytes > 0, "maxBytes must be positive, was: %s", maxBytes);
+      this.downloader = checkNotNull(downloader, "downloader");
+      this.directory = directory.isEmpty() ? null : Paths.get(directory);
+      this.maxBytes = maxBytes;
+   }
+
+   public boolean isEnabled() {
+      return directory != null;
+   }
+
+   /**
+    * Opens the cached content of {@code object}, downloading the generation it names if this host does not have it
+    * yet. The caller closes the channel.
+    *
+    * @return a channel positioned at the start of the content, or null if the object is larger than the cache or
+    *         stored gzip-encoded, as such objects are served decompressed and their content is not their stored bytes
+    */
+   @Nullable public FileChannel open(String bucketName, GoogleCloudStorageObject object) {
+      checkState(directory != null, "content cache is off");
+      if (object.size() > maxBytes || "gzip".equalsIgnoreCase(object.contentEncoding())) {
+         return null;
+      }
+      String key = key(bucketName, object.name());
+      Path file = directory.resolve(key + "-" + object.generation());
+      try {
+         try {
+            FileChannel channel = FileChannel.open(file, READ);
+            touch(file);
+            return channel;
+         } catch (NoSuchFileException missing) {
+            // Not on this host yet.
+         }
+         Files.createDirectories(directory);
+         Path temp = Files.createTempFile(directory, key + "-", TEMP_SUFFIX);
+         FileChannel channel;
+         try {
+            long written = downloader.transfer(bucketName, object.name(), temp,
+                  new GetObjectOptions().generation(object.generation()));
+            checkState(written == object.size(), "downloaded %s of %s bytes of %s/%s", written, object.size(),
+                  bucketName, object.name());
+            try {
+               Files.move(temp, file, ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException raced) {
+               // Another process finished the same download first; its file has the same content.
+            }
+            // Opened before evicting, which may delete the file.
+            channel = FileChannel.open(file, READ);
+         } finally {
+            Files.deleteIfExists(temp);
+         }
+         removeOtherGenerations(key, file);
+         evict();
+         return channel;
+      } catch (IOException ioe) {
+         throw Throwables.propagate(ioe);
+      }
+   }
+
+   private static void touch(Path file) {
+      try {
+         Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+      } catch (IOException ignored) {
+         // Evicted meanwhile, or not ours to change; the order of eviction is only a hint.
+      }
+   }
+
+   private void removeOtherGenerations(String key, Path current) throws IOException {
+      DirectoryStream<Path> generations = Files.newDirectoryStream(directory, key + "-*");
+      try {
+         for (Path file : generations) {
+            if (!file.equals(current) && !file.toString().endsWith(TEMP_SUFFIX)) {
+               Files.deleteIfExists(file);
+            }
+         }
+      } finally {
+         generations.close();
+      }
+   }
+
+   /** Deletes the least recently used files beyond the budget, holding the directory lock against other processes. */
+   private synchronized void evict() throws IOException {
+      FileChannel lockFile = FileChannel.open(directory.resolve(LOCK_FILE), CREATE, WRITE);
+      try {
+         FileLock lock = lockFile.lock();
+         try {
+            evictLocked();
+         } finally {
+            lock.release();
+         }
+      } finally {
+         lockFile.close();
+      }
+   }
+
+   private void evictLocked() throws IOException {
+      List<Entry> entries = Lists.newArrayList();
+      long total = 0;
+      long now = System.currentTimeMillis();
+      DirectoryStream<Path> files = Files.newDirectoryStream(directory);
+      try {
+         for (Path file : files) {
+            String fileName = file.getFileName().toString();
+            if (fileName.equals(LOCK_FILE)) {
+               continue;
+            }
+            BasicFileAttributes attributes;
+            try {
+               attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            } catch (NoSuchFileException gone) {
+               continue;
+            }
+            long lastUsed = attributes.lastModifiedTime().toMillis();
+            if (fileName.endsWith(TEMP_SUFFIX)) {
+               if (now - lastUsed > ABANDONED_TEMP_MILLIS) {
+                  Files.deleteIfExists(file);
+               }
+               continue;
+            }
+            entries.add(new Entry(file, attributes.size(), lastUsed));
+            total += attributes.size();
+         }
+      } finally {
+         files.close();
+      }
+      if (total <= maxBytes) {
+         return;
+      }
+      Collections.sort(entries, LEAST_RECENTLY_USED);
+      for (Entry entry : entries) {
+         if (total <= maxBytes) {
+            break;
+         }
+         try {
+            Files.deleteIfExists(entry.file);
+            total -= entry.size;
+            logger.debug("evicted %s from the content cache", entry.file);
+         } catch (IOException ioe) {
+            // Some platforms refuse to delete open files; another eviction will retry.
+            logger.debug("could not evict %s: %s", entry.file, ioe.getMessage());
+         }
+      }
+   }
+
+   /** Names the files of an object by a hash, since object names may hold any character. */
+   private static String key(String bucketName, String name) {
+      return Hashing.sha256().hashString(bucketName + "/" + name, UTF_8).toString();
+   }
+
+   private static final class Entry {
+      private final Path file;
+      private final long size;
+      private final long lastUsed;
+
+      Entry(Path file, long size, long lastUsed) {
+         this.file = file;
+         this.size = size;
+         this.lastUsed = lastUsed;
+      }
+   }
+}
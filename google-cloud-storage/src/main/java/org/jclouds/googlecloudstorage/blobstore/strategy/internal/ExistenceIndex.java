@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.strategy.internal;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.EXISTENCE_INDEX_FALSE_POSITIVE_RATE;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.EXISTENCE_INDEX_TTL;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.blobstore.reference.BlobStoreConstants;
+import org.jclouds.googlecloudstorage.domain.DomainResourceReferences.Projection;
+import org.jclouds.googlecloudstorage.domain.GoogleCloudStorageObject;
+import org.jclouds.googlecloudstorage.options.ListObjectOptions;
+import org.jclouds.javax.annotation.Nullable;
+import org.jclouds.logging.Logger;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+/**
+ * Answers that an object does not exist without a call, for buckets or prefixes that were indexed. An index is a
+ * Bloom filter of every name listed under its prefix, to which names written through the blob store are added. A name
+ * the filter lacks does not exist; any other name may, and is checked with the service.
+ * <p>
+ * The filter grows as names are added: once one is full, another twice its size and half its false positive rate
+ * follows, so the rate over all of them stays within
+ * {@link org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants#EXISTENCE_INDEX_FALSE_POSITIVE_RATE}.
+ * Objects that other clients write are unknown to the index, so it stops answering
+ * {@link org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants#EXISTENCE_INDEX_TTL} after it was built.
+ * Deleted names stay in the filter, which only costs a call when they are checked.
+ */
+@Singleton
+public class ExistenceIndex {
+
+   /** The number of names the first filter of an index is sized for. */
+   static final int INITIAL_CAPACITY = 64 * 1024;
+
+   private static final String INDEX_FIELDS = "items(name,generation,metageneration,size),nextPageToken";
+
+   @Resource
+   @Named(BlobStoreConstants.BLOBSTORE_LOGGER)
+   protected Logger logger = Logger.NULL;
+
+   private final PrefetchingObjectLister lister;
+   private final double falsePositiveRate;
+   private final long ttlNanos;
+   private final ConcurrentMap<String, List<Index>> indexes = Maps.newConcurrentMap();
+
+   @Inject ExistenceIndex(PrefetchingObjectLister lister,
+         @Named(EXISTENCE_INDEX_FALSE_POSITIVE_RATE) double falsePositiveRate, @Named(EXISTENCE_INDEX_TTL) long ttl) {
+      checkArgument(falsePositiveRate > 0 && falsePositiveRate < 1,
+            "falsePositiveRate must be between 0 and 1, was: %s", falsePositiveRate);
+      checkArgument(ttl > 0, "ttl must be positive, was: %s", ttl);
+      this.lister = checkNotNull(lister, "lister");
+      this.falsePositiveRate = falsePositiveRate;
+      this.ttlNanos = MILLISECONDS.toNanos(ttl);
+   }
+
+   /**
+    * Lists the names of {@code bucketName} under {@code prefix} into a new index, which replaces any earlier index of
+    * that prefix once complete. Names written while the listing runs are added to the new index too.
+    *
+    * @param prefix
+    *           the prefix of the names to index, or null for the whole bucket
+    * @return the number of names listed
+    */
+   public long build(String bucketName, @Nullable String prefix) {
+      Index index = new Index(prefix == null ? "" : prefix);
+      List<Index> bucketIndexes = bucketIndexes(bucketName);
+      bucketIndexes.add(index);
+      ListObjectOptions options = new ListObjectOptions().projection(Projection.NO_ACL).fields(INDEX_FIELDS);
+      if (!index.prefix.isEmpty()) {
+         options.prefix(index.prefix);
+      }
+      long listed = 0;
+      try {
+         for (GoogleCloudStorageObject object : lister.objects(bucketName, options)) {
+            index.put(object.name());
+            listed++;
+         }
+      } catch (RuntimeException re) {
+         bucketIndexes.remove(index);
+         throw re;
+      }
+      index.builtAt = System.nanoTime();
+      for (Index other : bucketIndexes) {
+         if (other != index && other.prefix.equals(index.prefix)) {
+            bucketIndexes.remove(other);
+         }
+      }
+      logger.debug("indexed %d names of %s under '%s'", listed, bucketName, index.prefix);
+      return listed;
+   }
+
+   /**
+    * Whether {@code name} certainly does not exist in {@code bucketName}. False means the service has to be asked.
+    */
+   public boolean isAbsent(String bucketName, String name) {
+      List<Index> bucketIndexes = indexes.get(bucketName);
+      if (bucketIndexes == null) {
+         return false;
+      }
+      long now = System.nanoTime();
+      for (Index index : bucketIndexes) {
+         if (index.builtAt == null || !name.startsWith(index.prefix)) {
+            continue;
+         }
+         if (now - index.builtAt >= ttlNanos) {
+            bucketIndexes.remove(index);
+         } else if (!index.mightContain(name)) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /** Records that {@code name} may exist, before the blob store writes it. */
+   public void added(String bucketName, String name) {
+      List<Index> bucketIndexes = indexes.get(bucketName);
+      if (bucketIndexes == null) {
+         return;
+      }
+      for (Index index : bucketIndexes) {
+         if (name.startsWith(index.prefix)) {
+            index.put(name);
+         }
+      }
+   }
+
+   /** Drops every index of {@code bucketName}. */
+   public void drop(String bucketName) {
+      indexes.remove(bucketName);
+   }
+
+   private List<Index> bucketIndexes(String bucketName) {
+      List<Index> created = new CopyOnWriteArrayList<Index>();
+      List<Index> existing = indexes.putIfAbsent(bucketName, created);
+      return existing != null ? existing : created;
+   }
+
+   /** A growing sequence of Bloom filters over the names under one prefix. */
+   private final class Index {
+      private final String prefix;
+      private final List<BloomFilter<CharSequence>> filters = Lists.newArrayList();
+      private int capacity;
+      private int inLast;
+      /** When the listing completed, from {@link System#nanoTime()}; null while it runs. */
+      private volatile Long builtAt;
+
+      Index(String prefix) {
+         this.prefix = prefix;
+      }
+
+      synchronized void put(String name) {
+         if (inLast == capacity) {
+            int generation = filters.size();
+            capacity = INITIAL_CAPACITY << Math.min(generation, 14);
+            filters.add(BloomFilter.create(Funnels.stringFunnel(UTF_8), capacity,
+                  falsePositiveRate / Math.pow(2, generation + 1)));
+            inLast = 0;
+         }
+         if (filters.get(filters.size() - 1).put(name)) {
+            inLast++;
+         }
+      }
+
+      synchronized boolean mightContain(String name) {
+         for (BloomFilter<CharSequence> filter : filters) {
+            if (filter.mightContain(name)) {
+               return true;
+            }
+         }
+         return false;
+      }
+   }
+}
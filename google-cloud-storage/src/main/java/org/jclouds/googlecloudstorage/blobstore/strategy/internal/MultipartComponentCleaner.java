@@ -0,0 +1,266 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.strategy.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.jclouds.Constants.PROPERTY_USER_THREADS;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.MPU_CLEANUP_PARALLEL_DEGREE;
+import static org.jclouds.googlecloudstorage.util.StorageRequests.encodeName;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.blobstore.reference.BlobStoreConstants;
+import org.jclouds.googlecloudstorage.GoogleCloudStorageApi;
+import org.jclouds.googlecloudstorage.domain.GoogleCloudStorageObject;
+import org.jclouds.googlecloudstorage.domain.ListPageWithPrefixes;
+import org.jclouds.googlecloudstorage.options.ListObjectOptions;
+import org.jclouds.logging.Logger;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Deletes the part and intermediate objects of multipart uploads in the background, at most
+ * {@link org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants#MPU_CLEANUP_PARALLEL_DEGREE} at a time.
+ * <p>
+ * {@link #sweep} removes the components left behind by uploads that never completed. Obtain the instance from the
+ * context injector to sweep a bucket or to read the backlog and lag counters.
+ */
+@Singleton
+public class MultipartComponentCleaner {
+
+   /** Matches {@code <uploadId>_%08d} parts as well as {@code <uploadId>_compose_<level>_%08d} intermediates. */
+   private static final Pattern COMPONENT_NAME = Pattern.compile(".+_(compose_\\d+_)?\\d{8}");
+
+   @Resource
+   @Named(BlobStoreConstants.BLOBSTORE_LOGGER)
+   protected Logger logger = Logger.NULL;
+
+   private final GoogleCloudStorageApi api;
+   private final PrefetchingObjectLister lister;
+   private final ListeningExecutorService userExecutor;
+   private final int parallelDegree;
+
+   private final Queue<PendingDelete> queue = new ConcurrentLinkedQueue<PendingDelete>();
+   private final AtomicInteger activeWorkers = new AtomicInteger();
+   private final AtomicLong backlog = new AtomicLong();
+   private final AtomicLong deleted = new AtomicLong();
+   private final AtomicLong notFound = new AtomicLong();
+   private final AtomicLong failed = new AtomicLong();
+   private final Object progress = new Object();
+
+   @Inject MultipartComponentCleaner(GoogleCloudStorageApi api, PrefetchingObjectLister lister,
+         @Named(PROPERTY_USER_THREADS) ListeningExecutorService userExecutor,
+         @Named(MPU_CLEANUP_PARALLEL_DEGREE) int parallelDegree) {
+      checkArgument(parallelDegree > 0, "parallelDegree must be positive, was: %s", parallelDegree);
+      this.api = checkNotNull(api, "api");
+      this.lister = checkNotNull(lister, "lister");
+      this.userExecutor = checkNotNull(userExecutor, "userExecutor");
+      this.parallelDegree = parallelDegree;
+   }
+
+   /**
+    * Queues {@code names} for deletion.
+    *
+    * @return a future that completes once every name has been processed. It fails with the first error if any delete
+    *         failed; failures are also logged and counted. A component that is already gone is counted, not an
+    *         error.
+    */
+   public ListenableFuture<Void> schedule(String container, Iterable<String> names) {
+      Batch batch = new Batch();
+      long now = System.nanoTime();
+      List<PendingDelete> pending = Lists.newArrayList();
+      for (String name : names) {
+         pending.add(new PendingDelete(container, name, now, batch));
+      }
+      if (pending.isEmpty()) {
+         batch.done.set(null);
+         return batch.done;
+      }
+      // Count the whole batch before queueing any of it, as a running worker may take its first name at once.
+      batch.remaining.set(pending.size());
+      backlog.addAndGet(pending.size());
+      queue.addAll(pending);
+      startWorkers();
+      return batch.done;
+   }
+
+   /**
+    * Deletes the multipart components under {@code prefix} that were last updated more than {@code maxAge} ago. Any
+    * object whose name ends in {@code _} and eight digits counts as a component, so choose a prefix that holds no
+    * application objects named that way.
+    *
+    * @return the number of components queued for deletion
+    */
+   public long sweep(String container, String prefix, long maxAge, TimeUnit unit) {
+      long cutoff = System.currentTimeMillis() - unit.toMillis(maxAge);
+      long swept = 0;
+      for (ListPageWithPrefixes<GoogleCloudStorageObject> page :
+            lister.pages(container, new ListObjectOptions().prefix(prefix))) {
+         for (GoogleCloudStorageObject object : page) {
+            if (COMPONENT_NAME.matcher(object.name()).matches() && object.updated().getTime() < cutoff) {
+               swept++;
+               backlog.incrementAndGet();
+               queue.add(new PendingDelete(container, object.name(), System.nanoTime(), null));
+            }
+         }
+         startWorkers();
+         // Keep at most about one page queued so that sweeping a large bucket stays within bounded memory.
+         awaitBacklogBelow(page.size());
+      }
+      return swept;
+   }
+
+   /** Number of deletions queued or in flight. */
+   public long getBacklog() {
+      return backlog.get();
+   }
+
+   /** Time, in milliseconds, that the oldest queued deletion has been waiting. */
+   public long getLagMillis() {
+      PendingDelete oldest = queue.peek();
+      return oldest == null ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest.queuedAt);
+   }
+
+   public long getDeletedCount() {
+      return deleted.get();
+   }
+
+   /** Components that were already gone when their delete was sent. */
+   public long getNotFoundCount() {
+      return notFound.get();
+   }
+
+   public long getFailedCount() {
+      return failed.get();
+   }
+
+   private void awaitBacklogBelow(long limit) {
+      synchronized (progress) {
+         while (backlog.get() > limit) {
+            try {
+               progress.wait(1000);
+            } catch (InterruptedException ie) {
+               Thread.currentThread().interrupt();
+               throw Throwables.propagate(ie);
+            }
+         }
+      }
+   }
+
+   private void startWorkers() {
+      while (!queue.isEmpty()) {
+         int active = activeWorkers.get();
+         if (active >= parallelDegree) {
+            return;
+         }
+         if (activeWorkers.compareAndSet(active, active + 1)) {
+            try {
+               userExecutor.execute(new Worker());
+            } catch (RejectedExecutionException ree) {
+               activeWorkers.decrementAndGet();
+               logger.warn(ree, "could not start cleanup of %s multipart components", backlog.get());
+               return;
+            }
+         }
+      }
+   }
+
+   private void delete(PendingDelete pending) {
+      try {
+         // The delete's fallback turns a 404 into false.
+         if (api.getObjectApi().deleteObject(pending.container, encodeName(pending.name))) {
+            deleted.incrementAndGet();
+         } else {
+            notFound.incrementAndGet();
+            logger.debug("multipart component %s in %s was already gone", pending.name, pending.container);
+         }
+      } catch (RuntimeException re) {
+         failed.incrementAndGet();
+         logger.warn(re, "could not delete multipart component %s in %s", pending.name, pending.container);
+         if (pending.batch != null) {
+            pending.batch.failure.compareAndSet(null, re);
+         }
+      } finally {
+         backlog.decrementAndGet();
+         if (pending.batch != null && pending.batch.remaining.decrementAndGet() == 0) {
+            Throwable failure = pending.batch.failure.get();
+            if (failure == null) {
+               pending.batch.done.set(null);
+            } else {
+               pending.batch.done.setException(failure);
+            }
+         }
+         synchronized (progress) {
+            progress.notifyAll();
+         }
+      }
+   }
+
+   private final class Worker implements Runnable {
+      @Override
+      public void run() {
+         try {
+            PendingDelete pending;
+            while ((pending = queue.poll()) != null) {
+               delete(pending);
+            }
+         } finally {
+            activeWorkers.decrementAndGet();
+         }
+         // A deletion queued while this worker was exiting may otherwise have no worker.
+         startWorkers();
+      }
+   }
+
+   private static final class Batch {
+      private final AtomicInteger remaining = new AtomicInteger();
+      private final SettableFuture<Void> done = SettableFuture.create();
+      private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+   }
+
+   private static final class PendingDelete {
+      private final String container;
+      private final String name;
+      private final long queuedAt;
+      private final Batch batch;
+
+      PendingDelete(String container, String name, long queuedAt, Batch batch) {
+         this.container = container;
+         this.name = name;
+         this.queuedAt = queuedAt;
+         this.batch = batch;
+      }
+   }
+}
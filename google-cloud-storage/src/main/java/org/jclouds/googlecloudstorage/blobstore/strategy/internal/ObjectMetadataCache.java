@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.strategy.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.METADATA_CACHE_REVALIDATE_AFTER;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.METADATA_CACHE_SIZE;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.METADATA_CACHE_TTL;
+
+import java.util.Iterator;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.blobstore.reference.BlobStoreConstants;
+import org.jclouds.googlecloudstorage.GoogleCloudStorageApi;
+import org.jclouds.googlecloudstorage.domain.DomainResourceReferences.Projection;
+import org.jclouds.googlecloudstorage.domain.GoogleCloudStorageObject;
+import org.jclouds.googlecloudstorage.options.GetObjectOptions;
+import org.jclouds.http.HttpResponseException;
+import org.jclouds.javax.annotation.Nullable;
+import org.jclouds.logging.Logger;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * Keeps the metadata of recently read objects, keyed by bucket and name, so that repeated lookups of the same objects
+ * cost no call. Holds at most
+ * {@link org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants#METADATA_CACHE_SIZE} entries, each for at
+ * most
+ * {@link org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants#METADATA_CACHE_TTL}; a size of zero
+ * turns the cache off.
+ * <p>
+ * An entry older than
+ * {@link org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants#METADATA_CACHE_REVALIDATE_AFTER} is
+ * revalidated with {@code ifGenerationNotMatch} before it is served: the service answers 304 without a body while the
+ * generation is the same. Metadata changed in place by another client keeps the generation, so it shows once the entry
+ * expires. Changes made through the blob store invalidate entries at once.
+ */
+@Singleton
+public class ObjectMetadataCache {
+
+   @Resource
+   @Named(BlobStoreConstants.BLOBSTORE_LOGGER)
+   protected Logger logger = Logger.NULL;
+
+   private final GoogleCloudStorageApi api;
+   @Nullable private final Cache<String, Entry> cache;
+   private final long revalidateAfterNanos;
+
+   @Inject ObjectMetadataCache(GoogleCloudStorageApi api, @Named(METADATA_CACHE_SIZE) long size,
+         @Named(METADATA_CACHE_TTL) long ttl, @Named(METADATA_CACHE_REVALIDATE_AFTER) long revalidateAfter) {
+      checkArgument(size >= 0, "size must not be negative, was: %s", size);
+      checkArgument(ttl > 0, "ttl must be positive, was: %s", ttl);
+      checkArgument(revalidateAfter >= 0, "revalidateAfter must not be negative, was: %s", revalidateAfter);
+      this.api = checkNotNull(api, "api");
+      this.cache = size == 0 ? null : CacheBuilder.newBuilder().maximumSize(size).expireAfterWrite(ttl, MILLISECONDS)
+            .recordStats().<String, Entry> build();
+      this.revalidateAfterNanos = MILLISECONDS.toNanos(revalidateAfter);
+   }
+
+   /** The metadata of {@code name} without its ACL, or null if there is no such object. */
+   @Nullable public GoogleCloudStorageObject get(String bucketName, String name) {
+      if (cache == null) {
+         return fetch(bucketName, name, new GetObjectOptions());
+      }
+      String key = key(bucketName, name);
+      Entry entry = cache.getIfPresent(key);
+      if (entry == null) {
+         return load(key, bucketName, name, new GetObjectOptions());
+      }
+      if (System.nanoTime() - entry.verified < revalidateAfterNanos) {
+         return entry.object;
+      }
+      try {
+         return load(key, bucketName, name, new GetObjectOptions().ifGenerationNotMatch(entry.object.generation()));
+      } catch (RuntimeException re) {
+         if (!isNotModified(re)) {
+            throw re;
+         }
+         entry.verified = System.nanoTime();
+         return entry.object;
+      }
+   }
+
+   /** Forgets {@code name}, after the blob store changes or removes it. */
+   public void invalidate(String bucketName, String name) {
+      if (cache != null) {
+         cache.invalidate(key(bucketName, name));
+      }
+   }
+
+   /** Forgets every object of {@code bucketName}, after a change to an unknown set of them. */
+   public void invalidateAll(String bucketName) {
+      if (cache == null) {
+         return;
+      }
+      String prefix = key(bucketName, "");
+      for (Iterator<String> keys = cache.asMap().keySet().iterator(); keys.hasNext();) {
+         if (keys.next().startsWith(prefix)) {
+            keys.remove();
+         }
+      }
+   }
+
+   /** Hits, misses and evictions so far; all zero while the cache is off. */
+   public CacheStats stats() {
+      return cache == null ? new CacheStats(0, 0, 0, 0, 0, 0) : cache.stats();
+   }
+
+   @Nullable private GoogleCloudStorageObject load(String key, String bucketName, String name,
+         GetObjectOptions options) {
+      GoogleCloudStorageObject object = fetch(bucketName, name, options);
+      if (object == null) {
+         cache.invalidate(key);
+      } else {
+         cache.put(key, new Entry(object));
+      }
+      return object;
+   }
+
+   @Nullable private GoogleCloudStorageObject fetch(String bucketName, String name, GetObjectOptions options) {
+      return api.getObjectApi().getObject(bucketName, name, options.projection(Projection.NO_ACL));
+   }
+
+   /** Whether {@code re} was thrown for a 304 response, meaning the generation did not change. */
+   private static boolean isNotModified(RuntimeException re) {
+      for (Throwable cause : Throwables.getCausalChain(re)) {
+         if (cause instanceof HttpResponseException) {
+            HttpResponseException hre = (HttpResponseException) cause;
+            return hre.getResponse() != null && hre.getResponse().getStatusCode() == 304;
+         }
+      }
+      return false;
+   }
+
+   /** Bucket names cannot hold a slash, so the first one ends the bucket name. */
+   private static String key(String bucketName, String name) {
+      return bucketName + "/" + name;
+   }
+
+   private static final class Entry {
+      private final GoogleCloudStorageObject object;
+      /** When the service last confirmed the entry, from {@link System#nanoTime()}. */
+      private volatile long verified = System.nanoTime();
+
+      Entry(GoogleCloudStorageObject object) {
+         this.object = object;
+      }
+   }
+}
@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.strategy.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static org.jclouds.Constants.PROPERTY_USER_THREADS;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.REWRITE_ATTEMPTS;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.REWRITE_MAX_BYTES_PER_CALL;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.REWRITE_PARALLEL_DEGREE;
+import static org.jclouds.googlecloudstorage.util.StorageRequests.encodeName;
+import static org.jclouds.googlecloudstorage.util.StorageRequests.isRetryable;
+
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.blobstore.reference.BlobStoreConstants;
+import org.jclouds.googlecloudstorage.GoogleCloudStorageApi;
+import org.jclouds.googlecloudstorage.domain.CopyObjectsResult;
+import org.jclouds.googlecloudstorage.domain.GoogleCloudStorageObject;
+import org.jclouds.googlecloudstorage.domain.RewriteResponse;
+import org.jclouds.googlecloudstorage.domain.templates.ObjectTemplate;
+import org.jclouds.googlecloudstorage.options.RewriteObjectOptions;
+import org.jclouds.javax.annotation.Nullable;
+import org.jclouds.logging.Logger;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Copies objects with the rewrite method, which copies within the service across locations and storage classes and
+ * objects of any size. A rewrite that cannot finish in one call returns a token; calls are repeated with it until the
+ * object is done. A call that fails with an I/O or server error is retried with the same token, so progress is kept.
+ * A first call that times out is retried copying half as many bytes per call; once a token is issued the limit stays
+ * fixed, as the service rejects a token whose call limit has changed.
+ *
+ * @see <a href="https://cloud.google.com/storage/docs/json_api/v1/objects/rewrite" />
+ */
+@Singleton
+public class ObjectRewriter {
+
+   /** {@code maxBytesRewrittenPerCall} must be a multiple of this. */
+   public static final long REWRITE_GRANULARITY = 1024 * 1024;
+
+   /** The per call limit set when a call times out with no limit configured. */
+   private static final long TIMEOUT_MAX_BYTES_PER_CALL = 256 * REWRITE_GRANULARITY;
+
+   /** Receives the progress of rewrites. Calls for objects of a bulk copy may come from several threads at once. */
+   public interface Progress {
+      /** Called after each successful rewrite call. */
+      void rewritten(String sourceBucket, String sourceObject, long totalBytesRewritten, long objectSize);
+   }
+
+   @Resource
+   @Named(BlobStoreConstants.BLOBSTORE_LOGGER)
+   protected Logger logger = Logger.NULL;
+
+   private final GoogleCloudStorageApi api;
+   private final ListeningExecutorService userExecutor;
+   private final long maxBytesPerCall;
+   private final int parallelDegree;
+   private final int attempts;
+
+   @Inject ObjectRewriter(GoogleCloudStorageApi api,
+         @Named(PROPERTY_USER_THREADS) ListeningExecutorService userExecutor,
+         @Named(REWRITE_MAX_BYTES_PER_CALL) long maxBytesPerCall, @Named(REWRITE_PARALLEL_DEGREE) int parallelDegree,
+         @Named(REWRITE_ATTEMPTS) int attempts) {
+      checkArgument(maxBytesPerCall >= 0 && maxBytesPerCall % REWRITE_GRANULARITY == 0,
+            "maxBytesPerCall must be zero or a positive multiple of %s, was: %s", REWRITE_GRANULARITY,
+            maxBytesPerCall);
+      checkArgument(parallelDegree > 0, "parallelDegree must be positive, was: %s", parallelDegree);
+      checkArgument(attempts > 0, "attempts must be positive, was: %s", attempts);
+      this.api = checkNotNull(api, "api");
+      this.userExecutor = checkNotNull(userExecutor, "userExecutor");
+      this.maxBytesPerCall = maxBytesPerCall;
+      this.parallelDegree = parallelDegree;
+      this.attempts = attempts;
+   }
+
+   /**
+    * Copies {@code sourceObject} to {@code destinationObject}, keeping the source's metadata unless a
+    * {@code template} is given.
+    *
+    * @return the new object
+    */
+   public GoogleCloudStorageObject rewrite(String sourceBucket, String sourceObject, String destinationBucket,
+         String destinationObject, @Nullable ObjectTemplate template, @Nullable Progress progress) {
+      return rewrite(sourceBucket, sourceObject, null, destinationBucket, destinationObject, template, progress);
+   }
+
+   /**
+    * Copies the given generation of {@code sourceObject}, or its live version if {@code sourceGeneration} is null, to
+    * {@code destinationObject}, keeping the source's metadata unless a {@code template} is given.
+    *
+    * @return the new object
+    */
+   public GoogleCloudStorageObject rewrite(String sourceBucket, String sourceObject, @Nullable Long sourceGeneration,
+         String destinationBucket, String destinationObject, @Nullable ObjectTemplate template,
+         @Nullable Progress progress) {
+      String source = encodeName(sourceObject);
+      String destination = encodeName(destinationObject);
+      String token = null;
+      long maxBytes = maxBytesPerCall;
+      int failures = 0;
+      for (int calls = 1;; calls++) {
+         RewriteObjectOptions options = new RewriteObjectOptions();
+         if (sourceGeneration != null) {
+            options.sourceGeneration(sourceGeneration);
+         }
+         if (token != null) {
+            options.rewriteToken(token);
+         }
+         if (maxBytes > 0) {
+            options.maxBytesRewrittenPerCall(maxBytes);
+         }
+         RewriteResponse response;
+         try {
+            response = template == null
+                  ? api.getObjectApi().rewriteObjects(destinationBucket, destination, sourceBucket, source, options)
+                  : api.getObjectApi().rewriteObjects(destinationBucket, destination, sourceBucket, source, template,
+                        options);
+         } catch (RuntimeException re) {
+            if (++failures >= attempts || !isRetryable(re)) {
+               throw re;
+            }
+            if (isTimeout(re) && token == null) {
+               maxBytes = maxBytes == 0 ? TIMEOUT_MAX_BYTES_PER_CALL
+                     : Math.max(REWRITE_GRANULARITY, maxBytes / 2 / REWRITE_GRANULARITY * REWRITE_GRANULARITY);
+            }
+            logger.debug("retrying rewrite of %s/%s after: %s", sourceBucket, sourceObject, re.getMessage());
+            continue;
+         }
+         failures = 0;
+         if (progress != null) {
+            progress.rewritten(sourceBucket, sourceObject, response.totalBytesRewritten(), response.objectSize());
+         }
+         if (response.done()) {
+            logger.debug("rewrote %s/%s to %s/%s in %d calls", sourceBucket, sourceObject, destinationBucket,
+                  destinationObject, calls);
+            return checkNotNull(response.resource(), "resource of a finished rewrite");
+         }
+         token = response.rewriteToken();
+         checkState(token != null, "rewrite of %s/%s not done and without a token", sourceBucket, sourceObject);
+      }
+   }
+
+   /**
+    * Copies each of {@code names} from {@code sourceBucket} to the same name in {@code destinationBucket}, rewriting
+    * up to {@link org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants#REWRITE_PARALLEL_DEGREE}
+    * objects at a time. Names are read as copies start, so {@code names} may be a lazy view of a listing.
+    */
+   public CopyObjectsResult rewriteAll(final String sourceBucket, Iterable<String> names,
+         final String destinationBucket, @Nullable final Progress progress) {
+      final AtomicLong copied = new AtomicLong();
+      final AtomicLong bytesCopied = new AtomicLong();
+      final ConcurrentMap<String, Throwable> failures = Maps.newConcurrentMap();
+      final Semaphore inFlight = new Semaphore(parallelDegree);
+      try {
+         for (final String name : names) {
+            inFlight.acquire();
+            try {
+               userExecutor.execute(new Runnable() {
+                  @Override
+                  public void run() {
+                     try {
+                        GoogleCloudStorageObject object = rewrite(sourceBucket, name, destinationBucket, name, null,
+                              progress);
+                        copied.incrementAndGet();
+                        bytesCopied.addAndGet(object.size());
+                     } catch (RuntimeException re) {
+                        logger.warn(re, "could not copy %s from %s to %s", name, sourceBucket, destinationBucket);
+                        failures.put(name, re);
+                     } finally {
+                        inFlight.release();
+                     }
+                  }
+               });
+            } catch (RejectedExecutionException ree) {
+               inFlight.release();
+               throw ree;
+            }
+         }
+         // Every copy has ended once all permits are free again.
+         inFlight.acquire(parallelDegree);
+      } catch (InterruptedException ie) {
+         Thread.currentThread().interrupt();
+         throw Throwables.propagate(ie);
+      }
+      return CopyObjectsResult.create(copied.get(), bytesCopied.get(), failures);
+   }
+
+   private static boolean isTimeout(RuntimeException re) {
+      for (Throwable cause : Throwables.getCausalChain(re)) {
+         if (cause instanceof SocketTimeoutException) {
+            return true;
+         }
+      }
+      return false;
+   }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.strategy.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.file.StandardOpenOption.READ;
+import static org.jclouds.Constants.PROPERTY_USER_THREADS;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.CRC32C_PARALLEL_DEGREE;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.CRC32C_SEGMENT_SIZE;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.googlecloudstorage.util.Crc32c;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Computes the CRC32C of a local file, such as one about to be uploaded, as concurrent segments of
+ * {@link org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants#CRC32C_SEGMENT_SIZE} bytes whose
+ * checksums are then {@linkplain Crc32c#combine combined}. At most
+ * {@link org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants#CRC32C_PARALLEL_DEGREE} segments are read
+ * at once, each through positional reads of one shared channel.
+ */
+@Singleton
+public class ParallelCrc32c {
+
+   private static final int BUFFER_SIZE = 64 * 1024;
+
+   private final ListeningExecutorService userExecutor;
+   private final long segmentSize;
+   private final int parallelDegree;
+
+   @Inject ParallelCrc32c(@Named(PROPERTY_USER_THREADS) ListeningExecutorService userExecutor,
+         @Named(CRC32C_SEGMENT_SIZE) long segmentSize, @Named(CRC32C_PARALLEL_DEGREE) int parallelDegree) {
+      checkArgument(segmentSize > 0, "segmentSize must be positive, was: %s", segmentSize);
+      checkArgument(parallelDegree > 0, "parallelDegree must be positive, was: %s", parallelDegree);
+      this.userExecutor = checkNotNull(userExecutor, "userExecutor");
+      this.segmentSize = segmentSize;
+      this.parallelDegree = parallelDegree;
+   }
+
+   /**
+    * @return the file's CRC32C, as an unsigned value; see {@link Crc32c#toBase64(long)} for the form the service gives
+    */
+   public long checksum(Path file) throws IOException {
+      FileChannel channel = FileChannel.open(checkNotNull(file, "file"), READ);
+      try {
+         return checksum(channel, channel.size());
+      } finally {
+         channel.close();
+      }
+   }
+
+   /** The CRC32C of the first {@code size} bytes of {@code channel}, which is left open. */
+   public long checksum(FileChannel channel, long size) throws IOException {
+      Semaphore inFlight = new Semaphore(parallelDegree);
+      List<ListenableFuture<Long>> futures = Lists.newArrayList();
+      try {
+         for (long first = 0; first < size; first += segmentSize) {
+            inFlight.acquire();
+            futures.add(checksum(channel, first, Math.min(segmentSize, size - first), inFlight));
+         }
+         long crc = 0;
+         for (int i = 0; i < futures.size(); i++) {
+            long first = i * segmentSize;
+            crc = Crc32c.combine(crc, futures.get(i).get(), Math.min(segmentSize, size - first));
+         }
+         return crc;
+      } catch (InterruptedException ie) {
+         Thread.currentThread().interrupt();
+         cancel(futures);
+         throw Throwables.propagate(ie);
+      } catch (ExecutionException ee) {
+         cancel(futures);
+         Throwables.propagateIfInstanceOf(ee.getCause(), IOException.class);
+         throw Throwables.propagate(ee.getCause());
+      }
+   }
+
+   private ListenableFuture<Long> checksum(final FileChannel channel, final long first, final long length,
+         final Semaphore inFlight) {
+      try {
+         return userExecutor.submit(new Callable<Long>() {
+            @Override
+            public Long call() throws IOException {
+               try {
+                  return checksumSegment(channel, first, length);
+               } finally {
+                  inFlight.release();
+               }
+            }
+         });
+      } catch (RuntimeException re) {
+         inFlight.release();
+         throw re;
+      }
+   }
+
+   private static long checksumSegment(FileChannel channel, long first, long length) throws IOException {
+      Crc32c checksum = new Crc32c();
+      ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, length));
+      for (long position = first, end = first + length; position < end;) {
+         buffer.clear();
+         buffer.limit((int) Math.min(buffer.capacity(), end - position));
+         int read = channel.read(buffer, position);
+         if (read == -1) {
+            throw new EOFException("file ended at byte " + position + " of " + end);
+         }
+         checksum.update(buffer.array(), 0, read);
+         position += read;
+      }
+      return checksum.getValue();
+   }
+
+   private static void cancel(List<ListenableFuture<Long>> futures) {
+      for (ListenableFuture<Long> future : futures) {
+         // Interrupting a thread in a FileChannel read closes the channel, so running segments are left to end.
+         future.cancel(false);
+      }
+   }
+}
@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.strategy.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.jclouds.Constants.PROPERTY_USER_THREADS;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.MPU_MAX_BUFFERED_BYTES;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.MPU_PARALLEL_DEGREE;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.MPU_PART_SIZE;
+
+import java.math.RoundingMode;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.blobstore.BlobStore;
+import org.jclouds.blobstore.domain.Blob;
+import org.jclouds.blobstore.domain.MultipartPart;
+import org.jclouds.blobstore.domain.MultipartUpload;
+import org.jclouds.blobstore.reference.BlobStoreConstants;
+import org.jclouds.io.Payload;
+import org.jclouds.io.PayloadSlicer;
+import org.jclouds.logging.Logger;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.math.LongMath;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Uploads the parts of a multipart blob concurrently on the user executor. At most
+ * {@link org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants#MPU_PARALLEL_DEGREE} parts, and at most
+ * {@link org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants#MPU_MAX_BUFFERED_BYTES} bytes, are in
+ * flight at any time. The first failed part stops the parts not yet sent, and once the parts in flight have ended,
+ * aborts the upload.
+ */
+@Singleton
+public class ParallelMultipartUploadStrategy {
+
+   @Resource
+   @Named(BlobStoreConstants.BLOBSTORE_LOGGER)
+   protected Logger logger = Logger.NULL;
+
+   private final PayloadSlicer slicer;
+   private final ListeningExecutorService userExecutor;
+   private final long partSize;
+   private final int parallelDegree;
+   private final long maxBufferedBytes;
+
+   @Inject ParallelMultipartUploadStrategy(PayloadSlicer slicer,
+         @Named(PROPERTY_USER_THREADS) ListeningExecutorService userExecutor, @Named(MPU_PART_SIZE) long partSize,
+         @Named(MPU_PARALLEL_DEGREE) int parallelDegree, @Named(MPU_MAX_BUFFERED_BYTES) long maxBufferedBytes) {
+      checkArgument(partSize > 0, "partSize must be positive, was: %s", partSize);
+      checkArgument(parallelDegree > 0, "parallelDegree must be positive, was: %s", parallelDegree);
+      this.slicer = checkNotNull(slicer, "slicer");
+      this.userExecutor = checkNotNull(userExecutor, "userExecutor");
+      this.partSize = partSize;
+      this.parallelDegree = parallelDegree;
+      this.maxBufferedBytes = maxBufferedBytes;
+   }
+
+   public String execute(BlobStore blobStore, String container, Blob blob) {
+      long contentLength = checkNotNull(blob.getMetadata().getContentMetadata().getContentLength(), "contentLength");
+      return execute(blobStore, container, blob, partSize(blobStore, contentLength));
+   }
+
+   /**
+    * Uploads {@code blob} in parts of exactly {@code partSize} bytes, except for the last one.
+    */
+   public String execute(BlobStore blobStore, String container, Blob blob, long partSize) {
+      MultipartUpload mpu = blobStore.initiateMultipartUpload(container, blob.getMetadata());
+      Semaphore inFlight = new Semaphore(partsInFlight(partSize));
+      AtomicBoolean failed = new AtomicBoolean();
+      List<ListenableFuture<MultipartPart>> futures = Lists.newArrayList();
+      try {
+         Iterator<Payload> payloads = slicer.slice(blob.getPayload(), partSize).iterator();
+         // Acquire before slicing so that non-repeatable payloads are not buffered beyond the limit.
+         for (int partNumber = 1;; partNumber++) {
+            inFlight.acquire();
+            if (failed.get() || !payloads.hasNext()) {
+               inFlight.release();
+               break;
+            }
+            futures.add(uploadPart(blobStore, mpu, partNumber, payloads.next(), inFlight, failed));
+         }
+         List<MultipartPart> parts = Futures.allAsList(futures).get();
+         return blobStore.completeMultipartUpload(mpu, parts);
+      } catch (InterruptedException ie) {
+         Thread.currentThread().interrupt();
+         abort(blobStore, mpu, futures, failed);
+         throw Throwables.propagate(ie);
+      } catch (ExecutionException ee) {
+         abort(blobStore, mpu, futures, failed);
+         throw Throwables.propagate(ee.getCause());
+      } catch (RuntimeException re) {
+         abort(blobStore, mpu, futures, failed);
+         throw re;
+      }
+   }
+
+   private ListenableFuture<MultipartPart> uploadPart(final BlobStore blobStore, final MultipartUpload mpu,
+         final int partNumber, final Payload payload, final Semaphore inFlight, final AtomicBoolean failed) {
+      try {
+         return userExecutor.submit(new Callable<MultipartPart>() {
+            @Override
+            public MultipartPart call() {
+               try {
+                  // A part queued before the upload failed is not sent.
+                  return failed.get() ? null : blobStore.uploadMultipartPart(mpu, partNumber, payload);
+               } catch (RuntimeException re) {
+                  failed.set(true);
+                  throw re;
+               } finally {
+                  inFlight.release();
+               }
+            }
+         });
+      } catch (RuntimeException re) {
+         inFlight.release();
+         throw re;
+      }
+   }
+
+   /**
+    * Waits for every part upload to end before aborting, so that no part lands after the abort has deleted the
+    * others. Futures are not cancelled, as a cancelled future is done at once while its upload may still be running.
+    */
+   private void abort(BlobStore blobStore, MultipartUpload mpu, List<ListenableFuture<MultipartPart>> futures,
+         AtomicBoolean failed) {
+      failed.set(true);
+      try {
+         Uninterruptibles.getUninterruptibly(Futures.successfulAsList(futures));
+      } catch (ExecutionException impossible) {
+         // successfulAsList does not fail.
+         throw Throwables.propagate(impossible);
+      }
+      try {
+         blobStore.abortMultipartUpload(mpu);
+      } catch (RuntimeException re) {
+         logger.warn(re, "could not abort multipart upload %s in %s", mpu.id(), mpu.containerName());
+      }
+   }
+
+   private int partsInFlight(long partSize) {
+      long allowedByBytes = Math.max(1L, maxBufferedBytes / partSize);
+      return (int) Math.min(parallelDegree, allowedByBytes);
+   }
+
+   private long partSize(BlobStore blobStore, long contentLength) {
+      long minimumForLength = LongMath.divide(contentLength, blobStore.getMaximumNumberOfParts(), RoundingMode.CEILING);
+      long size = Math.max(Math.max(partSize, blobStore.getMinimumMultipartPartSize()), minimumForLength);
+      return Math.min(size, blobStore.getMaximumMultipartPartSize());
+   }
+}
@@ -0,0 +1,267 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.strategy.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.jclouds.Constants.PROPERTY_USER_THREADS;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.DOWNLOAD_PARALLEL_DEGREE;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.DOWNLOAD_RANGE_ATTEMPTS;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.DOWNLOAD_RANGE_SIZE;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.blobstore.KeyNotFoundException;
+import org.jclouds.blobstore.reference.BlobStoreConstants;
+import org.jclouds.googlecloudstorage.GoogleCloudStorageApi;
+import org.jclouds.googlecloudstorage.domain.DomainResourceReferences.Projection;
+import org.jclouds.googlecloudstorage.domain.GoogleCloudStorageObject;
+import org.jclouds.googlecloudstorage.options.GetObjectOptions;
+import org.jclouds.http.HttpResponseException;
+import org.jclouds.io.PayloadEnclosing;
+import org.jclouds.logging.Logger;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.io.Closeables;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Downloads an object as concurrent byte ranges, writing each range at its own offset of a {@link FileChannel}. Every
+ * range is pinned to the generation seen when the download started, so a concurrent overwrite fails the download
+ * instead of mixing versions. A range that fails or ends early is retried from the last byte written, up to
+ * {@link org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants#DOWNLOAD_RANGE_ATTEMPTS} times.
+ */
+@Singleton
+public class ParallelRangedDownloader {
+
+   private static final int BUFFER_SIZE = 64 * 1024;
+
+   /** The fields of the object a download needs: its generation, to pin every range to it, and its size. */
+   private static final String OBJECT_FIELDS = "name,generation,metageneration,size";
+
+   @Resource
+   @Named(BlobStoreConstants.BLOBSTORE_LOGGER)
+   protected Logger logger = Logger.NULL;
+
+   private final GoogleCloudStorageApi api;
+   private final ListeningExecutorService userExecutor;
+   private final long rangeSize;
+   private final int parallelDegree;
+   private final int rangeAttempts;
+
+   @Inject ParallelRangedDownloader(GoogleCloudStorageApi api,
+         @Named(PROPERTY_USER_THREADS) ListeningExecutorService userExecutor,
+         @Named(DOWNLOAD_RANGE_SIZE) long rangeSize, @Named(DOWNLOAD_PARALLEL_DEGREE) int parallelDegree,
+         @Named(DOWNLOAD_RANGE_ATTEMPTS) int rangeAttempts) {
+      checkArgument(rangeSize > 0, "rangeSize must be positive, was: %s", rangeSize);
+      checkArgument(parallelDegree > 0, "parallelDegree must be positive, was: %s", parallelDegree);
+      checkArgument(rangeAttempts > 0, "rangeAttempts must be positive, was: %s", rangeAttempts);
+      this.api = checkNotNull(api, "api");
+      this.userExecutor = checkNotNull(userExecutor, "userExecutor");
+      this.rangeSize = rangeSize;
+      this.parallelDegree = parallelDegree;
+      this.rangeAttempts = rangeAttempts;
+   }
+
+   /**
+    * Downloads the current generation of {@code objectName} into {@code target}, starting at position zero.
+    *
+    * @return the object's size in bytes
+    * @throws KeyNotFoundException if the object does not exist
+    */
+   public long download(String bucketName, String objectName, FileChannel target) {
+      GoogleCloudStorageObject object = api.getObjectApi().getObject(bucketName, objectName,
+            new GetObjectOptions().projection(Projection.NO_ACL).fields(OBJECT_FIELDS));
+      if (object == null) {
+         throw new KeyNotFoundException(bucketName, objectName, "download");
+      }
+      download(bucketName, objectName, object.generation(), object.size(), target);
+      return object.size();
+   }
+
+   /**
+    * Downloads the first {@code size} bytes of the given generation of {@code objectName} into {@code target}.
+    */
+   public void download(String bucketName, String objectName, long generation, long size, FileChannel target) {
+      checkNotNull(target, "target");
+      Semaphore inFlight = new Semaphore(parallelDegree);
+      AtomicBoolean failed = new AtomicBoolean();
+      List<ListenableFuture<Void>> futures = Lists.newArrayList();
+      try {
+         for (long first = 0; first < size; first += rangeSize) {
+            inFlight.acquire();
+            if (failed.get()) {
+               inFlight.release();
+               break;
+            }
+            Range range = new Range(bucketName, objectName, generation, first, Math.min(first + rangeSize, size) - 1);
+            futures.add(downloadRange(range, target, inFlight, failed));
+         }
+         Futures.allAsList(futures).get();
+      } catch (InterruptedException ie) {
+         Thread.currentThread().interrupt();
+         stop(futures, failed);
+         throw Throwables.propagate(ie);
+      } catch (ExecutionException ee) {
+         stop(futures, failed);
+         throw Throwables.propagate(ee.getCause());
+      } catch (RuntimeException re) {
+         stop(futures, failed);
+         throw re;
+      }
+   }
+
+   private ListenableFuture<Void> downloadRange(final Range range, final FileChannel target, final Semaphore inFlight,
+         final AtomicBoolean failed) {
+      try {
+         return userExecutor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+               try {
+                  if (!failed.get()) {
+                     transfer(range, target, failed);
+                  }
+                  return null;
+               } catch (IOException ioe) {
+                  failed.set(true);
+                  throw ioe;
+               } catch (RuntimeException re) {
+                  failed.set(true);
+                  throw re;
+               } finally {
+                  inFlight.release();
+               }
+            }
+         });
+      } catch (RuntimeException re) {
+         inFlight.release();
+         throw re;
+      }
+   }
+
+   /**
+    * Copies {@code range} into {@code target}, resuming from the last byte written after a failure. Stops early once
+    * another range has {@code failed}.
+    */
+   private void transfer(Range range, FileChannel target, AtomicBoolean failed) throws IOException {
+      for (int attempt = 1;; attempt++) {
+         try {
+            copy(range, target, failed);
+            return;
+         } catch (IOException ioe) {
+            retryOrThrow(range, attempt, ioe);
+         } catch (HttpResponseException hre) {
+            retryOrThrow(range, attempt, hre);
+         }
+      }
+   }
+
+   private <E extends Exception> void retryOrThrow(Range range, int attempt, E failure) throws E {
+      if (attempt >= rangeAttempts || Thread.currentThread().isInterrupted()) {
+         throw failure;
+      }
+      logger.debug("retrying %s of %s/%s from byte %d after: %s", range, range.bucketName, range.objectName,
+            range.position, failure.getMessage());
+   }
+
+   private void copy(Range range, FileChannel target, AtomicBoolean failed) throws IOException {
+      GetObjectOptions options = new GetObjectOptions().generation(range.generation);
+      options.range(range.position, range.last);
+      PayloadEnclosing response = api.getObjectApi().download(range.bucketName, range.objectName, options);
+      if (response == null) {
+         throw new KeyNotFoundException(range.bucketName, range.objectName,
+               "generation " + range.generation + " no longer exists");
+      }
+      InputStream in = response.getPayload().openStream();
+      try {
+         ReadableByteChannel source = Channels.newChannel(in);
+         ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, range.last - range.position + 1));
+         while (range.position <= range.last && !failed.get()) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), range.last - range.position + 1));
+            if (source.read(buffer) == -1) {
+               throw new EOFException("range ended at byte " + range.position + " of " + range);
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+               range.position += target.write(buffer, range.position);
+            }
+         }
+      } finally {
+         Closeables.closeQuietly(in);
+      }
+   }
+
+   /**
+    * Stops the ranges of a failed download and waits for all of them to end, so that none writes to the caller's
+    * channel after the download has thrown. Futures are not cancelled: a cancelled future is done at once while its
+    * range may still be writing, and interrupting a thread in a FileChannel write closes the caller's channel.
+    */
+   private static void stop(List<ListenableFuture<Void>> futures, AtomicBoolean failed) {
+      failed.set(true);
+      try {
+         Uninterruptibles.getUninterruptibly(Futures.successfulAsList(futures));
+      } catch (ExecutionException impossible) {
+         // successfulAsList does not fail.
+         throw Throwables.propagate(impossible);
+      }
+   }
+
+   /** The inclusive byte range {@code first} to {@code last}, of which everything before {@code position} is done. */
+   private static final class Range {
+      private final String bucketName;
+      private final String objectName;
+      private final long generation;
+      private final long first;
+      private final long last;
+      private long position;
+
+      Range(String bucketName, String objectName, long generation, long first, long last) {
+         this.bucketName = bucketName;
+         this.objectName = objectName;
+         this.generation = generation;
+         this.first = first;
+         this.last = last;
+         this.position = first;
+      }
+
+      @Override
+      public String toString() {
+         return "bytes " + first + "-" + last;
+      }
+   }
+}
@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.strategy.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.LIST_PARALLELISM;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.LIST_RANGE_BUFFER_PAGES;
+import static org.jclouds.googlecloudstorage.util.StorageRequests.NAME_ORDER;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.googlecloudstorage.GoogleCloudStorageApi;
+import org.jclouds.googlecloudstorage.domain.GoogleCloudStorageObject;
+import org.jclouds.googlecloudstorage.domain.ListPageWithPrefixes;
+import org.jclouds.googlecloudstorage.options.ListObjectOptions;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Multimap;
+
+/**
+ * Lists a bucket as consecutive key ranges,
+ * {@link org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants#LIST_PARALLELISM} of them at a time.
+ * Page tokens chain within a range but not across ranges, so each range advances on its own while the caller consumes
+ * the ranges in order; objects are therefore still returned in name order. Each range buffers at most
+ * {@link org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants#LIST_RANGE_BUFFER_PAGES} pages.
+ * <p>
+ * Ranges are bounded by split points, either supplied by the caller or sampled from the first level of the
+ * {@code /} hierarchy under the listing prefix. Listings with a delimiter are not supported, since a common prefix
+ * may straddle two ranges.
+ */
+@Singleton
+public class PartitionedObjectLister {
+
+   /** Ranges per concurrent listing, so that one large range does not hold back the others for long. */
+   private static final int RANGES_PER_WORKER = 4;
+
+   private final GoogleCloudStorageApi api;
+   private final PrefetchingObjectLister lister;
+   private final int parallelism;
+   private final int rangeBufferPages;
+
+   @Inject PartitionedObjectLister(GoogleCloudStorageApi api, PrefetchingObjectLister lister,
+         @Named(LIST_PARALLELISM) int parallelism, @Named(LIST_RANGE_BUFFER_PAGES) int rangeBufferPages) {
+      checkArgument(parallelism > 0, "parallelism must be positive, was: %s", parallelism);
+      checkArgument(rangeBufferPages > 0, "rangeBufferPages must be positive, was: %s", rangeBufferPages);
+      this.api = checkNotNull(api, "api");
+      this.lister = checkNotNull(lister, "lister");
+      this.parallelism = parallelism;
+      this.rangeBufferPages = rangeBufferPages;
+   }
+
+   /**
+    * Objects of {@code bucket} matching {@code options}, in name order, with split points sampled from the bucket when
+    * the listing is iterated.
+    */
+   public Iterable<GoogleCloudStorageObject> objects(final String bucket, final ListObjectOptions options) {
+      checkSupported(options);
+      if (parallelism == 1) {
+         return lister.objects(bucket, options);
+      }
+      return new Iterable<GoogleCloudStorageObject>() {
+         @Override
+         public Iterator<GoogleCloudStorageObject> iterator() {
+            return new RangeIterator(bucket, options, sampleSplitPoints(bucket, options));
+         }
+      };
+   }
+
+   /**
+    * Objects of {@code bucket} matching {@code options}, in name order, listing the ranges between consecutive
+    * {@code splitPoints} concurrently. Any start or end offset in {@code options} is replaced by the range bounds.
+    */
+   public Iterable<GoogleCloudStorageObject> objects(final String bucket, final ListObjectOptions options,
+         Iterable<String> splitPoints) {
+      checkSupported(options);
+      final List<String> sorted = ImmutableList.copyOf(sortedSet(splitPoints));
+      return new Iterable<GoogleCloudStorageObject>() {
+         @Override
+         public Iterator<GoogleCloudStorageObject> iterator() {
+            return new RangeIterator(bucket, options, sorted);
+         }
+      };
+   }
+
+   /**
+    * Picks up to {@code parallelism * 4} split points, evenly spaced, from the objects and common prefixes found
+    * directly under the listing prefix. Only the first page of that listing is sampled; keys past it end up in the last
+    * range, which costs balance but not correctness.
+    */
+   List<String> sampleSplitPoints(String bucket, ListObjectOptions options) {
+      String prefix = Iterables.getFirst(options.buildQueryParameters().get("prefix"), null);
+      ListObjectOptions sample = new ListObjectOptions().delimiter("/");
+      if (prefix != null) {
+         sample.prefix(prefix);
+      }
+      ListPageWithPrefixes<GoogleCloudStorageObject> page = api.getObjectApi().listObjects(bucket, sample);
+      if (page == null) {
+         return Collections.emptyList();
+      }
+      SortedSet<String> keys = sortedSet(page.prefixes());
+      for (GoogleCloudStorageObject object : page) {
+         keys.add(object.name());
+      }
+      // The smallest key would only bound an empty first range.
+      List<String> candidates = ImmutableList.copyOf(keys);
+      candidates = candidates.isEmpty() ? candidates : candidates.subList(1, candidates.size());
+      int ranges = parallelism * RANGES_PER_WORKER;
+      if (candidates.size() < ranges) {
+         return candidates;
+      }
+      ImmutableList.Builder<String> splitPoints = ImmutableList.builder();
+      for (int i = 1; i < ranges; i++) {
+         splitPoints.add(candidates.get((int) ((long) i * candidates.size() / ranges)));
+      }
+      return splitPoints.build();
+   }
+
+   /** The distinct {@code names} in listing order, which is not the order of {@link String#compareTo}. */
+   private static SortedSet<String> sortedSet(Iterable<String> names) {
+      SortedSet<String> sorted = new TreeSet<String>(NAME_ORDER);
+      Iterables.addAll(sorted, names);
+      return sorted;
+   }
+
+   private static void checkSupported(ListObjectOptions options) {
+      Multimap<String, String> parameters = options.buildQueryParameters();
+      checkArgument(!parameters.containsKey("delimiter"), "partitioned listings cannot use a delimiter");
+      checkArgument(!parameters.containsKey("pageToken"), "partitioned listings cannot start from a page token");
+   }
+
+   /** Walks the ranges in order, keeping up to {@code parallelism} of them listing ahead of the caller. */
+   private final class RangeIterator extends AbstractIterator<GoogleCloudStorageObject> {
+      private final String bucket;
+      private final ListObjectOptions options;
+      private final List<String> splitPoints;
+      private final Deque<Iterator<ListPageWithPrefixes<GoogleCloudStorageObject>>> started =
+            new ArrayDeque<Iterator<ListPageWithPrefixes<GoogleCloudStorageObject>>>();
+      private int nextRange;
+      private Iterator<GoogleCloudStorageObject> current = Collections.emptyIterator();
+
+      RangeIterator(String bucket, ListObjectOptions options, List<String> splitPoints) {
+         this.bucket = bucket;
+         this.options = options;
+         this.splitPoints = splitPoints;
+      }
+
+      @Override
+      protected GoogleCloudStorageObject computeNext() {
+         while (!current.hasNext()) {
+            // There is one more range than split points.
+            while (started.size() < parallelism && nextRange <= splitPoints.size()) {
+               started.add(startRange(nextRange++));
+            }
+            Iterator<ListPageWithPrefixes<GoogleCloudStorageObject>> range = started.peek();
+            if (range == null) {
+               return endOfData();
+            }
+            if (range.hasNext()) {
+               current = range.next().iterator();
+            } else {
+               started.remove();
+            }
+         }
+         return current.next();
+      }
+
+      private Iterator<ListPageWithPrefixes<GoogleCloudStorageObject>> startRange(int range) {
+         String startOffset = range == 0 ? null : splitPoints.get(range - 1);
+         String endOffset = range == splitPoints.size() ? null : splitPoints.get(range);
+         return lister.startPages(bucket, options.withRange(startOffset, endOffset), rangeBufferPages);
+      }
+   }
+}
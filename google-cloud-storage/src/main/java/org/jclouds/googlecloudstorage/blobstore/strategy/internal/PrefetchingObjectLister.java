@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.strategy.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.jclouds.Constants.PROPERTY_USER_THREADS;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.LIST_PREFETCH_DEPTH;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.googlecloudstorage.GoogleCloudStorageApi;
+import org.jclouds.googlecloudstorage.domain.GoogleCloudStorageObject;
+import org.jclouds.googlecloudstorage.domain.ListPageWithPrefixes;
+import org.jclouds.googlecloudstorage.options.ListObjectOptions;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Lists every page of a bucket lazily. While the caller consumes one page, the following
+ * {@link org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants#LIST_PREFETCH_DEPTH} pages are requested
+ * on the user executor, so the round-trip for a page overlaps with processing the previous one. Since each request
+ * needs the token of the page before it, prefetched pages are still fetched one after another.
+ * <p>
+ * An abandoned iteration stops after the pages already requested; no thread waits on the caller.
+ */
+@Singleton
+public class PrefetchingObjectLister {
+
+   private final GoogleCloudStorageApi api;
+   private final ListeningExecutorService userExecutor;
+   private final int prefetchDepth;
+
+   @Inject PrefetchingObjectLister(GoogleCloudStorageApi api,
+         @Named(PROPERTY_USER_THREADS) ListeningExecutorService userExecutor,
+         @Named(LIST_PREFETCH_DEPTH) int prefetchDepth) {
+      checkArgument(prefetchDepth >= 0, "prefetchDepth must not be negative, was: %s", prefetchDepth);
+      this.api = checkNotNull(api, "api");
+      this.userExecutor = checkNotNull(userExecutor, "userExecutor");
+      this.prefetchDepth = prefetchDepth;
+   }
+
+   /**
+    * Pages of {@code bucket} matching {@code options}, starting from the page token in {@code options} if any. Each
+    * call to {@link Iterable#iterator()} lists the bucket again.
+    */
+   public Iterable<ListPageWithPrefixes<GoogleCloudStorageObject>> pages(final String bucket,
+         final ListObjectOptions options) {
+      checkNotNull(bucket, "bucket");
+      checkNotNull(options, "options");
+      return new Iterable<ListPageWithPrefixes<GoogleCloudStorageObject>>() {
+         @Override
+         public Iterator<ListPageWithPrefixes<GoogleCloudStorageObject>> iterator() {
+            return new PageIterator(bucket, options, prefetchDepth);
+         }
+      };
+   }
+
+   /**
+    * Starts listing immediately, keeping up to {@code prefetchDepth} pages requested ahead of the caller rather than
+    * waiting for the first call to {@link Iterator#next()}.
+    */
+   Iterator<ListPageWithPrefixes<GoogleCloudStorageObject>> startPages(String bucket, ListObjectOptions options,
+         int prefetchDepth) {
+      PageIterator pages = new PageIterator(bucket, options, prefetchDepth);
+      pages.prefetch();
+      return pages;
+   }
+
+   /** Objects of {@code bucket} matching {@code options}, across all pages. Prefixes are not included. */
+   public Iterable<GoogleCloudStorageObject> objects(String bucket, ListObjectOptions options) {
+      return Iterables.concat(pages(bucket, options));
+   }
+
+   private final class PageIterator extends AbstractIterator<ListPageWithPrefixes<GoogleCloudStorageObject>> {
+      private final String bucket;
+      private final ListObjectOptions options;
+      private final int depth;
+      /** Requested pages not yet returned, in order; a null page marks the end of the listing. */
+      private final Deque<ListenableFuture<ListPageWithPrefixes<GoogleCloudStorageObject>>> pending =
+            new ArrayDeque<ListenableFuture<ListPageWithPrefixes<GoogleCloudStorageObject>>>();
+      private ListenableFuture<ListPageWithPrefixes<GoogleCloudStorageObject>> last;
+
+      PageIterator(String bucket, ListObjectOptions options, int depth) {
+         this.bucket = bucket;
+         this.options = options;
+         this.depth = depth;
+      }
+
+      @Override
+      protected ListPageWithPrefixes<GoogleCloudStorageObject> computeNext() {
+         if (pending.isEmpty()) {
+            requestNext();
+         }
+         ListPageWithPrefixes<GoogleCloudStorageObject> page = getUnchecked(pending.remove());
+         if (page == null) {
+            cancelPending();
+            return endOfData();
+         }
+         prefetch();
+         return page;
+      }
+
+      void prefetch() {
+         while (pending.size() < depth) {
+            requestNext();
+         }
+      }
+
+      private void requestNext() {
+         last = last == null ? fetch(options) : Futures.transform(last, new NextPage());
+         pending.add(last);
+      }
+
+      private ListenableFuture<ListPageWithPrefixes<GoogleCloudStorageObject>> fetch(
+            final ListObjectOptions pageOptions) {
+         return userExecutor.submit(new Callable<ListPageWithPrefixes<GoogleCloudStorageObject>>() {
+            @Override
+            public ListPageWithPrefixes<GoogleCloudStorageObject> call() {
+               return api.getObjectApi().listObjects(bucket, pageOptions);
+            }
+         });
+      }
+
+      private void cancelPending() {
+         for (ListenableFuture<?> future : pending) {
+            future.cancel(true);
+         }
+         pending.clear();
+      }
+
+      /** Requests the page after the given one as soon as its token is known. */
+      private final class NextPage implements
+            AsyncFunction<ListPageWithPrefixes<GoogleCloudStorageObject>, ListPageWithPrefixes<GoogleCloudStorageObject>> {
+         @Override
+         public ListenableFuture<ListPageWithPrefixes<GoogleCloudStorageObject>> apply(
+               ListPageWithPrefixes<GoogleCloudStorageObject> page) {
+            if (page == null || page.nextPageToken() == null) {
+               return Futures.<ListPageWithPrefixes<GoogleCloudStorageObject>> immediateFuture(null);
+            }
+            return fetch(options.withPageToken(page.nextPageToken()));
+         }
+      }
+   }
+
+   private static <T> T getUnchecked(ListenableFuture<T> future) {
+      try {
+         return future.get();
+      } catch (InterruptedException ie) {
+         Thread.currentThread().interrupt();
+         throw Throwables.propagate(ie);
+      } catch (ExecutionException ee) {
+         throw Throwables.propagate(ee.getCause());
+      }
+   }
+}
@@ -0,0 +1,278 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.strategy.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static org.jclouds.Constants.PROPERTY_USER_THREADS;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.RESUMABLE_ATTEMPTS;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.RESUMABLE_CHUNK_SIZE;
+import static org.jclouds.googlecloudstorage.util.StorageRequests.isRetryable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.blobstore.reference.BlobStoreConstants;
+import org.jclouds.googlecloudstorage.GoogleCloudStorageApi;
+import org.jclouds.googlecloudstorage.domain.ResumableUpload;
+import org.jclouds.googlecloudstorage.domain.templates.ObjectTemplate;
+import org.jclouds.io.Payload;
+import org.jclouds.io.Payloads;
+import org.jclouds.javax.annotation.Nullable;
+import org.jclouds.logging.Logger;
+
+import com.google.common.base.Throwables;
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Drives a resumable upload session, sending the payload in chunks of
+ * {@link org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants#RESUMABLE_CHUNK_SIZE} bytes. The next
+ * chunk is read on the user executor while the current one is sent. When a chunk fails with an I/O error or a server
+ * error, the session status is queried and the upload resumes from the last byte the service committed.
+ *
+ * @see <a href="https://cloud.google.com/storage/docs/json_api/v1/how-tos/resumable-upload" />
+ */
+@Singleton
+public class ResumableUploader {
+
+   /** Every chunk but the last must be a multiple of this size. */
+   public static final int CHUNK_GRANULARITY = 256 * 1024;
+
+   @Resource
+   @Named(BlobStoreConstants.BLOBSTORE_LOGGER)
+   protected Logger logger = Logger.NULL;
+
+   private final GoogleCloudStorageApi api;
+   private final ListeningExecutorService userExecutor;
+   private final int chunkSize;
+   private final int attempts;
+
+   @Inject ResumableUploader(GoogleCloudStorageApi api,
+         @Named(PROPERTY_USER_THREADS) ListeningExecutorService userExecutor,
+         @Named(RESUMABLE_CHUNK_SIZE) int chunkSize, @Named(RESUMABLE_ATTEMPTS) int attempts) {
+      checkArgument(chunkSize > 0 && chunkSize % CHUNK_GRANULARITY == 0,
+            "chunkSize must be a positive multiple of %s, was: %s", CHUNK_GRANULARITY, chunkSize);
+      checkArgument(attempts > 0, "attempts must be positive, was: %s", attempts);
+      this.api = checkNotNull(api, "api");
+      this.userExecutor = checkNotNull(userExecutor, "userExecutor");
+      this.chunkSize = chunkSize;
+      this.attempts = attempts;
+   }
+
+   /**
+    * Starts a session for {@code template} and uploads {@code payload}. A payload without a content length is streamed
+    * until it ends, holding at most two chunks in memory.
+    *
+    * @return the response to the final chunk, which carries the object written
+    */
+   public ResumableUpload upload(String bucketName, ObjectTemplate template, Payload payload) {
+      Long length = payload.getContentMetadata().getContentLength();
+      String contentType = payload.getContentMetadata().getContentType();
+      String uploadId = api.getResumableUploadApi().initResumableUpload(bucketName, contentType, length, template)
+            .uploadId();
+      InputStream in;
+      try {
+         in = payload.openStream();
+      } catch (IOException ioe) {
+         throw Throwables.propagate(ioe);
+      }
+      try {
+         return upload(bucketName, uploadId, contentType, in, length);
+      } finally {
+         Closeables.closeQuietly(in);
+      }
+   }
+
+   /**
+    * Uploads {@code length} bytes from {@code in} to an open session, or everything up to the end of {@code in} when
+    * {@code length} is null. Chunks of unknown length are sent as {@code bytes first-last/*}; the total is given with
+    * the chunk in which the stream ends, or in an empty final request if it ends on a chunk boundary.
+    *
+    * @return the response to the final chunk, which carries the object written
+    */
+   public ResumableUpload upload(String bucketName, String uploadId, String contentType, InputStream in,
+         @Nullable Long length) {
+      Session session = new Session(bucketName, uploadId, contentType, length);
+      byte[] current = new byte[length == null ? chunkSize : (int) Math.min(chunkSize, length)];
+      byte[] next = null;
+      ListenableFuture<Integer> readAhead = null;
+      try {
+         int count = fill(in, current, current.length, length != null);
+         for (long offset = 0;;) {
+            long end = offset + count;
+            if (session.length == null && count < chunkSize) {
+               session.length = end;
+            }
+            if (session.length == null || end < session.length) {
+               if (next == null) {
+                  next = new byte[chunkSize];
+               }
+               int expected = session.length == null ? chunkSize : (int) Math.min(chunkSize, session.length - end);
+               readAhead = readAhead(in, next, expected, session.length != null);
+            } else {
+               readAhead = null;
+            }
+            ResumableUpload response = sendChunk(session, current, offset, count);
+            if (readAhead == null) {
+               checkState(isComplete(response), "upload %s not complete after its last chunk: %s", uploadId, response);
+               return response;
+            }
+            offset = end;
+            count = readAhead.get();
+            byte[] sent = current;
+            current = next;
+            next = sent;
+         }
+      } catch (IOException ioe) {
+         throw Throwables.propagate(ioe);
+      } catch (InterruptedException ie) {
+         Thread.currentThread().interrupt();
+         throw Throwables.propagate(ie);
+      } catch (ExecutionException ee) {
+         throw Throwables.propagate(ee.getCause());
+      } finally {
+         if (readAhead != null && !readAhead.isDone()) {
+            // The caller closes the stream once this returns, so let a read in progress end first.
+            try {
+               Uninterruptibles.getUninterruptibly(readAhead);
+            } catch (ExecutionException ignored) {
+               // Already failing with the chunk's error.
+            }
+         }
+      }
+   }
+
+   /**
+    * Sends {@code count} bytes of {@code chunk} as the object's bytes from {@code offset}. When a send fails, the
+    * committed offset is queried and only the part of the chunk the service does not have yet is sent again.
+    */
+   private ResumableUpload sendChunk(Session session, byte[] chunk, long offset, int count) {
+      int sent = 0;
+      for (int attempt = 1;; attempt++) {
+         try {
+            ResumableUpload response = api.getResumableUploadApi().chunkUpload(session.bucketName, session.uploadId,
+                  session.contentType, (long) (count - sent), session.contentRange(offset + sent, offset + count),
+                  payload(session, chunk, sent, count));
+            long committed = committed(response);
+            if (isComplete(response) || committed == offset + count) {
+               return response;
+            }
+            // The service kept only part of the chunk; sending the rest is not a failure if it made progress.
+            int resumed = resumePoint(session, committed, offset, count);
+            if (resumed > sent) {
+               attempt--;
+            }
+            sent = resumed;
+         } catch (RuntimeException re) {
+            // I/O errors and server errors leave the session open; anything else is final.
+            if (attempt >= attempts || !isRetryable(re)) {
+               throw re;
+            }
+            logger.debug("querying upload %s after chunk at %d failed: %s", session.uploadId, offset, re.getMessage());
+            ResumableUpload status = api.getResumableUploadApi().checkStatus(session.bucketName, session.uploadId,
+                  "bytes */" + session.total());
+            if (isComplete(status)) {
+               return status;
+            }
+            sent = resumePoint(session, committed(status), offset, count);
+         }
+      }
+   }
+
+   private static int resumePoint(Session session, long committed, long offset, int count) {
+      checkState(committed >= offset && committed <= offset + count,
+            "upload %s committed %s bytes, outside the chunk at %s of %s bytes", session.uploadId, committed, offset,
+            count);
+      return (int) (committed - offset);
+   }
+
+   private static Payload payload(Session session, byte[] chunk, int from, int to) {
+      Payload payload = Payloads.newByteSourcePayload(ByteSource.wrap(chunk).slice(from, to - from));
+      payload.getContentMetadata().setContentLength((long) (to - from));
+      payload.getContentMetadata().setContentType(session.contentType);
+      return payload;
+   }
+
+   private ListenableFuture<Integer> readAhead(final InputStream in, final byte[] buffer, final int count,
+         final boolean exact) {
+      return userExecutor.submit(new Callable<Integer>() {
+         @Override
+         public Integer call() throws IOException {
+            return fill(in, buffer, count, exact);
+         }
+      });
+   }
+
+   /**
+    * Reads up to {@code count} bytes, stopping early only at the end of the stream. If {@code exact}, ending early is an
+    * error.
+    */
+   private static int fill(InputStream in, byte[] buffer, int count, boolean exact) throws IOException {
+      int read = ByteStreams.read(in, buffer, 0, count);
+      if (exact && read != count) {
+         throw new EOFException("payload ended after " + read + " of " + count + " bytes of a chunk");
+      }
+      return read;
+   }
+
+   /** The number of bytes the service has committed, according to a 308 response's {@code Range} header. */
+   private static long committed(ResumableUpload response) {
+      return response.rangeUpperValue() == null ? 0 : response.rangeUpperValue() + 1;
+   }
+
+   private static boolean isComplete(ResumableUpload response) {
+      return response.statusCode() == 200 || response.statusCode() == 201;
+   }
+
+   private static final class Session {
+      private final String bucketName;
+      private final String uploadId;
+      private final String contentType;
+      /** The object's length; null until the end of a stream of unknown length is read. */
+      private Long length;
+
+      Session(String bucketName, String uploadId, String contentType, Long length) {
+         this.bucketName = bucketName;
+         this.uploadId = uploadId;
+         this.contentType = contentType;
+         this.length = length;
+      }
+
+      /** The {@code Content-Range} of the bytes from {@code first} up to, but excluding, {@code end}. */
+      String contentRange(long first, long end) {
+         return first == end ? "bytes */" + total() : "bytes " + first + "-" + (end - 1) + "/" + total();
+      }
+
+      String total() {
+         return length == null ? "*" : length.toString();
+      }
+   }
+}
@@ -0,0 +1,244 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.strategy.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.READ_AHEAD_MAX_BYTES;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.READ_AHEAD_MIN_BYTES;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.blobstore.KeyNotFoundException;
+import org.jclouds.blobstore.reference.BlobStoreConstants;
+import org.jclouds.googlecloudstorage.GoogleCloudStorageApi;
+import org.jclouds.googlecloudstorage.domain.DomainResourceReferences.Projection;
+import org.jclouds.googlecloudstorage.domain.GoogleCloudStorageObject;
+import org.jclouds.googlecloudstorage.options.GetObjectOptions;
+import org.jclouds.io.PayloadEnclosing;
+import org.jclouds.logging.Logger;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+
+/**
+ * Opens objects as {@link SeekableByteChannel}s for random access, such as by columnar file readers. A channel reads
+ * through ranged requests pinned to the generation seen when it was opened, so an overwrite fails reads instead of
+ * mixing versions. Each request reads ahead by a window that doubles, up to
+ * {@link org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants#READ_AHEAD_MAX_BYTES}, while reads
+ * continue where the last range ended, and halves, down to
+ * {@link org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants#READ_AHEAD_MIN_BYTES}, when they seek
+ * elsewhere. A forward seek within the range already requested skips along the open stream instead of sending a new
+ * request.
+ */
+@Singleton
+public class SeekableObjectReader {
+
+   @Resource
+   @Named(BlobStoreConstants.BLOBSTORE_LOGGER)
+   protected Logger logger = Logger.NULL;
+
+   private final GoogleCloudStorageApi api;
+   private final long minReadAhead;
+   private final long maxReadAhead;
+
+   @Inject SeekableObjectReader(GoogleCloudStorageApi api, @Named(READ_AHEAD_MIN_BYTES) long minReadAhead,
+         @Named(READ_AHEAD_MAX_BYTES) long maxReadAhead) {
+      checkArgument(minReadAhead > 0, "minReadAhead must be positive, was: %s", minReadAhead);
+      checkArgument(maxReadAhead >= minReadAhead, "maxReadAhead must be at least %s, was: %s", minReadAhead,
+            maxReadAhead);
+      this.api = checkNotNull(api, "api");
+      this.minReadAhead = minReadAhead;
+      this.maxReadAhead = maxReadAhead;
+   }
+
+   /**
+    * Opens the current generation of {@code objectName} for reading.
+    *
+    * @throws KeyNotFoundException if the object does not exist
+    */
+   public SeekableByteChannel open(String bucketName, String objectName) {
+      GoogleCloudStorageObject object = api.getObjectApi().getObject(bucketName, objectName,
+            new GetObjectOptions().projection(Projection.NO_ACL));
+      if (object == null) {
+         throw new KeyNotFoundException(bucketName, objectName, "open");
+      }
+      return open(bucketName, objectName, object.generation(), object.size());
+   }
+
+   /**
+    * Opens the first {@code size} bytes of the given generation of {@code objectName} for reading. No request is sent
+    * until the first read.
+    */
+   public SeekableByteChannel open(String bucketName, String objectName, long generation, long size) {
+      checkArgument(size >= 0, "size must not be negative, was: %s", size);
+      return new ObjectChannel(checkNotNull(bucketName, "bucketName"), checkNotNull(objectName, "objectName"),
+            generation, size);
+   }
+
+   private final class ObjectChannel implements SeekableByteChannel {
+      private final String bucketName;
+      private final String objectName;
+      private final long generation;
+      private final long size;
+      private long position;
+      private long readAhead = minReadAhead;
+      private boolean open = true;
+
+      /** The stream of the range last requested, which ends before {@code rangeEnd}; null when none is open. */
+      private InputStream in;
+      private ReadableByteChannel stream;
+      private long streamPosition;
+      private long rangeEnd;
+
+      ObjectChannel(String bucketName, String objectName, long generation, long size) {
+         this.bucketName = bucketName;
+         this.objectName = objectName;
+         this.generation = generation;
+         this.size = size;
+      }
+
+      @Override
+      public synchronized int read(ByteBuffer dst) throws IOException {
+         checkOpen();
+         if (position >= size) {
+            return -1;
+         }
+         if (!dst.hasRemaining()) {
+            return 0;
+         }
+         if (!skipTo(position)) {
+            request(position);
+         }
+         int limit = dst.limit();
+         dst.limit(dst.position() + (int) Math.min(dst.remaining(), rangeEnd - streamPosition));
+         int read;
+         try {
+            read = stream.read(dst);
+         } finally {
+            dst.limit(limit);
+         }
+         if (read == -1) {
+            closeStream();
+            throw new EOFException("range of " + bucketName + "/" + objectName + " ended at byte " + streamPosition
+                  + " of " + rangeEnd);
+         }
+         streamPosition += read;
+         position = streamPosition;
+         return read;
+      }
+
+      /** Moves the open stream forward to {@code target} if the range it serves holds it. */
+      private boolean skipTo(long target) throws IOException {
+         if (stream == null || target < streamPosition || target >= rangeEnd) {
+            return false;
+         }
+         if (target > streamPosition) {
+            ByteStreams.skipFully(in, target - streamPosition);
+            streamPosition = target;
+         }
+         return true;
+      }
+
+      private void request(long first) throws IOException {
+         if (stream != null) {
+            readAhead = first == rangeEnd ? Math.min(readAhead * 2, maxReadAhead)
+                  : Math.max(readAhead / 2, minReadAhead);
+            closeStream();
+         }
+         long end = Math.min(size, first + readAhead);
+         GetObjectOptions options = new GetObjectOptions().generation(generation);
+         options.range(first, end - 1);
+         logger.trace("reading bytes %d-%d of %s/%s", first, end - 1, bucketName, objectName);
+         PayloadEnclosing response = api.getObjectApi().download(bucketName, objectName, options);
+         if (response == null) {
+            throw new KeyNotFoundException(bucketName, objectName, "generation " + generation + " no longer exists");
+         }
+         in = response.getPayload().openStream();
+         stream = Channels.newChannel(in);
+         streamPosition = first;
+         rangeEnd = end;
+      }
+
+      private void closeStream() {
+         Closeables.closeQuietly(in);
+         in = null;
+         stream = null;
+      }
+
+      @Override
+      public synchronized long position() throws IOException {
+         checkOpen();
+         return position;
+      }
+
+      /** Moves the position without sending a request; the next read decides whether the open stream serves it. */
+      @Override
+      public synchronized SeekableByteChannel position(long newPosition) throws IOException {
+         checkOpen();
+         checkArgument(newPosition >= 0, "position must not be negative, was: %s", newPosition);
+         position = newPosition;
+         return this;
+      }
+
+      @Override
+      public synchronized long size() throws IOException {
+         checkOpen();
+         return size;
+      }
+
+      @Override
+      public int write(ByteBuffer src) {
+         throw new NonWritableChannelException();
+      }
+
+      @Override
+      public SeekableByteChannel truncate(long newSize) {
+         throw new NonWritableChannelException();
+      }
+
+      @Override
+      public synchronized boolean isOpen() {
+         return open;
+      }
+
+      @Override
+      public synchronized void close() {
+         open = false;
+         closeStream();
+      }
+
+      private void checkOpen() throws ClosedChannelException {
+         if (!open) {
+            throw new ClosedChannelException();
+         }
+      }
+   }
+}
@@ -18,7 +18,9 @@ package org.jclouds.googlecloudstorage.config;
 
 import java.util.List;
 
+import org.jclouds.googlecloudstorage.binders.BindRequestsToMultipartMixed.BatchPayload;
 import org.jclouds.http.HttpRequest;
+import org.jclouds.io.Payload;
 import org.jclouds.oauth.v2.config.OAuthScopes;
 
 import com.google.auto.value.AutoValue;
@@ -39,18 +41,43 @@ import com.google.common.collect.ImmutableList;
       );
    }
 
-   /** If the path contains or ends with {@code /acl} or {@code /defaultObjectAcl}, it needs full-control. */
+   /**
+    * If the path contains or ends with {@code /acl} or {@code /defaultObjectAcl}, it needs full-control. A batch needs
+    * the widest scopes of the requests it carries.
+    */
    @Override public List<String> forRequest(HttpRequest input) {
       String path = input.getEndpoint().getPath();
-      if (path.endsWith("/acl") || path.endsWith("/defaultObjectAcl") //
-            || path.contains("/acl/") || path.contains("/defaultObjectAcl/")) {
-         return fullControlScopes();
-      } else if (input.getMethod().equalsIgnoreCase("PUT") || input.getMethod().equalsIgnoreCase("PATCH")) {
+      if (path.startsWith("/batch/")) {
+         return forBatch(input);
+      } else if (needsFullControl(input.getMethod(), path)) {
          return fullControlScopes();
       }
       return readOrWriteScopes().forRequest(input);
    }
 
+   /** Looks at the requests the batch was bound from; a batch whose parts are not known needs full-control. */
+   private List<String> forBatch(HttpRequest batch) {
+      Payload payload = batch.getPayload();
+      if (!(payload instanceof BatchPayload)) {
+         return fullControlScopes();
+      }
+      boolean writes = false;
+      for (HttpRequest part : ((BatchPayload) payload).getRequests()) {
+         String method = part.getMethod();
+         if (needsFullControl(method, part.getEndpoint().getPath())) {
+            return fullControlScopes();
+         }
+         writes |= !method.equals("GET") && !method.equals("HEAD");
+      }
+      return readOrWriteScopes().forRequest(writes ? batch : batch.toBuilder().method("GET").build());
+   }
+
+   private static boolean needsFullControl(String method, String path) {
+      return path.endsWith("/acl") || path.endsWith("/defaultObjectAcl") //
+            || path.contains("/acl/") || path.contains("/defaultObjectAcl/") //
+            || method.equalsIgnoreCase("PUT") || method.equalsIgnoreCase("PATCH");
+   }
+
    GoogleCloudStorageOAuthScopes() {
    }
 }
@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.domain;
+
+import org.jclouds.javax.annotation.Nullable;
+
+import com.google.auto.value.AutoValue;
+
+/**
+ * The outcome of one request of a batch: what the queued method would have returned, or the exception it would have
+ * thrown.
+ */
+@AutoValue
+public abstract class BatchResult {
+
+   /** The status of the request's response, or 0 if the service sent none. */
+   public abstract int statusCode();
+
+   @Nullable public abstract Object value();
+
+   @Nullable public abstract Throwable error();
+
+   public boolean isSuccess() {
+      return error() == null;
+   }
+
+   public static BatchResult success(int statusCode, @Nullable Object value) {
+      return new AutoValue_BatchResult(statusCode, value, null);
+   }
+
+   public static BatchResult failure(int statusCode, Throwable error) {
+      return new AutoValue_BatchResult(statusCode, null, error);
+   }
+
+   BatchResult() {
+   }
+}
@@ -31,6 +31,7 @@ import com.google.auto.value.AutoValue;
 
 /**
  * The Bucket represents a bucket in Google Cloud Storage. There is a single global namespace shared by all buckets.
+ * A partial response, selected with a {@code fields} option, always carries {@code name}; any other field may be null.
  *
  * @see <a href = " https://developers.google.com/storage/docs/json_api/v1/buckets"/>
  */
@@ -137,15 +138,15 @@ public abstract class Bucket {
       }
    }
 
-   public abstract String id();
+   @Nullable public abstract String id();
 
    public abstract String name();
 
    @Nullable public abstract Long projectNumber();
 
-   public abstract Date timeCreated();
+   @Nullable public abstract Date timeCreated();
 
-   public abstract Long metageneration();
+   @Nullable public abstract Long metageneration();
 
    public abstract List<BucketAccessControls> acl();
 
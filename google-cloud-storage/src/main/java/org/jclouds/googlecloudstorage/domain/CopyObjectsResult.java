@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.domain;
+
+import java.util.Map;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * The outcome of copying many objects: how many were copied, their total size, and why each of the others could not
+ * be copied.
+ */
+@AutoValue
+public abstract class CopyObjectsResult {
+
+   public abstract long copied();
+
+   public abstract long bytesCopied();
+
+   /** The error that ended the copy of each object that was not copied, by object name. */
+   public abstract Map<String, Throwable> failures();
+
+   /** Whether every object was copied. */
+   public boolean isComplete() {
+      return failures().isEmpty();
+   }
+
+   public static CopyObjectsResult create(long copied, long bytesCopied, Map<String, Throwable> failures) {
+      return new AutoValue_CopyObjectsResult(copied, bytesCopied, ImmutableMap.copyOf(failures));
+   }
+
+   CopyObjectsResult() {
+   }
+}
@@ -31,28 +31,29 @@ import org.jclouds.json.SerializedNames;
 import com.google.auto.value.AutoValue;
 
 /**
- * This class represent an object in a Google Cloud Storage Bucket.
+ * This class represent an object in a Google Cloud Storage Bucket. A partial response, selected with a {@code fields}
+ * option, always carries {@code name}, {@code generation}, {@code metageneration} and {@code size}; any other field may
+ * be null.
  *
  * @see <a href = "https://developers.google.com/storage/docs/json_api/v1/Objects"/>
  */
 @AutoValue
-// TODO: nullable sweep
 public abstract class GoogleCloudStorageObject {
 
-   public abstract String id();
-   public abstract URI selfLink();
-   public abstract String etag();
+   @Nullable public abstract String id();
+   @Nullable public abstract URI selfLink();
+   @Nullable public abstract String etag();
    public abstract String name();
-   public abstract String bucket();
+   @Nullable public abstract String bucket();
    public abstract long generation();
    public abstract long metageneration();
-   public abstract String contentType();
-   public abstract Date updated();
+   @Nullable public abstract String contentType();
+   @Nullable public abstract Date updated();
    @Nullable public abstract Date timeDeleted();
-   public abstract StorageClass storageClass();
+   @Nullable public abstract StorageClass storageClass();
    public abstract long size();
    @Nullable public abstract String md5Hash();
-   public abstract URI mediaLink();
+   @Nullable public abstract URI mediaLink();
    public abstract Map<String, String> metadata();
    @Nullable public abstract String contentEncoding();
    @Nullable public abstract String contentDisposition();
@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.domain;
+
+import java.util.Map;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * The outcome of removing many objects: how many were deleted, how many did not exist, and why each of the others
+ * could not be deleted.
+ */
+@AutoValue
+public abstract class RemoveBlobsResult {
+
+   public abstract long deleted();
+
+   public abstract long notFound();
+
+   /**
+    * The error that ended the last attempt to delete each object that may still exist, by object name; a deleted
+    * version is named {@code name#generation}.
+    */
+   public abstract Map<String, Throwable> failures();
+
+   /** Whether none of the objects exists anymore. */
+   public boolean isComplete() {
+      return failures().isEmpty();
+   }
+
+   public static RemoveBlobsResult create(long deleted, long notFound, Map<String, Throwable> failures) {
+      return new AutoValue_RemoveBlobsResult(deleted, notFound, ImmutableMap.copyOf(failures));
+   }
+
+   RemoveBlobsResult() {
+   }
+}
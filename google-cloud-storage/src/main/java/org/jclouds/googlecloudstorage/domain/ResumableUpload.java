@@ -36,8 +36,17 @@ public abstract class ResumableUpload {
 
    @Nullable public abstract Long rangeLowerValue();
 
+   /** The object created by a completed upload, as the final response describes it. */
+   @Nullable public abstract GoogleCloudStorageObject object();
+
    public static ResumableUpload create(int statusCode, String uploadId, String contentLength, Long rangeLowerValue,
          Long rangeUpperValue) {
-      return new AutoValue_ResumableUpload(statusCode, uploadId, contentLength, rangeLowerValue, rangeUpperValue);
+      return create(statusCode, uploadId, contentLength, rangeLowerValue, rangeUpperValue, null);
+   }
+
+   public static ResumableUpload create(int statusCode, String uploadId, String contentLength, Long rangeLowerValue,
+         Long rangeUpperValue, @Nullable GoogleCloudStorageObject object) {
+      return new AutoValue_ResumableUpload(statusCode, uploadId, contentLength, rangeUpperValue, rangeLowerValue,
+            object);
    }
 }
@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.domain;
+
+import java.util.Map;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * The outcome of syncing one bucket to another.
+ */
+@AutoValue
+public abstract class SyncResult {
+
+   /** Objects copied because they were missing or different in the destination. */
+   public abstract long copied();
+
+   public abstract long bytesCopied();
+
+   /** Objects left alone because the destination already had the same content. */
+   public abstract long unchanged();
+
+   /** Objects deleted from the destination because the source does not have them. */
+   public abstract long deleted();
+
+   /** The error that ended the copy or delete of each object that is not in sync, by object name. */
+   public abstract Map<String, Throwable> failures();
+
+   /** Whether the destination now matches the source. */
+   public boolean isComplete() {
+      return failures().isEmpty();
+   }
+
+   public static SyncResult create(long copied, long bytesCopied, long unchanged, long deleted,
+         Map<String, Throwable> failures) {
+      return new AutoValue_SyncResult(copied, bytesCopied, unchanged, deleted, ImmutableMap.copyOf(failures));
+   }
+
+   SyncResult() {
+   }
+}
@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.features;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.inject.Inject;
+
+import org.jclouds.googlecloudstorage.GoogleCloudStorageApi;
+import org.jclouds.googlecloudstorage.domain.BatchResult;
+import org.jclouds.googlecloudstorage.handlers.GoogleCloudStorageErrorHandler;
+import org.jclouds.googlecloudstorage.parser.ParseMultipartMixedResponse;
+import org.jclouds.http.HttpCommand;
+import org.jclouds.http.HttpResponse;
+import org.jclouds.http.HttpResponseException;
+import org.jclouds.javax.annotation.Nullable;
+import org.jclouds.reflect.Invocation;
+import org.jclouds.reflect.Reflection2;
+import org.jclouds.rest.annotations.Delegate;
+import org.jclouds.rest.annotations.Fallback;
+import org.jclouds.rest.config.SetCaller;
+import org.jclouds.rest.internal.GeneratedHttpRequest;
+import org.jclouds.rest.internal.RestAnnotationProcessor;
+import org.jclouds.rest.internal.TransformerForRequest;
+
+import com.google.common.base.Defaults;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.reflect.AbstractInvocationHandler;
+import com.google.common.reflect.Reflection;
+import com.google.common.reflect.TypeToken;
+import com.google.inject.Injector;
+
+/**
+ * Queues calls to the existing api methods and sends them in batches of up to {@link BatchApi#MAX_REQUESTS}. Each
+ * call is turned into the same request it would send on its own; its response is parsed, and its errors mapped and
+ * passed to its {@code @Fallback}, as they would be on its own. Not thread-safe; use one batch per thread.
+ *
+ * <pre>
+ * Batch batch = context.utils().injector().getInstance(Batch.class);
+ * for (String name : names) {
+ *    batch.queue().getObjectApi().deleteObject(bucket, name);
+ * }
+ * List&lt;BatchResult&gt; results = batch.execute();
+ * </pre>
+ */
+public class Batch {
+
+   private static final TypeToken<GoogleCloudStorageApi> API_TYPE = TypeToken.of(GoogleCloudStorageApi.class);
+   private static final Pattern RESPONSE_ID = Pattern.compile("<response-(\\d+)>");
+
+   private final Injector injector;
+   private final SetCaller setCaller;
+   private final TransformerForRequest transformer;
+   private final GoogleCloudStorageErrorHandler errorHandler;
+   private final GoogleCloudStorageApi api;
+   private final List<GeneratedHttpRequest> queued = Lists.newArrayList();
+   private final GoogleCloudStorageApi queue;
+
+   @Inject Batch(Injector injector, SetCaller setCaller, TransformerForRequest transformer,
+         GoogleCloudStorageErrorHandler errorHandler, GoogleCloudStorageApi api) {
+      this.injector = checkNotNull(injector, "injector");
+      this.setCaller = checkNotNull(setCaller, "setCaller");
+      this.transformer = checkNotNull(transformer, "transformer");
+      this.errorHandler = checkNotNull(errorHandler, "errorHandler");
+      this.api = checkNotNull(api, "api");
+      this.queue = Reflection.newProxy(GoogleCloudStorageApi.class, new Recorder(null));
+   }
+
+   /**
+    * An api whose methods queue their request instead of sending it. They return null, false or zero; the result of
+    * each call is in the list {@link #execute()} returns, at the position it was queued.
+    */
+   public GoogleCloudStorageApi queue() {
+      return queue;
+   }
+
+   /** The number of queued requests. */
+   public int size() {
+      return queued.size();
+   }
+
+   /**
+    * Sends the queued requests and empties the queue. An error in one request does not stop the others; it is
+    * returned as the result of that request. An error sending a batch propagates, leaving the queue empty.
+    *
+    * @return the result of each request, in the order they were queued
+    */
+   public List<BatchResult> execute() {
+      ImmutableList.Builder<BatchResult> results = ImmutableList.builder();
+      try {
+         for (List<GeneratedHttpRequest> requests : Lists.partition(queued, BatchApi.MAX_REQUESTS)) {
+            results.addAll(execute(requests));
+         }
+      } finally {
+         queued.clear();
+      }
+      return results.build();
+   }
+
+   private List<BatchResult> execute(List<GeneratedHttpRequest> requests) {
+      List<HttpResponse> responses = api.getBatchApi().execute(requests);
+      HttpResponse[] byRequest = new HttpResponse[requests.size()];
+      for (int i = 0; i < responses.size(); i++) {
+         int index = index(responses.get(i), i);
+         if (index >= 0 && index < byRequest.length) {
+            byRequest[index] = responses.get(i);
+         }
+      }
+      ImmutableList.Builder<BatchResult> results = ImmutableList.builder();
+      for (int i = 0; i < byRequest.length; i++) {
+         results.add(result(requests.get(i), byRequest[i]));
+      }
+      return results.build();
+   }
+
+   /** The request a response answers: the {@code N} of its {@code Content-ID <response-N>}, or else its position. */
+   private static int index(HttpResponse response, int position) {
+      String contentId = response.getFirstHeaderOrNull(ParseMultipartMixedResponse.CONTENT_ID);
+      if (contentId != null) {
+         Matcher matcher = RESPONSE_ID.matcher(contentId);
+         if (matcher.matches()) {
+            return Integer.parseInt(matcher.group(1)) - 1;
+         }
+      }
+      return position;
+   }
+
+   private BatchResult result(GeneratedHttpRequest request, @Nullable HttpResponse response) {
+      HttpCommand command = new HttpCommand(request);
+      if (response == null) {
+         return BatchResult.failure(0, new HttpResponseException("no response in batch", command, null));
+      }
+      int statusCode = response.getStatusCode();
+      try {
+         if (statusCode < 300) {
+            return BatchResult.success(statusCode, transformer.apply(request).apply(response));
+         }
+         errorHandler.handleError(command, response);
+         Exception error = command.getException() != null ? command.getException()
+               : new HttpResponseException(command, response);
+         Fallback fallback = request.getInvocation().getInvokable().getAnnotation(Fallback.class);
+         if (fallback == null) {
+            return BatchResult.failure(statusCode, error);
+         }
+         return BatchResult.success(statusCode, injector.getInstance(fallback.value()).createOrPropagate(error));
+      } catch (Exception e) {
+         return BatchResult.failure(statusCode, e);
+      }
+   }
+
+   /** Builds the request of a call as the rest proxy would, with the delegate getter it came through as caller. */
+   private GeneratedHttpRequest request(@Nullable Invocation caller, Invocation invocation) {
+      setCaller.enter(API_TYPE, caller);
+      try {
+         return injector.getInstance(RestAnnotationProcessor.class).apply(invocation);
+      } finally {
+         setCaller.exit();
+      }
+   }
+
+   private final class Recorder extends AbstractInvocationHandler {
+      @Nullable private final Invocation caller;
+
+      Recorder(@Nullable Invocation caller) {
+         this.caller = caller;
+      }
+
+      @Override
+      protected Object handleInvocation(Object proxy, Method method, Object[] args) {
+         if (method.getName().equals("close") && args.length == 0) {
+            return null;
+         }
+         Invocation invocation = Invocation.create(Reflection2.method(method.getDeclaringClass(), method.getName(),
+               method.getParameterTypes()), Arrays.asList(args));
+         if (method.isAnnotationPresent(Delegate.class)) {
+            return Reflection.newProxy(method.getReturnType(), new Recorder(invocation));
+         }
+         queued.add(request(caller, invocation));
+         return Defaults.defaultValue(method.getReturnType());
+      }
+   }
+}
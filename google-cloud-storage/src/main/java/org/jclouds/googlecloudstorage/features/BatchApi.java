@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.features;
+
+import java.util.List;
+
+import javax.inject.Named;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+
+import org.jclouds.googlecloudstorage.binders.BindRequestsToMultipartMixed;
+import org.jclouds.googlecloudstorage.parser.ParseMultipartMixedResponse;
+import org.jclouds.http.HttpRequest;
+import org.jclouds.http.HttpResponse;
+import org.jclouds.oauth.v2.filters.OAuthFilter;
+import org.jclouds.rest.annotations.BinderParam;
+import org.jclouds.rest.annotations.RequestFilters;
+import org.jclouds.rest.annotations.ResponseParser;
+import org.jclouds.rest.annotations.SkipEncoding;
+
+/**
+ * Sends many requests to the storage/v1 API in one HTTP round trip. Requests are usually queued with a
+ * {@link Batch} rather than built by hand.
+ *
+ * @see <a href="https://cloud.google.com/storage/docs/json_api/v1/how-tos/batch" />
+ */
+@SkipEncoding({ '/', '=' })
+@RequestFilters(OAuthFilter.class)
+public interface BatchApi {
+
+   /** The most sub-requests the service accepts in one batch. */
+   int MAX_REQUESTS = 100;
+
+   /**
+    * Sends up to {@link #MAX_REQUESTS} requests as the parts of one {@code multipart/mixed} request.
+    *
+    * @param requests
+    *           requests to the storage/v1 API, built for the same endpoint as this api
+    *
+    * @return the response to each request, in the order the service sent them; each carries the {@code Content-ID}
+    *         header {@code <response-N>} of the {@code N}th request, counting from one
+    */
+   @Named("Batch:execute")
+   @POST
+   @Path("/batch/storage/v1")
+   @ResponseParser(ParseMultipartMixedResponse.class)
+   List<HttpResponse> execute(@BinderParam(BindRequestsToMultipartMixed.class) List<? extends HttpRequest> requests);
+}
@@ -47,6 +47,7 @@ import org.jclouds.googlecloudstorage.options.ListObjectOptions;
 import org.jclouds.googlecloudstorage.options.RewriteObjectOptions;
 import org.jclouds.googlecloudstorage.options.UpdateObjectOptions;
 import org.jclouds.googlecloudstorage.parser.ParseToPayloadEnclosing;
+import org.jclouds.http.HttpResponse;
 import org.jclouds.http.options.HttpRequestOptions;
 import org.jclouds.io.Payload;
 import org.jclouds.io.PayloadEnclosing;
@@ -73,7 +74,7 @@ import org.jclouds.rest.binders.BindToJsonPayload;
 public interface ObjectApi {
 
    /**
-    * Check the existence of an object
+    * Check the existence of an object. Only the object's name is requested, without its ACL.
     *
     * @param bucketName
     *           Name of the bucket in which the object resides
@@ -85,6 +86,7 @@ public interface ObjectApi {
    @Named("Object:Exist")
    @GET
    @Path("storage/v1/b/{bucket}/o/{object}")
+   @QueryParams(keys = { "projection", "fields" }, values = { "noAcl", "name" })
    @Fallback(FalseOnNotFoundOr404.class)
    @Nullable
    boolean objectExists(@PathParam("bucket") String bucketName, @PathParam("object") String objectName);
@@ -170,6 +172,29 @@ public interface ObjectApi {
    @Nullable PayloadEnclosing download(@PathParam("bucket") String bucketName, @PathParam("object") String objectName,
          HttpRequestOptions options);
 
+   /**
+    * Retrieves an object's data together with the response headers, which describe the object:
+    * {@code x-goog-generation}, {@code x-goog-hash}, {@code x-goog-stored-content-length}, {@code x-goog-meta-*} and
+    * the content headers.
+    *
+    * @param bucketName
+    *           Name of the bucket in which the object resides
+    * @param objectName
+    *           Name of the object
+    * @param options
+    *           A class that implements {@link HttpRequestOptions}
+    *           such as {@link GetObjectOptions} with optional query parameters
+    *
+    * @return the response, whose payload is the object's data, or null if the object does not exist
+    */
+   @Named("Object:get")
+   @GET
+   @QueryParams(keys = "alt", values = "media")
+   @Path("storage/v1/b/{bucket}/o/{object}")
+   @Fallback(NullOnNotFoundOr404.class)
+   @Nullable HttpResponse downloadResponse(@PathParam("bucket") String bucketName,
+         @PathParam("object") String objectName, HttpRequestOptions options);
+
    /**
     * Stores a new object. Object metadata setting is not supported with simple uploads
     *
@@ -524,4 +549,33 @@ public interface ObjectApi {
             @PathParam("sourceBucket") String sourceBucket,
             @PathParam("sourceObject") String sourceObject,
             RewriteObjectOptions options);
+
+   /**
+    * Rewrites a source object to a destination object with new metadata.
+    *
+    * @param destinationBucket
+    *           Name of the bucket in which the object to be stored
+    * @param destinationObject
+    *           Name of the new object.
+    * @param sourceBucket
+    *           Name of the bucket in which to find the source object.
+    * @param sourceObject
+    *           Name of the source object.
+    * @param template
+    *           Supply an {@link ObjectTemplate} with the metadata of the new object
+    * @param options
+    *           Supply an {@link RewriteObjectOptions}
+    *
+    * @return a {@link RewriteResponse}
+    */
+   @Named("Object:rewrite")
+   @POST
+   @Consumes(APPLICATION_JSON)
+   @Path("/storage/v1/b/{sourceBucket}/o/{sourceObject}/rewriteTo/b/{destinationBucket}/o/{destinationObject}")
+   RewriteResponse rewriteObjects(@PathParam("destinationBucket") String destinationBucket,
+            @PathParam("destinationObject") String destinationObject,
+            @PathParam("sourceBucket") String sourceBucket,
+            @PathParam("sourceObject") String sourceObject,
+            @BinderParam(BindToJsonPayload.class) ObjectTemplate template,
+            RewriteObjectOptions options);
 }
@@ -34,6 +34,7 @@ import org.jclouds.googlecloudstorage.domain.templates.ObjectTemplate;
 import org.jclouds.googlecloudstorage.options.InsertObjectOptions;
 import org.jclouds.googlecloudstorage.parser.ParseToResumableUpload;
 import org.jclouds.io.Payload;
+import org.jclouds.javax.annotation.Nullable;
 import org.jclouds.oauth.v2.filters.OAuthFilter;
 import org.jclouds.rest.annotations.BinderParam;
 import org.jclouds.rest.annotations.MapBinder;
@@ -90,7 +91,7 @@ public interface ResumableUploadApi {
     * @param contentType
     *           Content type of the uploaded data (Media part)
     * @param contentLength
-    *           Content length of the uploaded data (Media part)
+    *           Content length of the uploaded data (Media part), or null if not known in advance
     * @param metada
     *           Supply an {@link ObjectTemplate}
     *
@@ -103,7 +104,7 @@ public interface ResumableUploadApi {
    @ResponseParser(ParseToResumableUpload.class)
    ResumableUpload initResumableUpload(@PathParam("bucket") String bucketName,
             @HeaderParam("X-Upload-Content-Type") String contentType,
-            @HeaderParam("X-Upload-Content-Length") Long contentLength,
+            @HeaderParam("X-Upload-Content-Length") @Nullable Long contentLength,
             @BinderParam(BindToJsonPayload.class) ObjectTemplate metadata);
 
    /**
@@ -43,6 +43,17 @@ public class GetBucketOptions extends BaseHttpRequestOptions {
       return this;
    }
 
+   /**
+    * Selects the fields of the response, for example {@code name,versioning}. The selection must include
+    * {@code name}; fields left out come back as null.
+    *
+    * @see <a href="https://cloud.google.com/storage/docs/json_api/v1/how-tos/performance#partial-response" />
+    */
+   public GetBucketOptions fields(String fields) {
+      this.queryParameters.put("fields", checkNotNull(fields, "fields"));
+      return this;
+   }
+
    public static class Builder {
 
       public GetBucketOptions ifMetagenerationMatch(Long ifMetagenerationMatch) {
@@ -57,5 +68,9 @@ public class GetBucketOptions extends BaseHttpRequestOptions {
          return new GetBucketOptions().projection(projection);
       }
 
+      public GetBucketOptions fields(String fields) {
+         return new GetBucketOptions().fields(fields);
+      }
+
    }
 }
@@ -59,6 +59,18 @@ public class GetObjectOptions extends GetOptions {
       return this;
    }
 
+   /**
+    * Selects the fields of the response, for example {@code name,generation,metageneration,size,md5Hash}. Fields left
+    * out come back as null, so a selection must keep {@code name}, {@code generation}, {@code metageneration} and
+    * {@code size}.
+    *
+    * @see <a href="https://cloud.google.com/storage/docs/json_api/v1/how-tos/performance#partial-response" />
+    */
+   public GetObjectOptions fields(String fields) {
+      this.queryParameters.put("fields", checkNotNull(fields, "fields"));
+      return this;
+   }
+
    public static class Builder {
 
       public GetObjectOptions ifGenerationMatch(Long ifGenerationMatch) {
@@ -84,5 +96,9 @@ public class GetObjectOptions extends GetOptions {
       public GetObjectOptions projection(Projection projection) {
          return new GetObjectOptions().projection(projection);
       }
+
+      public GetObjectOptions fields(String fields) {
+         return new GetObjectOptions().fields(fields);
+      }
    }
 }
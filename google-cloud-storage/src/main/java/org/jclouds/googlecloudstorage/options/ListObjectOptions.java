@@ -20,6 +20,9 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import org.jclouds.googlecloudstorage.domain.DomainResourceReferences.Projection;
 import org.jclouds.http.options.BaseHttpRequestOptions;
+import org.jclouds.javax.annotation.Nullable;
+
+import com.google.common.collect.ImmutableSet;
 
 public class ListObjectOptions extends BaseHttpRequestOptions {
 
@@ -53,6 +56,60 @@ public class ListObjectOptions extends BaseHttpRequestOptions {
       return this;
    }
 
+   /** Lists only objects whose names sort at or after {@code startOffset}. */
+   public ListObjectOptions startOffset(String startOffset) {
+      this.queryParameters.put("startOffset", checkNotNull(startOffset, "startOffset"));
+      return this;
+   }
+
+   /** Lists only objects whose names sort before {@code endOffset}. */
+   public ListObjectOptions endOffset(String endOffset) {
+      this.queryParameters.put("endOffset", checkNotNull(endOffset, "endOffset"));
+      return this;
+   }
+
+   /**
+    * Selects the fields of the response, for example
+    * {@code items(name,generation,metageneration,size),nextPageToken,prefixes}. Fields left out come back as null, so a
+    * selection of objects must keep {@code name}, {@code generation}, {@code metageneration} and {@code size}.
+    *
+    * @see <a href="https://cloud.google.com/storage/docs/json_api/v1/how-tos/performance#partial-response" />
+    */
+   public ListObjectOptions fields(String fields) {
+      this.queryParameters.put("fields", checkNotNull(fields, "fields"));
+      return this;
+   }
+
+   /** Returns a copy of these options that requests the page identified by {@code pageToken}. */
+   public ListObjectOptions withPageToken(String pageToken) {
+      ListObjectOptions options = copy();
+      options.queryParameters.replaceValues("pageToken", ImmutableSet.of(checkNotNull(pageToken, "pageToken")));
+      return options;
+   }
+
+   /**
+    * Returns a copy of these options restricted to names in {@code [startOffset, endOffset)}; a null bound leaves that
+    * side open.
+    */
+   public ListObjectOptions withRange(@Nullable String startOffset, @Nullable String endOffset) {
+      ListObjectOptions options = copy();
+      options.queryParameters.removeAll("startOffset");
+      options.queryParameters.removeAll("endOffset");
+      if (startOffset != null) {
+         options.startOffset(startOffset);
+      }
+      if (endOffset != null) {
+         options.endOffset(endOffset);
+      }
+      return options;
+   }
+
+   private ListObjectOptions copy() {
+      ListObjectOptions options = new ListObjectOptions();
+      options.queryParameters.putAll(queryParameters);
+      return options;
+   }
+
    public static class Builder {
 
       public ListObjectOptions delimiter(String delimiter) {
@@ -78,5 +135,17 @@ public class ListObjectOptions extends BaseHttpRequestOptions {
       public ListObjectOptions projection(Projection projection) {
          return new ListObjectOptions().projection(projection);
       }
+
+      public ListObjectOptions startOffset(String startOffset) {
+         return new ListObjectOptions().startOffset(startOffset);
+      }
+
+      public ListObjectOptions endOffset(String endOffset) {
+         return new ListObjectOptions().endOffset(endOffset);
+      }
+
+      public ListObjectOptions fields(String fields) {
+         return new ListObjectOptions().fields(fields);
+      }
    }
 }
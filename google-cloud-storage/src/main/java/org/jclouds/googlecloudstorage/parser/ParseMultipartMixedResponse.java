@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.parser;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import org.jclouds.http.HttpResponse;
+import org.jclouds.javax.annotation.Nullable;
+
+import com.google.common.base.Function;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.Multimap;
+import com.google.common.io.Closeables;
+
+/**
+ * Splits a {@code multipart/mixed} batch response into the responses it carries, in the order they arrive. The body is
+ * read as a stream, one line at a time, so only the part being parsed is held in memory. Each response keeps the
+ * {@code Content-ID} of its part as a header, to match it with its request.
+ *
+ * @see <a href="https://cloud.google.com/storage/docs/json_api/v1/how-tos/batch" />
+ */
+public class ParseMultipartMixedResponse implements Function<HttpResponse, List<HttpResponse>> {
+
+   public static final String CONTENT_ID = "Content-ID";
+
+   @Override
+   public List<HttpResponse> apply(HttpResponse from) {
+      checkNotNull(from.getPayload(), "batch response has no body");
+      String boundary = boundary(from.getPayload().getContentMetadata().getContentType());
+      InputStream in = null;
+      try {
+         in = from.getPayload().openStream();
+         return parse(in, boundary);
+      } catch (IOException ioe) {
+         throw Throwables.propagate(ioe);
+      } finally {
+         Closeables.closeQuietly(in);
+      }
+   }
+
+   static String boundary(@Nullable String contentType) {
+      checkArgument(contentType != null && contentType.startsWith("multipart/"), "not a multipart response: %s",
+            contentType);
+      for (String parameter : contentType.split(";")) {
+         parameter = parameter.trim();
+         if (parameter.startsWith("boundary=")) {
+            String boundary = parameter.substring("boundary=".length());
+            return boundary.startsWith("\"") ? boundary.substring(1, boundary.length() - 1) : boundary;
+         }
+      }
+      throw new IllegalArgumentException("no boundary in: " + contentType);
+   }
+
+   static List<HttpResponse> parse(InputStream in, String boundary) throws IOException {
+      Lines lines = new Lines(in);
+      String delimiter = "--" + boundary;
+      String close = delimiter + "--";
+      ImmutableList.Builder<HttpResponse> responses = ImmutableList.builder();
+      // Skip the preamble.
+      String line;
+      do {
+         line = lines.next();
+      } while (line != null && !line.equals(delimiter) && !line.equals(close));
+      while (line != null && line.equals(delimiter)) {
+         Multimap<String, String> partHeaders = lines.headers();
+         String statusLine = lines.next();
+         checkArgument(statusLine != null && statusLine.startsWith("HTTP/"), "part has no status line: %s",
+               statusLine);
+         Multimap<String, String> headers = lines.headers();
+         ByteArrayOutputStream body = new ByteArrayOutputStream();
+         // The line break before a delimiter belongs to the delimiter, so a line is only written once the next is read.
+         byte[] pending = null;
+         for (byte[] raw; (raw = lines.nextRaw()) != null;) {
+            line = Lines.text(raw);
+            if (line.equals(delimiter) || line.equals(close)) {
+               break;
+            }
+            if (pending != null) {
+               body.write(pending);
+            }
+            pending = raw;
+            line = null;
+         }
+         if (pending != null) {
+            body.write(pending, 0, pending.length - Lines.terminatorLength(pending));
+         }
+         responses.add(response(statusLine, partHeaders, headers, body.toByteArray()));
+      }
+      return responses.build();
+   }
+
+   private static HttpResponse response(String statusLine, Multimap<String, String> partHeaders,
+         Multimap<String, String> headers, byte[] body) {
+      String[] status = statusLine.split(" ", 3);
+      ImmutableMultimap.Builder<String, String> kept = ImmutableMultimap.builder();
+      String contentType = null;
+      for (String name : headers.keySet()) {
+         if (name.equalsIgnoreCase("Content-Type")) {
+            contentType = headers.get(name).iterator().next();
+         } else if (!name.toLowerCase().startsWith("content-")) {
+            kept.putAll(name, headers.get(name));
+         }
+      }
+      for (String name : partHeaders.keySet()) {
+         if (name.equalsIgnoreCase(CONTENT_ID)) {
+            kept.putAll(CONTENT_ID, partHeaders.get(name));
+         }
+      }
+      HttpResponse.Builder<?> builder = HttpResponse.builder().statusCode(Integer.parseInt(status[1]))
+            .message(status.length > 2 ? status[2] : "").headers(kept.build());
+      if (body.length > 0) {
+         builder.payload(body);
+      }
+      HttpResponse response = builder.build();
+      if (response.getPayload() != null && contentType != null) {
+         response.getPayload().getContentMetadata().setContentType(contentType);
+      }
+      return response;
+   }
+
+   /** Reads CRLF or LF terminated lines as bytes, so that part bodies are copied unchanged. */
+   private static final class Lines {
+      private final InputStream in;
+
+      Lines(InputStream in) {
+         this.in = new BufferedInputStream(in);
+      }
+
+      /** The next line including its terminator, or null at the end of the stream. */
+      @Nullable byte[] nextRaw() throws IOException {
+         ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+         for (int b; (b = in.read()) != -1;) {
+            line.write(b);
+            if (b == '\n') {
+               break;
+            }
+         }
+         return line.size() == 0 ? null : line.toByteArray();
+      }
+
+      @Nullable String next() throws IOException {
+         byte[] raw = nextRaw();
+         return raw == null ? null : text(raw);
+      }
+
+      /** Reads header lines up to and including the blank line that ends them. */
+      Multimap<String, String> headers() throws IOException {
+         ImmutableMultimap.Builder<String, String> headers = ImmutableMultimap.builder();
+         for (String line; (line = next()) != null && !line.isEmpty();) {
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+               headers.put(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+            }
+         }
+         return headers.build();
+      }
+
+      static String text(byte[] raw) {
+         return new String(raw, 0, raw.length - terminatorLength(raw), UTF_8);
+      }
+
+      static int terminatorLength(byte[] raw) {
+         if (raw.length == 0 || raw[raw.length - 1] != '\n') {
+            return 0;
+         }
+         return raw.length > 1 && raw[raw.length - 2] == '\r' ? 2 : 1;
+      }
+   }
+}
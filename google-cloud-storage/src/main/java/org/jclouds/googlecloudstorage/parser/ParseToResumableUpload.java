@@ -18,16 +18,30 @@ package org.jclouds.googlecloudstorage.parser;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
+import java.io.IOException;
 import java.util.regex.Pattern;
 
+import javax.inject.Inject;
+
+import org.jclouds.googlecloudstorage.domain.GoogleCloudStorageObject;
 import org.jclouds.googlecloudstorage.domain.ResumableUpload;
 import org.jclouds.http.HttpResponse;
+import org.jclouds.javax.annotation.Nullable;
+import org.jclouds.json.Json;
+import org.jclouds.util.Strings2;
 
 import com.google.common.base.Function;
 import com.google.common.base.Splitter;
+import com.google.common.base.Throwables;
 
 public class ParseToResumableUpload implements Function<HttpResponse, ResumableUpload> {
 
+   private final Json json;
+
+   @Inject ParseToResumableUpload(Json json) {
+      this.json = json;
+   }
+
    @Override
    public ResumableUpload apply(HttpResponse response) {
 
@@ -44,12 +58,32 @@ public class ParseToResumableUpload implements Function<HttpResponse, ResumableU
          upperLimit = getUpperLimitFromRange(range);
          lowerLimit = getLowerLimitFromRange(range);
          if (lowerLimit != null && upperLimit != null) {
-            checkArgument(lowerLimit < upperLimit, "lower range must less than upper range, was: %s - %s", lowerLimit,
-                  upperLimit);
+            // A single committed byte is reported as bytes=0-0.
+            checkArgument(lowerLimit <= upperLimit, "lower range must not exceed upper range, was: %s - %s",
+                  lowerLimit, upperLimit);
          }
       }
 
-      return ResumableUpload.create(response.getStatusCode(), uploadId, contentLength, upperLimit, lowerLimit);
+      return ResumableUpload.create(response.getStatusCode(), uploadId, contentLength, lowerLimit, upperLimit,
+            object(response));
+   }
+
+   /** The object resource that the response to the final chunk of a completed upload carries. */
+   @Nullable
+   private GoogleCloudStorageObject object(HttpResponse response) {
+      if ((response.getStatusCode() != 200 && response.getStatusCode() != 201) || response.getPayload() == null) {
+         return null;
+      }
+      String contentType = response.getPayload().getContentMetadata().getContentType();
+      if (contentType == null || !contentType.startsWith("application/json")) {
+         return null;
+      }
+      try {
+         return json.fromJson(Strings2.toStringAndClose(response.getPayload().openStream()),
+               GoogleCloudStorageObject.class);
+      } catch (IOException ioe) {
+         throw Throwables.propagate(ioe);
+      }
    }
 
    // Return the Id of the Upload
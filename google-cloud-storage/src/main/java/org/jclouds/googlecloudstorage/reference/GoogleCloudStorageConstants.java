@@ -34,4 +34,211 @@ public final class GoogleCloudStorageConstants {
     */
    @Beta
    public static final String OPERATION_COMPLETE_INTERVAL = "jclouds.google-cloud-storage.operation-complete-interval";
+
+   /**
+    * The size, in bytes, of each part uploaded by {@code putBlob(container, blob, PutOptions.multipart())}. The value
+    * is raised when needed to stay within the minimum part size and the maximum number of parts.
+    */
+   @Beta
+   public static final String MPU_PART_SIZE = "jclouds.google-cloud-storage.mpu.part-size";
+
+   /**
+    * The maximum number of parts of a single multipart upload that are transferred concurrently.
+    */
+   @Beta
+   public static final String MPU_PARALLEL_DEGREE = "jclouds.google-cloud-storage.mpu.parallel-degree";
+
+   /**
+    * The maximum number of bytes of a single multipart upload that are buffered or in flight at once. At least one part
+    * is always allowed in flight.
+    */
+   @Beta
+   public static final String MPU_MAX_BUFFERED_BYTES = "jclouds.google-cloud-storage.mpu.max-buffered-bytes";
+
+   /**
+    * The maximum number of multipart component objects deleted concurrently after a compose or abort.
+    */
+   @Beta
+   public static final String MPU_CLEANUP_PARALLEL_DEGREE = "jclouds.google-cloud-storage.mpu.cleanup-parallel-degree";
+
+   /**
+    * The number of object listing pages requested ahead of the page being consumed.
+    */
+   @Beta
+   public static final String LIST_PREFETCH_DEPTH = "jclouds.google-cloud-storage.list.prefetch-depth";
+
+   /**
+    * The number of key ranges listed concurrently by recursive full-bucket listings. One lists sequentially.
+    */
+   @Beta
+   public static final String LIST_PARALLELISM = "jclouds.google-cloud-storage.list.parallelism";
+
+   /**
+    * The number of pages each concurrently listed key range may fetch ahead of the caller.
+    */
+   @Beta
+   public static final String LIST_RANGE_BUFFER_PAGES = "jclouds.google-cloud-storage.list.range-buffer-pages";
+
+   /**
+    * Whether {@code getBlob} fetches the object resource before downloading, for callers that need the blob's id, URI
+    * or public URI. Otherwise metadata is read from the download response headers in a single request.
+    */
+   @Beta
+   public static final String GET_BLOB_FULL_METADATA = "jclouds.google-cloud-storage.get-blob.full-metadata";
+
+   /**
+    * The size, in bytes, of each byte range fetched by a parallel download.
+    */
+   @Beta
+   public static final String DOWNLOAD_RANGE_SIZE = "jclouds.google-cloud-storage.download.range-size";
+
+   /**
+    * The maximum number of byte ranges of a single download that are fetched concurrently.
+    */
+   @Beta
+   public static final String DOWNLOAD_PARALLEL_DEGREE = "jclouds.google-cloud-storage.download.parallel-degree";
+
+   /**
+    * The number of times a byte range is requested before its download fails. Each retry resumes after the last byte
+    * received.
+    */
+   @Beta
+   public static final String DOWNLOAD_RANGE_ATTEMPTS = "jclouds.google-cloud-storage.download.range-attempts";
+
+   /**
+    * The size, in bytes, of each chunk sent by a resumable upload. Must be a multiple of 256 KiB.
+    */
+   @Beta
+   public static final String RESUMABLE_CHUNK_SIZE = "jclouds.google-cloud-storage.resumable.chunk-size";
+
+   /**
+    * The number of times a resumable upload chunk is sent before the upload fails. Each retry resumes after the last
+    * byte the service committed.
+    */
+   @Beta
+   public static final String RESUMABLE_ATTEMPTS = "jclouds.google-cloud-storage.resumable.attempts";
+
+   /**
+    * The maximum number of batch requests of a bulk {@code removeBlobs} that are sent concurrently. Each batch deletes
+    * up to 100 objects.
+    */
+   @Beta
+   public static final String REMOVE_BLOBS_PARALLEL_DEGREE =
+         "jclouds.google-cloud-storage.remove-blobs.parallel-degree";
+
+   /**
+    * The number of times a bulk {@code removeBlobs} attempts to delete an object. Only deletions that failed with a
+    * server error, or got no response, are attempted again.
+    */
+   @Beta
+   public static final String REMOVE_BLOBS_ATTEMPTS = "jclouds.google-cloud-storage.remove-blobs.attempts";
+
+   /**
+    * The most bytes a single rewrite call may copy, a multiple of 1 MiB; zero leaves it to the service. A call that
+    * times out is retried with half as many bytes.
+    */
+   @Beta
+   public static final String REWRITE_MAX_BYTES_PER_CALL = "jclouds.google-cloud-storage.rewrite.max-bytes-per-call";
+
+   /**
+    * The number of objects a bulk copy rewrites concurrently.
+    */
+   @Beta
+   public static final String REWRITE_PARALLEL_DEGREE = "jclouds.google-cloud-storage.rewrite.parallel-degree";
+
+   /**
+    * The number of times a rewrite call is sent before the copy fails. Retries continue from the last rewrite token.
+    */
+   @Beta
+   public static final String REWRITE_ATTEMPTS = "jclouds.google-cloud-storage.rewrite.attempts";
+
+   /**
+    * The number of objects a bucket sync copies concurrently, counting each batch of deletes as one.
+    */
+   @Beta
+   public static final String SYNC_PARALLEL_DEGREE = "jclouds.google-cloud-storage.sync.parallel-degree";
+
+   /**
+    * The most bytes per second a bucket sync starts copying, averaged over time; zero for no limit.
+    */
+   @Beta
+   public static final String SYNC_MAX_BYTES_PER_SECOND = "jclouds.google-cloud-storage.sync.max-bytes-per-second";
+
+   /**
+    * The number of objects whose metadata the blob store keeps for repeated lookups; zero, the default, for no cache.
+    */
+   @Beta
+   public static final String METADATA_CACHE_SIZE = "jclouds.google-cloud-storage.metadata-cache.size";
+
+   /**
+    * The time, in msecs, after which cached object metadata is evicted, whether or not it was revalidated.
+    */
+   @Beta
+   public static final String METADATA_CACHE_TTL = "jclouds.google-cloud-storage.metadata-cache.ttl";
+
+   /**
+    * The age, in msecs, after which cached object metadata is checked against the object's generation before use.
+    */
+   @Beta
+   public static final String METADATA_CACHE_REVALIDATE_AFTER =
+         "jclouds.google-cloud-storage.metadata-cache.revalidate-after";
+
+   /**
+    * The rate of false positives an existence index aims for; more accurate indexes take more memory.
+    */
+   @Beta
+   public static final String EXISTENCE_INDEX_FALSE_POSITIVE_RATE =
+         "jclouds.google-cloud-storage.existence-index.false-positive-rate";
+
+   /**
+    * The time, in msecs, for which an existence index answers after it is built. Writes by other clients are not seen
+    * by the index, so this bounds how long they can be missed.
+    */
+   @Beta
+   public static final String EXISTENCE_INDEX_TTL = "jclouds.google-cloud-storage.existence-index.ttl";
+
+   /**
+    * The directory in which {@code getBlob} keeps the content of objects it reads, for reuse by this and other
+    * processes on the host; empty, the default, for no content cache.
+    */
+   @Beta
+   public static final String CONTENT_CACHE_DIRECTORY = "jclouds.google-cloud-storage.content-cache.directory";
+
+   /**
+    * The most bytes the content cache keeps on disk. The least recently used objects are evicted beyond this.
+    */
+   @Beta
+   public static final String CONTENT_CACHE_MAX_BYTES = "jclouds.google-cloud-storage.content-cache.max-bytes";
+
+   /**
+    * The size, in bytes, of the first byte range a seekable object channel requests, and of the smallest range random
+    * access shrinks it to.
+    */
+   @Beta
+   public static final String READ_AHEAD_MIN_BYTES = "jclouds.google-cloud-storage.read-ahead.min-bytes";
+
+   /**
+    * The size, in bytes, of the largest byte range sequential reads grow a seekable object channel's read-ahead to.
+    */
+   @Beta
+   public static final String READ_AHEAD_MAX_BYTES = "jclouds.google-cloud-storage.read-ahead.max-bytes";
+
+   /**
+    * Whether CRC32C checksums are computed as data streams: uploads are checked against the checksum the service
+    * stores, and deleted if it differs; whole-object downloads fail at their end if their bytes do not match.
+    */
+   @Beta
+   public static final String CRC32C_VALIDATION = "jclouds.google-cloud-storage.crc32c-validation";
+
+   /**
+    * The size, in bytes, of the file segments whose CRC32C is computed concurrently before being combined.
+    */
+   @Beta
+   public static final String CRC32C_SEGMENT_SIZE = "jclouds.google-cloud-storage.crc32c.segment-size";
+
+   /**
+    * The number of file segments whose CRC32C is computed at once.
+    */
+   @Beta
+   public static final String CRC32C_PARALLEL_DEGREE = "jclouds.google-cloud-storage.crc32c.parallel-degree";
 }
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.zip.Checksum;
+
+import com.google.common.io.BaseEncoding;
+import com.google.common.primitives.Ints;
+
+/**
+ * The CRC32C (Castagnoli) checksum the service keeps for every object. Bytes are folded in eight at a time through
+ * eight lookup tables, which is several times faster than a byte at a time. Checksums of consecutive pieces can be
+ * {@linkplain #combine combined}, so pieces can be summed in parallel, and the checksum of a composite object predicted
+ * from those of its components.
+ *
+ * @see <a href="https://cloud.google.com/storage/docs/hashes-etags" />
+ */
+public final class Crc32c implements Checksum {
+
+   /** The reflected Castagnoli polynomial. */
+   private static final int POLYNOMIAL = 0x82F63B78;
+
+   /** {@code TABLES[k][b]} is the CRC of byte {@code b} followed by {@code k} zero bytes. */
+   private static final int[][] TABLES = new int[8][256];
+
+   static {
+      for (int b = 0; b < 256; b++) {
+         int crc = b;
+         for (int bit = 0; bit < 8; bit++) {
+            crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLYNOMIAL : crc >>> 1;
+         }
+         TABLES[0][b] = crc;
+      }
+      for (int k = 1; k < 8; k++) {
+         for (int b = 0; b < 256; b++) {
+            int previous = TABLES[k - 1][b];
+            TABLES[k][b] = (previous >>> 8) ^ TABLES[0][previous & 0xFF];
+         }
+      }
+   }
+
+   private int crc = 0xFFFFFFFF;
+
+   @Override
+   public void update(int b) {
+      crc = (crc >>> 8) ^ TABLES[0][(crc ^ b) & 0xFF];
+   }
+
+   @Override
+   public void update(byte[] b, int off, int len) {
+      int[] t0 = TABLES[0], t1 = TABLES[1], t2 = TABLES[2], t3 = TABLES[3];
+      int[] t4 = TABLES[4], t5 = TABLES[5], t6 = TABLES[6], t7 = TABLES[7];
+      int c = crc;
+      int end = off + len;
+      for (; end - off >= 8; off += 8) {
+         c ^= (b[off] & 0xFF) | (b[off + 1] & 0xFF) << 8 | (b[off + 2] & 0xFF) << 16 | (b[off + 3] & 0xFF) << 24;
+         c = t7[c & 0xFF] ^ t6[(c >>> 8) & 0xFF] ^ t5[(c >>> 16) & 0xFF] ^ t4[c >>> 24]
+               ^ t3[b[off + 4] & 0xFF] ^ t2[b[off + 5] & 0xFF] ^ t1[b[off + 6] & 0xFF] ^ t0[b[off + 7] & 0xFF];
+      }
+      for (; off < end; off++) {
+         c = (c >>> 8) ^ t0[(c ^ b[off]) & 0xFF];
+      }
+      crc = c;
+   }
+
+   @Override
+   public long getValue() {
+      return ~crc & 0xFFFFFFFFL;
+   }
+
+   @Override
+   public void reset() {
+      crc = 0xFFFFFFFF;
+   }
+
+   /** The value as the service gives it: four big-endian bytes, base64 encoded. */
+   public String toBase64() {
+      return toBase64(getValue());
+   }
+
+   public static String toBase64(long value) {
+      return BaseEncoding.base64().encode(Ints.toByteArray((int) value));
+   }
+
+   public static long fromBase64(String value) {
+      return Ints.fromByteArray(BaseEncoding.base64().decode(value)) & 0xFFFFFFFFL;
+   }
+
+   /**
+    * The CRC32C of two byte sequences concatenated, from the CRC32C of each and the length of the second, without
+    * their bytes. The first CRC is multiplied by x^(8 * length2) in GF(2)[x] modulo the polynomial, which takes time
+    * logarithmic in the length. The CRC32C of nothing is zero, so a running combination can start from zero.
+    */
+   public static long combine(long crc1, long crc2, long length2) {
+      checkArgument(length2 >= 0, "length2 must not be negative, was: %s", length2);
+      return (multiplyModP(x8nModP(length2), (int) crc1) ^ (int) crc2) & 0xFFFFFFFFL;
+   }
+
+   /** x^(8n) modulo the polynomial: the factor that shifts a CRC past {@code n} zero bytes. */
+   private static int x8nModP(long n) {
+      int p = 1 << 31; // x^0; bit 31 holds the lowest power
+      for (int square = 1 << 23; n != 0; n >>>= 1, square = multiplyModP(square, square)) { // from x^8
+         if ((n & 1) != 0) {
+            p = multiplyModP(square, p);
+         }
+      }
+      return p;
+   }
+
+   /** The product of two polynomials modulo the polynomial, in the reflected bit order of the CRC. */
+   private static int multiplyModP(int a, int b) {
+      int product = 0;
+      for (int m = 1 << 31; m != 0; m >>>= 1) {
+         if ((a & m) != 0) {
+            product ^= b;
+         }
+         b = (b & 1) != 0 ? (b >>> 1) ^ POLYNOMIAL : b >>> 1;
+      }
+      return product;
+   }
+}
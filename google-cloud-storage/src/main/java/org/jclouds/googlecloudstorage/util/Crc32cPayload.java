@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.util;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CheckedInputStream;
+
+import org.jclouds.io.Payload;
+import org.jclouds.io.payloads.DelegatingPayload;
+
+/**
+ * Computes the CRC32C of a payload as it is read for sending, so that no separate pass over the data is needed. Every
+ * stream opened starts a new checksum, so a retried request gives the checksum of what was last sent.
+ */
+public final class Crc32cPayload extends DelegatingPayload {
+
+   private volatile Crc32c checksum;
+
+   public Crc32cPayload(Payload delegate) {
+      super(delegate);
+   }
+
+   @Override
+   public InputStream openStream() throws IOException {
+      Crc32c checksum = new Crc32c();
+      this.checksum = checksum;
+      return new CheckedInputStream(super.openStream(), checksum);
+   }
+
+   /** The checksum of the bytes read from the last stream opened, as the service gives it. */
+   public String crc32c() {
+      Crc32c checksum = this.checksum;
+      checkState(checksum != null, "payload was not read");
+      return checksum.toBase64();
+   }
+}
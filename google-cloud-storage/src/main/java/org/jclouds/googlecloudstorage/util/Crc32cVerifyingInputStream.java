@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Checks the bytes of an object against the CRC32C the service gave for it as they are read. The read that reaches the
+ * end of the stream fails with an {@link IOException} if they do not match, so a caller reading to the end never
+ * accepts corrupted data.
+ */
+public final class Crc32cVerifyingInputStream extends FilterInputStream {
+
+   private final String expected;
+   private final String description;
+   private final Crc32c checksum = new Crc32c();
+   private boolean verified;
+
+   /**
+    * @param expected
+    *           the object's CRC32C, base64 encoded as the service gives it
+    * @param description
+    *           names the object in the error
+    */
+   public Crc32cVerifyingInputStream(InputStream in, String expected, String description) {
+      super(checkNotNull(in, "in"));
+      this.expected = checkNotNull(expected, "expected");
+      this.description = checkNotNull(description, "description");
+   }
+
+   @Override
+   public int read() throws IOException {
+      int b = in.read();
+      if (b == -1) {
+         verify();
+      } else {
+         checksum.update(b);
+      }
+      return b;
+   }
+
+   @Override
+   public int read(byte[] b, int off, int len) throws IOException {
+      int read = in.read(b, off, len);
+      if (read == -1) {
+         verify();
+      } else {
+         checksum.update(b, off, read);
+      }
+      return read;
+   }
+
+   /** Skips by reading, so that skipped bytes are still checked. */
+   @Override
+   public long skip(long n) throws IOException {
+      if (n <= 0) {
+         return 0;
+      }
+      byte[] buffer = new byte[(int) Math.min(n, 8192)];
+      long skipped = 0;
+      while (skipped < n) {
+         int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+         if (read == -1) {
+            break;
+         }
+         skipped += read;
+      }
+      return skipped;
+   }
+
+   @Override
+   public boolean markSupported() {
+      return false;
+   }
+
+   @Override
+   public synchronized void mark(int readlimit) {
+   }
+
+   @Override
+   public synchronized void reset() throws IOException {
+      throw new IOException("mark/reset not supported");
+   }
+
+   private void verify() throws IOException {
+      if (verified) {
+         return;
+      }
+      String actual = checksum.toBase64();
+      if (!actual.equals(expected)) {
+         throw new IOException("crc32c of " + description + " was " + actual + ", expected " + expected);
+      }
+      verified = true;
+   }
+}
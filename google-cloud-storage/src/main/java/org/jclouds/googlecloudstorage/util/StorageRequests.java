@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.util;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Comparator;
+
+import org.jclouds.http.HttpResponseException;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+
+/** Helpers shared by the strategies that send object requests and read object listings. */
+public final class StorageRequests {
+
+   /**
+    * Orders names as the service lists them, by their UTF-8 bytes, which is the order of their code points. It differs
+    * from {@link String#compareTo} for characters outside the Basic Multilingual Plane.
+    */
+   public static final Comparator<String> NAME_ORDER = new Comparator<String>() {
+      @Override
+      public int compare(String a, String b) {
+         int i = 0;
+         int j = 0;
+         while (i < a.length() && j < b.length()) {
+            int ca = a.codePointAt(i);
+            int cb = b.codePointAt(j);
+            if (ca != cb) {
+               return ca < cb ? -1 : 1;
+            }
+            i += Character.charCount(ca);
+            j += Character.charCount(cb);
+         }
+         return (i < a.length() ? 1 : 0) - (j < b.length() ? 1 : 0);
+      }
+   };
+
+   private StorageRequests() {
+   }
+
+   /** Names with a slash are URL encoded, as object names are path parameters that skip encoding of {@code /}. */
+   public static String encodeName(String name) {
+      try {
+         return name.contains("/") ? URLEncoder.encode(name, Charsets.UTF_8.toString()) : name;
+      } catch (UnsupportedEncodingException uee) {
+         throw Throwables.propagate(uee);
+      }
+   }
+
+   /** I/O errors, server errors and rate limiting may not happen again; anything else is final. */
+   public static boolean isRetryable(RuntimeException re) {
+      for (Throwable cause : Throwables.getCausalChain(re)) {
+         if (cause instanceof IOException) {
+            return true;
+         }
+         if (cause instanceof HttpResponseException) {
+            HttpResponseException hre = (HttpResponseException) cause;
+            return hre.getResponse() == null || hre.getResponse().getStatusCode() >= 500
+                  || hre.getResponse().getStatusCode() == 429;
+         }
+      }
+      return false;
+   }
+}
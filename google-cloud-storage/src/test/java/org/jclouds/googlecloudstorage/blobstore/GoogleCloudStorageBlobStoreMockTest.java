@@ -0,0 +1,304 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.util.List;
+
+import org.jclouds.blobstore.BlobStore;
+import org.jclouds.blobstore.BlobStoreContext;
+import org.jclouds.blobstore.domain.Blob;
+import org.jclouds.blobstore.domain.BlobMetadata;
+import org.jclouds.blobstore.domain.MultipartPart;
+import org.jclouds.blobstore.domain.MultipartUpload;
+import org.jclouds.blobstore.domain.PageSet;
+import org.jclouds.blobstore.domain.StorageMetadata;
+import org.jclouds.blobstore.options.ListContainerOptions;
+import org.jclouds.googlecloudstorage.blobstore.functions.BlobStoreListContainerOptionsToListObjectOptions;
+import org.jclouds.googlecloudstorage.internal.BaseGoogleCloudStorageApiMockTest;
+import org.jclouds.io.ByteStreams2;
+import org.jclouds.io.Payload;
+import org.jclouds.io.Payloads;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+@Test(groups = "unit", testName = "GoogleCloudStorageBlobStoreMockTest", singleThreaded = true)
+public class GoogleCloudStorageBlobStoreMockTest extends BaseGoogleCloudStorageApiMockTest {
+
+   public void detailedListIsSingleRequest() throws Exception {
+      server.enqueue(jsonResponse("/object_list.json"));
+
+      BlobStoreContext context = builder().buildView(BlobStoreContext.class);
+      PageSet<? extends StorageMetadata> list;
+      try {
+         list = context.getBlobStore().list("test", ListContainerOptions.Builder.withDetails());
+      } finally {
+         context.close();
+      }
+
+      assertEquals(list.size(), 2);
+      BlobMetadata metadata = (BlobMetadata) list.iterator().next();
+      assertEquals(metadata.getName(), "file_name");
+      assertEquals(metadata.getContentMetadata().getContentType(), "application/x-tar");
+      assertEquals(metadata.getContentMetadata().getContentLength(), Long.valueOf(1000));
+      assertEquals(metadata.getId(), "test/file_name/1000");
+      assertEquals(metadata.getUri(), URI.create("https://www.googleapis.com/storage/v1/b/test/o/file_name"));
+      assertEquals(metadata.getPublicUri(),
+            URI.create("https://www.googleapis.com/download/storage/v1/b/test/o/file_name?generation=1000&alt=media"));
+      assertEquals(server.getRequestCount(), 1);
+      RecordedRequest request = server.takeRequest();
+      assertEquals(URLDecoder.decode(request.getPath(), "UTF-8"), "/storage/v1/b/test/o?delimiter=/&projection=noAcl"
+            + "&fields=" + BlobStoreListContainerOptionsToListObjectOptions.LIST_FIELDS);
+      // The service returns only the selected fields, so those the URIs come from must be among them.
+      for (String field : new String[] { "id", "selfLink", "mediaLink" }) {
+         assertTrue(BlobStoreListContainerOptionsToListObjectOptions.LIST_FIELDS.contains("(" + field + ",")
+               || BlobStoreListContainerOptionsToListObjectOptions.LIST_FIELDS.contains("," + field + ","), field);
+      }
+   }
+
+   public void listMultipartUploadFollowsEveryPage() throws Exception {
+      server.enqueue(objectPage(1, 1000, "token1"));
+      server.enqueue(objectPage(1001, 2000, "token2"));
+      server.enqueue(objectPage(2001, 2500, null));
+
+      BlobStoreContext context = builder().buildView(BlobStoreContext.class);
+      List<MultipartPart> parts;
+      try {
+         BlobStore blobStore = context.getBlobStore();
+         BlobMetadata metadata = blobStore.blobBuilder("object").payload(new byte[0]).build().getMetadata();
+         parts = blobStore.listMultipartUpload(MultipartUpload.create("bucket", "object", "object", metadata));
+      } finally {
+         context.close();
+      }
+
+      assertEquals(parts.size(), 2500);
+      for (int i = 0; i < parts.size(); i++) {
+         assertEquals(parts.get(i).partNumber(), i + 1);
+         assertEquals(parts.get(i).partSize(), 1024);
+      }
+      String query = "/storage/v1/b/bucket/o?prefix=object_&projection=noAcl&fields="
+            + GoogleCloudStorageBlobStore.LIST_PART_FIELDS;
+      assertEquals(URLDecoder.decode(server.takeRequest().getPath(), "UTF-8"), query);
+      assertEquals(URLDecoder.decode(server.takeRequest().getPath(), "UTF-8"), query + "&pageToken=token1");
+      assertEquals(URLDecoder.decode(server.takeRequest().getPath(), "UTF-8"), query + "&pageToken=token2");
+   }
+
+   public void getBlobIsSingleRequest() throws Exception {
+      server.enqueue(new MockResponse().setBody("hello")
+            .addHeader("Content-Type", "text/plain")
+            .addHeader("ETag", "CKih16GjycICEAE=")
+            .addHeader("Last-Modified", "Sat, 27 Sep 2014 00:01:44 GMT")
+            .addHeader("x-goog-generation", "1411776104819000")
+            .addHeader("x-goog-hash", "crc32c=mnG7TA==")
+            .addHeader("x-goog-hash", "md5=XUFAKrxLKna5cZ2REBfFkg==")
+            .addHeader("x-goog-stored-content-length", "5")
+            .addHeader("x-goog-meta-foo", "bar"));
+
+      BlobStoreContext context = builder().buildView(BlobStoreContext.class);
+      Blob blob;
+      try {
+         blob = context.getBlobStore().getBlob("test", "file");
+         assertEquals(new String(ByteStreams2.toByteArrayAndClose(blob.getPayload().openStream()), UTF_8), "hello");
+      } finally {
+         context.close();
+      }
+
+      BlobMetadata metadata = blob.getMetadata();
+      assertEquals(metadata.getName(), "file");
+      assertEquals(metadata.getContainer(), "test");
+      assertEquals(metadata.getETag(), "CKih16GjycICEAE=");
+      assertEquals(metadata.getSize(), Long.valueOf(5));
+      assertEquals(metadata.getUserMetadata(), ImmutableMap.of("foo", "bar"));
+      assertEquals(metadata.getContentMetadata().getContentType(), "text/plain");
+      assertEquals(metadata.getContentMetadata().getContentMD5AsHashCode(), Hashing.md5().hashString("hello", UTF_8));
+      assertEquals(server.getRequestCount(), 1);
+      assertSent(server, "GET", "/storage/v1/b/test/o/file?alt=media");
+   }
+
+   public void getBlobKeepsCaseOfUserMetadataKeys() throws Exception {
+      server.enqueue(new MockResponse().setBody("hello")
+            .addHeader("Content-Type", "text/plain")
+            .addHeader("x-goog-meta-Foo", "bar")
+            .addHeader("X-Goog-Meta-foo", "baz"));
+
+      BlobStoreContext context = builder().buildView(BlobStoreContext.class);
+      try {
+         Blob blob = context.getBlobStore().getBlob("test", "file");
+         assertEquals(blob.getMetadata().getUserMetadata(), ImmutableMap.of("Foo", "bar", "foo", "baz"));
+      } finally {
+         context.close();
+      }
+   }
+
+   public void getBlobMissingIsNull() throws Exception {
+      server.enqueue(response404());
+
+      BlobStoreContext context = builder().buildView(BlobStoreContext.class);
+      try {
+         assertNull(context.getBlobStore().getBlob("test", "file"));
+      } finally {
+         context.close();
+      }
+      assertEquals(server.getRequestCount(), 1);
+   }
+
+   public void putBlobOfUnknownLengthStreamsResumableUpload() throws Exception {
+      server.enqueue(new MockResponse().addHeader("Location",
+            url("/upload/storage/v1/b/test/o?uploadType=resumable&upload_id=session")));
+      server.enqueue(new MockResponse().addHeader("Content-Type", "application/json")
+            .setBody(object("dir/file", "mnG7TA==")));
+
+      BlobStoreContext context = builder().buildView(BlobStoreContext.class);
+      String etag;
+      try {
+         BlobStore blobStore = context.getBlobStore();
+         Payload payload = Payloads.newInputStreamPayload(new ByteArrayInputStream("hello".getBytes(UTF_8)));
+         etag = blobStore.putBlob("test", blobStore.blobBuilder("dir/file").payload(payload).build());
+      } finally {
+         context.close();
+      }
+
+      assertEquals(etag, "etag");
+      assertSent(server, "POST", "/upload/storage/v1/b/test/o?uploadType=resumable");
+      RecordedRequest chunk = assertSent(server, "PUT",
+            "/upload/storage/v1/b/test/o?uploadType=resumable&upload_id=session");
+      assertEquals(chunk.getHeader("Content-Range"), "bytes 0-4/5");
+      assertEquals(new String(chunk.getBody(), UTF_8), "hello");
+      // The object is read from the final chunk's response, not fetched again.
+      assertEquals(server.getRequestCount(), 2);
+   }
+
+   public void getBlobFailsAtEndOnCrc32cMismatch() throws Exception {
+      server.enqueue(new MockResponse().setBody("hellp")
+            .addHeader("Content-Type", "text/plain")
+            .addHeader("x-goog-hash", "crc32c=mnG7TA==")
+            .addHeader("x-goog-stored-content-length", "5"));
+
+      BlobStoreContext context = builder().buildView(BlobStoreContext.class);
+      try {
+         Blob blob = context.getBlobStore().getBlob("test", "file");
+         try {
+            ByteStreams2.toByteArrayAndClose(blob.getPayload().openStream());
+            fail("expected the corrupted body to fail");
+         } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("test/file"), expected.getMessage());
+         }
+      } finally {
+         context.close();
+      }
+   }
+
+   public void putBlobChecksCrc32cOfWhatWasSent() throws Exception {
+      server.enqueue(new MockResponse().addHeader("Content-Type", "application/json")
+            .setBody(object("file", "mnG7TA==")));
+
+      BlobStoreContext context = builder().buildView(BlobStoreContext.class);
+      try {
+         BlobStore blobStore = context.getBlobStore();
+         assertEquals(blobStore.putBlob("test", blobStore.blobBuilder("file").payload("hello".getBytes(UTF_8))
+               .build()), "etag");
+      } finally {
+         context.close();
+      }
+      assertEquals(server.getRequestCount(), 1);
+   }
+
+   public void putBlobDeletesUploadWithCrc32cMismatch() throws Exception {
+      server.enqueue(new MockResponse().addHeader("Content-Type", "application/json")
+            .setBody(object("file", "AAAAAA==")));
+      server.enqueue(new MockResponse().setResponseCode(204));
+
+      BlobStoreContext context = builder().buildView(BlobStoreContext.class);
+      try {
+         BlobStore blobStore = context.getBlobStore();
+         blobStore.putBlob("test", blobStore.blobBuilder("file").payload("hello".getBytes(UTF_8)).build());
+         fail("expected the checksum mismatch to fail the upload");
+      } catch (IllegalStateException expected) {
+         assertTrue(expected.getMessage().contains("mnG7TA=="), expected.getMessage());
+      } finally {
+         context.close();
+      }
+      assertSent(server, "POST", "/upload/storage/v1/b/test/o?uploadType=multipart");
+      assertSent(server, "DELETE", "/storage/v1/b/test/o/file?ifGenerationMatch=1000");
+   }
+
+   public void putBlobOfUnknownLengthDeletesGenerationItWroteOnCrc32cMismatch() throws Exception {
+      server.enqueue(new MockResponse().addHeader("Location",
+            url("/upload/storage/v1/b/test/o?uploadType=resumable&upload_id=session")));
+      server.enqueue(new MockResponse().addHeader("Content-Type", "application/json")
+            .setBody(object("dir/file", "AAAAAA==")));
+      server.enqueue(new MockResponse().setResponseCode(204));
+
+      BlobStoreContext context = builder().buildView(BlobStoreContext.class);
+      try {
+         BlobStore blobStore = context.getBlobStore();
+         Payload payload = Payloads.newInputStreamPayload(new ByteArrayInputStream("hello".getBytes(UTF_8)));
+         blobStore.putBlob("test", blobStore.blobBuilder("dir/file").payload(payload).build());
+         fail("expected the checksum mismatch to fail the upload");
+      } catch (IllegalStateException expected) {
+         assertTrue(expected.getMessage().contains("mnG7TA=="), expected.getMessage());
+      } finally {
+         context.close();
+      }
+      assertSent(server, "POST", "/upload/storage/v1/b/test/o?uploadType=resumable");
+      assertSent(server, "PUT", "/upload/storage/v1/b/test/o?uploadType=resumable&upload_id=session");
+      // The generation comes from the upload's own response, so a newer one from another writer is left alone.
+      assertSent(server, "DELETE", "/storage/v1/b/test/o/dir%2Ffile?ifGenerationMatch=1000");
+      assertEquals(server.getRequestCount(), 3);
+   }
+
+   /** A listing of parts {@code first} to {@code last}, each page also holding an intermediate compose object. */
+   private static MockResponse objectPage(int first, int last, String nextPageToken) {
+      StringBuilder json = new StringBuilder("{\"kind\": \"storage#objects\",");
+      if (nextPageToken != null) {
+         json.append("\"nextPageToken\": \"").append(nextPageToken).append("\",");
+      }
+      json.append("\"items\": [");
+      for (int partNumber = first; partNumber <= last; partNumber++) {
+         json.append(object(String.format("object_%08d", partNumber))).append(',');
+      }
+      json.append(object(String.format("object_compose_1_%08d", first))).append("]}");
+      return new MockResponse().addHeader("Content-Type", "application/json").setBody(json.toString());
+   }
+
+   private static String object(String name) {
+      return object(name, null);
+   }
+
+   private static String object(String name, String crc32c) {
+      return "{\"kind\": \"storage#object\", \"id\": \"bucket/" + name + "/1000\", "
+            + "\"selfLink\": \"https://www.googleapis.com/storage/v1/b/bucket/o/" + name + "\", "
+            + "\"name\": \"" + name + "\", \"bucket\": \"bucket\", \"generation\": \"1000\", "
+            + "\"metageneration\": \"1\", \"contentType\": \"application/octet-stream\", "
+            + "\"updated\": \"2014-09-27T00:01:44.819\", \"storageClass\": \"STANDARD\", \"size\": \"1024\", "
+            + "\"mediaLink\": \"https://www.googleapis.com/download/storage/v1/b/bucket/o/" + name + "?alt=media\", "
+            + (crc32c == null ? "" : "\"crc32c\": \"" + crc32c + "\", ") + "\"etag\": \"etag\"}";
+   }
+}
@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.functions;
+
+import static org.jclouds.googlecloudstorage.blobstore.functions.ObjectListToStorageMetadataTest.object;
+import static org.testng.Assert.assertEquals;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.SortedSet;
+
+import org.jclouds.blobstore.domain.MutableStorageMetadata;
+import org.jclouds.blobstore.domain.PageSet;
+import org.jclouds.blobstore.domain.StorageMetadata;
+import org.jclouds.blobstore.domain.StorageType;
+import org.jclouds.blobstore.domain.internal.MutableStorageMetadataImpl;
+import org.jclouds.blobstore.domain.internal.PageSetImpl;
+import org.jclouds.googlecloudstorage.domain.GoogleCloudStorageObject;
+import org.jclouds.googlecloudstorage.domain.ListPageWithPrefixes;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Sets;
+
+/**
+ * Compares the single-pass conversion of a 1000-item page with the previous {@code TreeSet} based one, reporting time
+ * and, on JVMs that expose it, bytes allocated per page.
+ */
+@Test(groups = "performance", testName = "ObjectListToStorageMetadataBenchmark", singleThreaded = true)
+public class ObjectListToStorageMetadataBenchmark {
+
+   private static final int ITEMS = 1000;
+   private static final int PREFIXES = 50;
+   private static final int WARMUP = 2000;
+   private static final int ITERATIONS = 5000;
+
+   private final ObjectToBlobMetadata object2blobMd = new ObjectToBlobMetadata();
+   private final ObjectListToStorageMetadata merging = new ObjectListToStorageMetadata(object2blobMd);
+   private final Function<ListPageWithPrefixes<GoogleCloudStorageObject>, PageSet<? extends StorageMetadata>> treeSet =
+         new Function<ListPageWithPrefixes<GoogleCloudStorageObject>, PageSet<? extends StorageMetadata>>() {
+            @Override
+            public PageSet<? extends StorageMetadata> apply(ListPageWithPrefixes<GoogleCloudStorageObject> from) {
+               SortedSet<StorageMetadata> results = Sets.<StorageMetadata> newTreeSet(
+                     Iterables.transform(from, object2blobMd));
+               for (String prefix : from.prefixes()) {
+                  MutableStorageMetadata metadata = new MutableStorageMetadataImpl();
+                  metadata.setType(StorageType.RELATIVE_PATH);
+                  metadata.setName(prefix);
+                  results.add(metadata);
+               }
+               return new PageSetImpl<StorageMetadata>(results, from.nextPageToken());
+            }
+         };
+
+   public void compareWithTreeSet() {
+      ListPageWithPrefixes<GoogleCloudStorageObject> page = page();
+      assertEquals(names(merging.apply(page)), names(treeSet.apply(page)));
+
+      run("tree set", treeSet, page, WARMUP);
+      run("merge", merging, page, WARMUP);
+      Result before = run("tree set", treeSet, page, ITERATIONS);
+      Result after = run("merge", merging, page, ITERATIONS);
+      System.out.printf("%s%n%s%n", before, after);
+   }
+
+   private static Result run(String name,
+         Function<ListPageWithPrefixes<GoogleCloudStorageObject>, PageSet<? extends StorageMetadata>> function,
+         ListPageWithPrefixes<GoogleCloudStorageObject> page, int iterations) {
+      long allocatedBefore = allocatedBytes();
+      long start = System.nanoTime();
+      int sink = 0;
+      for (int i = 0; i < iterations; i++) {
+         sink += function.apply(page).size();
+      }
+      long elapsed = System.nanoTime() - start;
+      long allocated = allocatedBytes() - allocatedBefore;
+      assertEquals(sink, iterations * (ITEMS + PREFIXES));
+      return new Result(name, elapsed / iterations, allocatedBefore < 0 ? -1 : allocated / iterations);
+   }
+
+   private static List<String> names(Iterable<? extends StorageMetadata> page) {
+      ImmutableList.Builder<String> names = ImmutableList.builder();
+      for (StorageMetadata metadata : page) {
+         names.add(metadata.getName());
+      }
+      return names.build();
+   }
+
+   /** Bytes allocated by this thread, or -1 where the JVM does not report it. */
+   private static long allocatedBytes() {
+      java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+      if (threads instanceof com.sun.management.ThreadMXBean) {
+         return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+      return -1;
+   }
+
+   /** Objects {@code dir/00000000} onwards interleaved with prefixes, as a delimited listing returns them. */
+   private static ListPageWithPrefixes<GoogleCloudStorageObject> page() {
+      ImmutableList.Builder<GoogleCloudStorageObject> objects = ImmutableList.builder();
+      for (int i = 0; i < ITEMS; i++) {
+         objects.add(object(String.format("dir/%08d", i)));
+      }
+      ImmutableList.Builder<String> prefixes = ImmutableList.builder();
+      for (int i = 0; i < PREFIXES; i++) {
+         prefixes.add(String.format("dir/%08d/", i * (ITEMS / PREFIXES)));
+      }
+      return ListPageWithPrefixes.create(objects.build(), "token", prefixes.build());
+   }
+
+   private static final class Result {
+      private final String name;
+      private final long nanosPerPage;
+      private final long bytesPerPage;
+
+      Result(String name, long nanosPerPage, long bytesPerPage) {
+         this.name = name;
+         this.nanosPerPage = nanosPerPage;
+         this.bytesPerPage = bytesPerPage;
+      }
+
+      @Override
+      public String toString() {
+         return String.format("%-8s %8d ns/page %10d bytes/page", name, nanosPerPage, bytesPerPage);
+      }
+   }
+}
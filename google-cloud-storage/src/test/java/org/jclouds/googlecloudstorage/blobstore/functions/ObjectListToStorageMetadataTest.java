@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.functions;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.Date;
+import java.util.List;
+
+import org.jclouds.blobstore.domain.MutableStorageMetadata;
+import org.jclouds.blobstore.domain.PageSet;
+import org.jclouds.blobstore.domain.StorageMetadata;
+import org.jclouds.blobstore.domain.StorageType;
+import org.jclouds.blobstore.domain.internal.MutableStorageMetadataImpl;
+import org.jclouds.googlecloudstorage.domain.DomainResourceReferences.StorageClass;
+import org.jclouds.googlecloudstorage.domain.GoogleCloudStorageObject;
+import org.jclouds.googlecloudstorage.domain.ListPageWithPrefixes;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+
+@Test(groups = "unit", testName = "ObjectListToStorageMetadataTest")
+public class ObjectListToStorageMetadataTest {
+
+   private final ObjectListToStorageMetadata function = new ObjectListToStorageMetadata(new ObjectToBlobMetadata());
+
+   public void mergesObjectsAndPrefixesInNameOrder() {
+      PageSet<? extends StorageMetadata> page = function.apply(ListPageWithPrefixes.create(
+            ImmutableList.of(object("a"), object("c/"), object("e")), "token", ImmutableList.of("b/", "c/", "d/")));
+
+      assertEquals(names(page), ImmutableList.of("a", "b/", "c/", "d/", "e"));
+      assertEquals(page.getNextMarker(), "token");
+      // The object named like a prefix is kept, as it was with a TreeSet of objects.
+      assertEquals(typeOf(page, "c/"), StorageType.BLOB);
+      assertEquals(typeOf(page, "d/"), StorageType.RELATIVE_PATH);
+   }
+
+   public void sortsPagesThatArriveOutOfOrder() {
+      PageSet<? extends StorageMetadata> page = function.apply(ListPageWithPrefixes.create(
+            ImmutableList.of(object("c"), object("a"), object("b"), object("a")), null, ImmutableList.<String> of()));
+
+      assertEquals(names(page), ImmutableList.of("a", "b", "c"));
+   }
+
+   public void containsMatchesByName() {
+      PageSet<? extends StorageMetadata> page = function.apply(ListPageWithPrefixes.create(
+            ImmutableList.of(object("a"), object("b")), null, ImmutableList.of("p/")));
+
+      assertTrue(page.contains(named("b")));
+      assertTrue(page.contains(named("p/")));
+      assertFalse(page.contains(named("c")));
+      assertFalse(page.contains("b"));
+   }
+
+   public void emptyPage() {
+      PageSet<? extends StorageMetadata> page = function.apply(null);
+      assertTrue(page.isEmpty());
+      assertEquals(page.getNextMarker(), null);
+   }
+
+   private static List<String> names(Iterable<? extends StorageMetadata> page) {
+      ImmutableList.Builder<String> names = ImmutableList.builder();
+      for (StorageMetadata metadata : page) {
+         names.add(metadata.getName());
+      }
+      return names.build();
+   }
+
+   private static StorageType typeOf(Iterable<? extends StorageMetadata> page, String name) {
+      for (StorageMetadata metadata : page) {
+         if (metadata.getName().equals(name)) {
+            return metadata.getType();
+         }
+      }
+      throw new AssertionError(name + " not found");
+   }
+
+   private static StorageMetadata named(String name) {
+      MutableStorageMetadata metadata = new MutableStorageMetadataImpl();
+      metadata.setName(name);
+      return metadata;
+   }
+
+   static GoogleCloudStorageObject object(String name) {
+      return GoogleCloudStorageObject.create("bucket/" + name + "/1000",
+            URI.create("https://www.googleapis.com/storage/v1/b/bucket/o/" + name), "etag", name, "bucket", 1000, 1,
+            "text/plain", new Date(0), null, StorageClass.STANDARD, 10, null,
+            URI.create("https://www.googleapis.com/download/storage/v1/b/bucket/o/" + name + "?alt=media"), null,
+            null, null, null, null, null, null, null, null);
+   }
+}
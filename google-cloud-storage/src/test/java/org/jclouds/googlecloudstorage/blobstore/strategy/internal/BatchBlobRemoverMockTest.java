@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.strategy.internal;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.jclouds.blobstore.BlobStoreContext;
+import org.jclouds.concurrent.config.ExecutorServiceModule;
+import org.jclouds.googlecloudstorage.domain.RemoveBlobsResult;
+import org.jclouds.googlecloudstorage.features.BatchApi;
+import org.jclouds.googlecloudstorage.internal.BaseGoogleCloudStorageApiMockTest;
+import org.jclouds.http.okhttp.config.OkHttpCommandExecutorServiceModule;
+import org.jclouds.rest.AuthorizationException;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.inject.Module;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+@Test(groups = "unit", testName = "BatchBlobRemoverMockTest", singleThreaded = true)
+public class BatchBlobRemoverMockTest extends BaseGoogleCloudStorageApiMockTest {
+
+   private static final Pattern DELETE = Pattern.compile(
+         "Content-ID: <(\\d+)>\r\n\r\nDELETE /storage/v1/b/bucket/o/(\\S+) HTTP/1.1");
+
+   @Override
+   protected Set<? extends Module> modules() {
+      return ImmutableSet.of(
+            new ExecutorServiceModule(MoreExecutors.listeningDecorator(Executors.newCachedThreadPool())),
+            new OkHttpCommandExecutorServiceModule());
+   }
+
+   public void removesInBatches() throws Exception {
+      BatchDispatcher dispatcher = new BatchDispatcher();
+      server.setDispatcher(dispatcher);
+      List<String> names = Lists.newArrayList();
+      for (int i = 0; i < 950; i++) {
+         names.add("object" + i);
+      }
+      for (int i = 0; i < 50; i++) {
+         names.add("missing" + i);
+      }
+
+      RemoveBlobsResult result = remove(names);
+
+      assertEquals(result, RemoveBlobsResult.create(950, 50, ImmutableMap.<String, Throwable>of()));
+      // One request per hundred objects instead of one per object.
+      assertEquals(server.getRequestCount(), 10);
+      assertEquals(Sets.newHashSet(dispatcher.deleted), Sets.newHashSet(names));
+   }
+
+   public void retriesOnlyFailedDeletes() throws Exception {
+      BatchDispatcher dispatcher = new BatchDispatcher();
+      server.setDispatcher(dispatcher);
+
+      RemoveBlobsResult result = remove(ImmutableList.of("object1", "flaky1", "object2", "flaky2"));
+
+      assertEquals(result, RemoveBlobsResult.create(4, 0, ImmutableMap.<String, Throwable>of()));
+      assertEquals(dispatcher.batches, ImmutableList.of(
+            ImmutableList.of("object1", "flaky1", "object2", "flaky2"),
+            ImmutableList.of("flaky1", "flaky2")));
+   }
+
+   public void clientErrorIsNotRetried() throws Exception {
+      BatchDispatcher dispatcher = new BatchDispatcher();
+      server.setDispatcher(dispatcher);
+
+      RemoveBlobsResult result = remove(ImmutableList.of("object1", "denied"));
+
+      assertFalse(result.isComplete());
+      assertEquals(result.deleted(), 1);
+      assertEquals(result.failures().keySet(), ImmutableSet.of("denied"));
+      assertTrue(result.failures().get("denied") instanceof AuthorizationException);
+      assertEquals(server.getRequestCount(), 1);
+   }
+
+   public void encodesNamesWithSlashes() throws Exception {
+      BatchDispatcher dispatcher = new BatchDispatcher();
+      server.setDispatcher(dispatcher);
+
+      assertTrue(remove(ImmutableList.of("dir/object")).isComplete());
+
+      assertEquals(dispatcher.deleted, ImmutableList.of("dir%2Fobject"));
+   }
+
+   public void failedListingWaitsForSentBatches() throws Exception {
+      BatchDispatcher dispatcher = new BatchDispatcher();
+      dispatcher.holdMillis = 300;
+      server.setDispatcher(dispatcher);
+      final List<String> names = Lists.newArrayList();
+      for (int i = 0; i < BatchApi.MAX_REQUESTS; i++) {
+         names.add("object" + i);
+      }
+      // Reading fails once the first batch has been sent.
+      Iterable<String> listing = new Iterable<String>() {
+         @Override
+         public Iterator<String> iterator() {
+            return Iterators.concat(names.iterator(), new AbstractIterator<String>() {
+               @Override
+               protected String computeNext() {
+                  throw new IllegalStateException("listing failed");
+               }
+            });
+         }
+      };
+
+      try {
+         remove(listing);
+         fail("expected the listing failure");
+      } catch (IllegalStateException expected) {
+         assertEquals(expected.getMessage(), "listing failed");
+      }
+
+      // The batch sent before the failure was answered before the caller saw it.
+      assertEquals(dispatcher.batches.size(), 1);
+      assertEquals(dispatcher.deleted, names);
+   }
+
+   @Test(expectedExceptions = AuthorizationException.class)
+   public void blobStoreRemoveBlobsThrowsFailure() throws Exception {
+      server.setDispatcher(new BatchDispatcher());
+      BlobStoreContext context = builder().buildView(BlobStoreContext.class);
+      try {
+         context.getBlobStore().removeBlobs("bucket", ImmutableList.of("object1", "denied", "object2"));
+      } finally {
+         context.close();
+      }
+   }
+
+   private RemoveBlobsResult remove(Iterable<String> names) {
+      BlobStoreContext context = builder().buildView(BlobStoreContext.class);
+      try {
+         return context.utils().injector().getInstance(BatchBlobRemover.class).remove("bucket", names);
+      } finally {
+         context.close();
+      }
+   }
+
+   /**
+    * Answers each delete of a batch: names starting with {@code missing} do not exist, {@code denied} is forbidden and
+    * names starting with {@code flaky} fail with 503 the first time.
+    */
+   private static class BatchDispatcher extends Dispatcher {
+      private final List<List<String>> batches = Lists.newArrayList();
+      private final List<String> deleted = Lists.newArrayList();
+      private final Set<String> failedOnce = Sets.newHashSet();
+      private volatile long holdMillis;
+
+      @Override
+      public synchronized MockResponse dispatch(RecordedRequest request) {
+         Uninterruptibles.sleepUninterruptibly(holdMillis, TimeUnit.MILLISECONDS);
+         Matcher matcher = DELETE.matcher(new String(request.getBody(), UTF_8));
+         List<String> names = Lists.newArrayList();
+         StringBuilder body = new StringBuilder();
+         while (matcher.find()) {
+            String name = matcher.group(2);
+            names.add(name);
+            body.append("--batch_test\r\nContent-Type: application/http\r\nContent-ID: <response-")
+                  .append(matcher.group(1)).append(">\r\n\r\n").append(status(name)).append("\r\n\r\n\r\n");
+         }
+         batches.add(names);
+         body.append("--batch_test--\r\n");
+         return new MockResponse().addHeader("Content-Type", "multipart/mixed; boundary=batch_test")
+               .setBody(body.toString());
+      }
+
+      private String status(String name) {
+         if (name.startsWith("missing")) {
+            return "HTTP/1.1 404 Not Found";
+         } else if (name.equals("denied")) {
+            return "HTTP/1.1 403 Forbidden";
+         } else if (name.startsWith("flaky") && failedOnce.add(name)) {
+            return "HTTP/1.1 503 Service Unavailable";
+         }
+         deleted.add(name);
+         return "HTTP/1.1 204 No Content";
+      }
+   }
+}
@@ -0,0 +1,280 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.strategy.internal;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.jclouds.blobstore.BlobStoreContext;
+import org.jclouds.concurrent.config.ExecutorServiceModule;
+import org.jclouds.googlecloudstorage.blobstore.GoogleCloudStorageBlobStore;
+import org.jclouds.googlecloudstorage.domain.SyncResult;
+import org.jclouds.googlecloudstorage.internal.BaseGoogleCloudStorageApiMockTest;
+import org.jclouds.http.okhttp.config.OkHttpCommandExecutorServiceModule;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.inject.Module;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+@Test(groups = "unit", testName = "BucketSynchronizerMockTest", singleThreaded = true)
+public class BucketSynchronizerMockTest extends BaseGoogleCloudStorageApiMockTest {
+
+   private static final Pattern REWRITE = Pattern.compile(
+         "/storage/v1/b/source/o/([^/]+)/rewriteTo/b/destination/o/[^/?]+\\?(?:.*&)?sourceGeneration=(\\d+)(?:&.*)?");
+   private static final Pattern DELETE = Pattern.compile(
+         "Content-ID: <(\\d+)>\r\n\r\nDELETE /storage/v1/b/destination/o/(\\S+) HTTP/1.1");
+
+   /** The number of user threads of the next context, or zero for as many as needed. */
+   private int userThreads;
+
+   @Override
+   protected Set<? extends Module> modules() {
+      return ImmutableSet.of(
+            new ExecutorServiceModule(MoreExecutors.listeningDecorator(userThreads == 0
+                  ? Executors.newCachedThreadPool() : Executors.newFixedThreadPool(userThreads))),
+            new OkHttpCommandExecutorServiceModule());
+   }
+
+   public void copiesNewAndChangedObjectsAndDeletesExtras() throws Exception {
+      BucketsDispatcher buckets = new BucketsDispatcher();
+      server.setDispatcher(buckets);
+      final List<String> checkpoints = Lists.newArrayList();
+
+      SyncResult result = sync(true, null, new BucketSynchronizer.Checkpoint() {
+         @Override
+         public void reached(String resumeFrom) {
+            checkpoints.add(resumeFrom);
+         }
+      });
+
+      // a5 differs, a6 to a9 are missing, x0 and x1 are extras.
+      assertEquals(result, SyncResult.create(5, 5 * 10, 5, 2, ImmutableMap.<String, Throwable>of()));
+      assertEquals(buckets.destination, buckets.source);
+      assertEquals(buckets.generationsCopied.get("a5"), "1005");
+      assertEquals(checkpoints.get(checkpoints.size() - 1), null);
+
+      // Once in sync, nothing is copied.
+      assertEquals(sync(true, null, null), SyncResult.create(0, 0, 10, 0, ImmutableMap.<String, Throwable>of()));
+   }
+
+   public void keepsExtrasUnlessAsked() throws Exception {
+      BucketsDispatcher buckets = new BucketsDispatcher();
+      server.setDispatcher(buckets);
+
+      assertEquals(sync(false, null, null).deleted(), 0);
+      assertTrue(buckets.destination.containsKey("x0"));
+   }
+
+   @Test(timeOut = 30000)
+   public void deletesExtrasWithASingleUserThread() throws Exception {
+      BucketsDispatcher buckets = new BucketsDispatcher();
+      server.setDispatcher(buckets);
+
+      userThreads = 1;
+      try {
+         assertEquals(sync(true, null, null).deleted(), 2);
+      } finally {
+         userThreads = 0;
+      }
+      assertEquals(buckets.destination, buckets.source);
+   }
+
+   public void addsCopiesToTheExistenceIndex() throws Exception {
+      BucketsDispatcher buckets = new BucketsDispatcher();
+      server.setDispatcher(buckets);
+
+      BlobStoreContext context = builder().buildView(BlobStoreContext.class);
+      try {
+         GoogleCloudStorageBlobStore blobStore = (GoogleCloudStorageBlobStore) context.getBlobStore();
+         blobStore.indexContainer("destination", null);
+         assertFalse(blobStore.blobExists("destination", "a6"));
+
+         context.utils().injector().getInstance(BucketSynchronizer.class)
+               .sync("source", "destination", false, null, null);
+
+         assertTrue(blobStore.blobExists("destination", "a6"));
+      } finally {
+         context.close();
+      }
+   }
+
+   public void resumesFromCheckpoint() throws Exception {
+      BucketsDispatcher buckets = new BucketsDispatcher();
+      server.setDispatcher(buckets);
+
+      SyncResult result = sync(false, "a7", null);
+
+      assertEquals(result.copied(), 3);
+      assertEquals(buckets.generationsCopied.keySet(), ImmutableSet.of("a7", "a8", "a9"));
+      assertTrue(buckets.listings.get(0).contains("startOffset=a7"), buckets.listings.get(0));
+   }
+
+   private SyncResult sync(boolean deleteExtras, String resumeFrom, BucketSynchronizer.Checkpoint checkpoint) {
+      BlobStoreContext context = builder().buildView(BlobStoreContext.class);
+      try {
+         return context.utils().injector().getInstance(BucketSynchronizer.class)
+               .sync("source", "destination", deleteExtras, resumeFrom, checkpoint);
+      } finally {
+         context.close();
+      }
+   }
+
+   /**
+    * Serves a source bucket with objects {@code a0} to {@code a9}, and a destination holding {@code a0} to {@code a4}
+    * alike, {@code a5} with other content and the extras {@code x0} and {@code x1}. Objects map to their MD5 hash and
+    * are listed in pages of three.
+    */
+   private class BucketsDispatcher extends Dispatcher {
+      private final Map<String, String> source = Maps.newTreeMap();
+      private final Map<String, String> destination = Maps.newTreeMap();
+      private final Map<String, String> generationsCopied = Maps.newConcurrentMap();
+      private final List<String> listings = Lists.newArrayList();
+
+      BucketsDispatcher() {
+         for (int i = 0; i < 10; i++) {
+            source.put("a" + i, "md5-" + i);
+         }
+         for (int i = 0; i < 5; i++) {
+            destination.put("a" + i, "md5-" + i);
+         }
+         destination.put("a5", "other");
+         destination.put("x0", "md5-x0");
+         destination.put("x1", "md5-x1");
+      }
+
+      @Override
+      public synchronized MockResponse dispatch(RecordedRequest request) {
+         String path = request.getPath();
+         Matcher rewrite = REWRITE.matcher(path);
+         if (rewrite.matches()) {
+            String name = rewrite.group(1);
+            generationsCopied.put(name, rewrite.group(2));
+            destination.put(name, source.get(name));
+            return json("{\"kind\": \"storage#rewriteResponse\", \"totalBytesRewritten\": \"10\", "
+                  + "\"objectSize\": \"10\", \"done\": true, \"resource\": " + object("destination", name,
+                        source.get(name)) + "}");
+         } else if (path.startsWith("/batch/")) {
+            Matcher delete = DELETE.matcher(new String(request.getBody(), UTF_8));
+            StringBuilder body = new StringBuilder();
+            while (delete.find()) {
+               String status = destination.remove(delete.group(2)) != null ? "204 No Content" : "404 Not Found";
+               body.append("--batch_test\r\nContent-Type: application/http\r\nContent-ID: <response-")
+                     .append(delete.group(1)).append(">\r\n\r\nHTTP/1.1 ").append(status).append("\r\n\r\n\r\n");
+            }
+            body.append("--batch_test--\r\n");
+            return new MockResponse().addHeader("Content-Type", "multipart/mixed; boundary=batch_test")
+                  .setBody(body.toString());
+         } else if (request.getMethod().equals("GET") && path.startsWith("/storage/v1/b/destination/o/")) {
+            String name = path.substring("/storage/v1/b/destination/o/".length(), path.indexOf('?'));
+            String md5 = destination.get(name);
+            return md5 == null ? new MockResponse().setResponseCode(404) : json(object("destination", name, md5));
+         } else if (path.startsWith("/storage/v1/b/source/o?") || path.startsWith("/storage/v1/b/destination/o?")
+               || path.endsWith("/o")) {
+            listings.add(path);
+            String bucket = path.startsWith("/storage/v1/b/source/") ? "source" : "destination";
+            return list(bucket, bucket.equals("source") ? source : destination, path);
+         }
+         return new MockResponse().setResponseCode(500);
+      }
+
+      private MockResponse list(String bucket, Map<String, String> objects, String path) {
+         String after = parameter(path, "pageToken");
+         String startOffset = parameter(path, "startOffset");
+         List<String> items = Lists.newArrayList();
+         String nextPageToken = null;
+         for (Map.Entry<String, String> entry : objects.entrySet()) {
+            String name = entry.getKey();
+            if ((after != null && name.compareTo(after) <= 0)
+                  || (startOffset != null && name.compareTo(startOffset) < 0)) {
+               continue;
+            }
+            if (items.size() == 3) {
+               nextPageToken = after(items);
+               break;
+            }
+            items.add(object(bucket, name, entry.getValue()));
+         }
+         StringBuilder body = new StringBuilder("{\"kind\": \"storage#objects\", ");
+         if (nextPageToken != null) {
+            body.append("\"nextPageToken\": \"").append(nextPageToken).append("\", ");
+         }
+         body.append("\"items\": [");
+         for (int i = 0; i < items.size(); i++) {
+            body.append(i == 0 ? "" : ", ").append(items.get(i));
+         }
+         return json(body.append("]}").toString());
+      }
+
+      /** The name of the last listed item, which is the token of the next page. */
+      private String after(List<String> items) {
+         String last = items.get(items.size() - 1);
+         int start = last.indexOf("\"name\": \"") + "\"name\": \"".length();
+         return last.substring(start, last.indexOf('"', start));
+      }
+
+      private String object(String bucket, String name, String md5) {
+         String generation = "100" + name.substring(1);
+         return "{\"kind\": \"storage#object\", \"id\": \"" + bucket + "/" + name + "/" + generation + "\", "
+               + "\"selfLink\": \"https://www.googleapis.com/storage/v1/b/" + bucket + "/o/" + name + "\", "
+               + "\"name\": \"" + name + "\", \"bucket\": \"" + bucket + "\", \"generation\": \"" + generation
+               + "\", \"metageneration\": \"1\", \"contentType\": \"text/plain\", "
+               + "\"updated\": \"2014-09-27T00:01:44.819\", \"storageClass\": \"STANDARD\", \"size\": \"10\", "
+               + "\"md5Hash\": \"" + md5 + "\", "
+               + "\"mediaLink\": \"https://www.googleapis.com/download/storage/v1/b/" + bucket + "/o/" + name
+               + "?alt=media\", \"etag\": \"etag\"}";
+      }
+
+      private MockResponse json(String body) {
+         return new MockResponse().addHeader("Content-Type", "application/json").setBody(body);
+      }
+
+      private String parameter(String path, String name) {
+         int query = path.indexOf('?');
+         if (query == -1) {
+            return null;
+         }
+         for (String pair : path.substring(query + 1).split("&")) {
+            if (pair.startsWith(name + "=")) {
+               try {
+                  return URLDecoder.decode(pair.substring(name.length() + 1), "UTF-8");
+               } catch (UnsupportedEncodingException e) {
+                  throw new AssertionError(e);
+               }
+            }
+         }
+         return null;
+      }
+   }
+}
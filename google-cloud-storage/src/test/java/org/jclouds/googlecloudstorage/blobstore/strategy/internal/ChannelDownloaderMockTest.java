@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.strategy.internal;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.jclouds.blobstore.BlobStoreContext;
+import org.jclouds.blobstore.KeyNotFoundException;
+import org.jclouds.googlecloudstorage.internal.BaseGoogleCloudStorageApiMockTest;
+import org.jclouds.http.options.GetOptions;
+import org.testng.annotations.Test;
+
+import com.squareup.okhttp.mockwebserver.MockResponse;
+
+@Test(groups = "unit", testName = "ChannelDownloaderMockTest", singleThreaded = true)
+public class ChannelDownloaderMockTest extends BaseGoogleCloudStorageApiMockTest {
+
+   private static final byte[] CONTENT = new byte[200 * 1024 + 3];
+
+   static {
+      new Random(0).nextBytes(CONTENT);
+   }
+
+   public void readsIntoHeapBuffer() throws Exception {
+      server.enqueue(content());
+      ByteBuffer target = ByteBuffer.allocate(CONTENT.length + 10);
+      target.position(5);
+
+      assertEquals(read(target), CONTENT.length);
+
+      assertEquals(target.position(), CONTENT.length + 5);
+      assertTrue(Arrays.equals(Arrays.copyOfRange(target.array(), 5, CONTENT.length + 5), CONTENT));
+      assertSent(server, "GET", "/storage/v1/b/bucket/o/object?alt=media");
+   }
+
+   public void readsIntoDirectBuffer() throws Exception {
+      server.enqueue(content());
+      ByteBuffer target = ByteBuffer.allocateDirect(CONTENT.length);
+
+      assertEquals(read(target), CONTENT.length);
+
+      byte[] read = new byte[CONTENT.length];
+      ((ByteBuffer) target.flip()).get(read);
+      assertTrue(Arrays.equals(read, CONTENT));
+   }
+
+   @Test(expectedExceptions = BufferOverflowException.class)
+   public void rejectsObjectLargerThanBuffer() throws Exception {
+      server.enqueue(content());
+      read(ByteBuffer.allocate(CONTENT.length - 1));
+   }
+
+   @Test(expectedExceptions = KeyNotFoundException.class)
+   public void missingObject() throws Exception {
+      server.enqueue(response404());
+      read(ByteBuffer.allocate(1));
+   }
+
+   public void transfersToChannel() throws Exception {
+      server.enqueue(content());
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+      BlobStoreContext context = builder().buildView(BlobStoreContext.class);
+      try {
+         assertEquals(downloader(context).transfer("bucket", "object", Channels.newChannel(out), GetOptions.NONE),
+               CONTENT.length);
+      } finally {
+         context.close();
+      }
+
+      assertTrue(Arrays.equals(out.toByteArray(), CONTENT));
+   }
+
+   public void transfersToFileReplacingItsContents() throws Exception {
+      server.enqueue(content());
+      Path file = Files.createTempFile("transfer", null);
+      Files.write(file, new byte[CONTENT.length * 2]);
+
+      BlobStoreContext context = builder().buildView(BlobStoreContext.class);
+      try {
+         assertEquals(downloader(context).transfer("bucket", "object", file, GetOptions.NONE), CONTENT.length);
+         assertTrue(Arrays.equals(Files.readAllBytes(file), CONTENT));
+      } finally {
+         context.close();
+         Files.delete(file);
+      }
+   }
+
+   private int read(ByteBuffer target) throws Exception {
+      BlobStoreContext context = builder().buildView(BlobStoreContext.class);
+      try {
+         return downloader(context).read("bucket", "object", target, GetOptions.NONE);
+      } finally {
+         context.close();
+      }
+   }
+
+   private static ChannelDownloader downloader(BlobStoreContext context) {
+      return context.utils().injector().getInstance(ChannelDownloader.class);
+   }
+
+   private static MockResponse content() {
+      return new MockResponse().addHeader("Content-Type", "application/octet-stream").setBody(CONTENT);
+   }
+}
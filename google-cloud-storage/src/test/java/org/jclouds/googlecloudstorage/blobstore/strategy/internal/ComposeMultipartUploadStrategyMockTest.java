@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.strategy.internal;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.CRC32C_VALIDATION;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.net.URLDecoder;
+import java.util.List;
+import java.util.Properties;
+
+import org.jclouds.blobstore.BlobStore;
+import org.jclouds.blobstore.BlobStoreContext;
+import org.jclouds.blobstore.domain.BlobMetadata;
+import org.jclouds.blobstore.domain.MultipartPart;
+import org.jclouds.blobstore.domain.MultipartUpload;
+import org.jclouds.googlecloudstorage.internal.BaseGoogleCloudStorageApiMockTest;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+@Test(groups = "unit", testName = "ComposeMultipartUploadStrategyMockTest", singleThreaded = true)
+public class ComposeMultipartUploadStrategyMockTest extends BaseGoogleCloudStorageApiMockTest {
+
+   public void composeWithinLimitIsSingleRequest() throws Exception {
+      server.enqueue(jsonResponse("/object_get.json"));
+      enqueueDeletes(32);
+
+      BlobStoreContext context = context();
+      try {
+         BlobStore blobStore = context.getBlobStore();
+         assertEquals(blobStore.completeMultipartUpload(upload(blobStore), parts(32)), "etag");
+      } finally {
+         context.close();
+      }
+
+      RecordedRequest request = assertSent(server, "POST", "/storage/v1/b/bucket/o/object/compose");
+      String body = new String(request.getBody(), UTF_8);
+      assertTrue(body.contains("object_00000001"));
+      assertTrue(body.contains("object_00000032"));
+
+      // The parts are deleted once the destination exists.
+      for (int partNumber = 1; partNumber <= 32; partNumber++) {
+         assertSent(server, "DELETE", String.format("/storage/v1/b/bucket/o/object_%08d", partNumber), null);
+      }
+      assertEquals(server.getRequestCount(), 33);
+   }
+
+   public void predictsCompositeCrc32cFromParts() throws Exception {
+      server.enqueue(composed("mnG7TA=="));
+      server.enqueue(partListing());
+      enqueueDeletes(2);
+
+      BlobStoreContext context = builder().buildView(BlobStoreContext.class);
+      try {
+         BlobStore blobStore = context.getBlobStore();
+         assertEquals(blobStore.completeMultipartUpload(upload(blobStore), parts(2)), "etag");
+      } finally {
+         context.close();
+      }
+
+      assertSent(server, "POST", "/storage/v1/b/bucket/o/object/compose");
+      RecordedRequest listing = server.takeRequest();
+      assertEquals(URLDecoder.decode(listing.getPath(), "UTF-8"), "/storage/v1/b/bucket/o?prefix=object_"
+            + "&projection=noAcl&fields=items(name,generation,metageneration,size,crc32c),nextPageToken");
+      assertEquals(server.getRequestCount(), 4);
+   }
+
+   public void deletesCompositeWithCrc32cMismatchAndKeepsParts() throws Exception {
+      server.enqueue(composed("AAAAAA=="));
+      server.enqueue(partListing());
+      server.enqueue(new MockResponse().setResponseCode(204));
+
+      BlobStoreContext context = builder().buildView(BlobStoreContext.class);
+      try {
+         BlobStore blobStore = context.getBlobStore();
+         blobStore.completeMultipartUpload(upload(blobStore), parts(2));
+         fail("expected the checksum mismatch to fail the upload");
+      } catch (IllegalStateException expected) {
+         assertTrue(expected.getMessage().contains("mnG7TA=="), expected.getMessage());
+      } finally {
+         context.close();
+      }
+
+      assertSent(server, "POST", "/storage/v1/b/bucket/o/object/compose");
+      server.takeRequest();
+      assertSent(server, "DELETE", "/storage/v1/b/bucket/o/object?ifGenerationMatch=1000");
+      assertEquals(server.getRequestCount(), 3);
+   }
+
+   public void composeBeyondLimitBuildsTree() throws Exception {
+      // 70 parts: three intermediate composes (32, 32 and 6 sources), then the destination.
+      for (int i = 0; i < 4; i++) {
+         server.enqueue(jsonResponse("/object_get.json"));
+      }
+      enqueueDeletes(3 + 70);
+
+      BlobStoreContext context = context();
+      try {
+         BlobStore blobStore = context.getBlobStore();
+         assertEquals(blobStore.completeMultipartUpload(upload(blobStore), parts(70)), "etag");
+      } finally {
+         context.close();
+      }
+
+      String first = new String(assertSent(server, "POST", "/storage/v1/b/bucket/o/object_compose_1_00000000/compose")
+            .getBody(), UTF_8);
+      assertTrue(first.contains("object_00000032"));
+      assertFalse(first.contains("object_00000033"));
+      assertSent(server, "POST", "/storage/v1/b/bucket/o/object_compose_1_00000001/compose");
+      String third = new String(assertSent(server, "POST", "/storage/v1/b/bucket/o/object_compose_1_00000002/compose")
+            .getBody(), UTF_8);
+      assertTrue(third.contains("object_00000070"));
+
+      // The destination is composed from the intermediates, pinned to the generation their compose returned.
+      String last = new String(assertSent(server, "POST", "/storage/v1/b/bucket/o/object/compose").getBody(), UTF_8);
+      assertTrue(last.contains("\"generation\":1000"), last);
+
+      assertSent(server, "DELETE", "/storage/v1/b/bucket/o/object_compose_1_00000000", null);
+      assertSent(server, "DELETE", "/storage/v1/b/bucket/o/object_compose_1_00000001", null);
+      assertSent(server, "DELETE", "/storage/v1/b/bucket/o/object_compose_1_00000002", null);
+      for (int partNumber = 1; partNumber <= 70; partNumber++) {
+         assertSent(server, "DELETE", String.format("/storage/v1/b/bucket/o/object_%08d", partNumber), null);
+      }
+      assertEquals(server.getRequestCount(), 4 + 3 + 70);
+   }
+
+   /** These tests answer every compose with the same object, so they leave its checksum unchecked. */
+   private BlobStoreContext context() {
+      Properties overrides = new Properties();
+      overrides.setProperty(CRC32C_VALIDATION, "false");
+      return builder(overrides).buildView(BlobStoreContext.class);
+   }
+
+   private static MockResponse composed(String crc32c) {
+      return new MockResponse().addHeader("Content-Type", "application/json").setBody("{\"kind\": \"storage#object\", "
+            + "\"name\": \"object\", \"bucket\": \"bucket\", \"generation\": \"1000\", \"metageneration\": \"1\", "
+            + "\"size\": \"5\", \"componentCount\": 2, \"crc32c\": \"" + crc32c + "\", \"etag\": \"etag\"}");
+   }
+
+   /** Parts holding "hel" and "lo", which compose to "hello". */
+   private static MockResponse partListing() {
+      return new MockResponse().addHeader("Content-Type", "application/json").setBody("{\"kind\": \"storage#objects\", "
+            + "\"items\": [" + part(1, 3, "jyVmbQ==") + ", " + part(2, 2, "nbZf9g==") + "]}");
+   }
+
+   private static String part(int partNumber, int size, String crc32c) {
+      return String.format("{\"name\": \"object_%08d\", \"generation\": \"1\", \"metageneration\": \"1\", "
+            + "\"size\": \"%d\", \"crc32c\": \"%s\"}", partNumber, size, crc32c);
+   }
+
+   private void enqueueDeletes(int count) {
+      for (int i = 0; i < count; i++) {
+         server.enqueue(new MockResponse().setResponseCode(204));
+      }
+   }
+
+   private static MultipartUpload upload(BlobStore blobStore) {
+      BlobMetadata metadata = blobStore.blobBuilder("object").payload(new byte[0]).contentType("text/plain").build()
+            .getMetadata();
+      return MultipartUpload.create("bucket", "object", "object", metadata);
+   }
+
+   private static List<MultipartPart> parts(int count) {
+      ImmutableList.Builder<MultipartPart> parts = ImmutableList.builder();
+      for (int partNumber = 1; partNumber <= count; partNumber++) {
+         parts.add(MultipartPart.create(partNumber, 5L * 1024L * 1024L, "etag"));
+      }
+      return parts.build();
+   }
+}
@@ -0,0 +1,291 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.strategy.internal;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.jclouds.blobstore.BlobStoreContext;
+import org.jclouds.concurrent.config.ExecutorServiceModule;
+import org.jclouds.googlecloudstorage.domain.RemoveBlobsResult;
+import org.jclouds.googlecloudstorage.internal.BaseGoogleCloudStorageApiMockTest;
+import org.jclouds.googlecloudstorage.options.ListObjectOptions;
+import org.jclouds.http.okhttp.config.OkHttpCommandExecutorServiceModule;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.inject.Module;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+@Test(groups = "unit", testName = "ContainerClearerMockTest", singleThreaded = true)
+public class ContainerClearerMockTest extends BaseGoogleCloudStorageApiMockTest {
+
+   private static final int OBJECTS = 250;
+   private static final Pattern DELETE = Pattern.compile(
+         "Content-ID: <(\\d+)>\r\n\r\nDELETE /storage/v1/b/bucket/o/(\\S+?)(\\?generation=(\\d+))? HTTP/1.1");
+
+   @Override
+   protected Set<? extends Module> modules() {
+      return ImmutableSet.of(
+            new ExecutorServiceModule(MoreExecutors.listeningDecorator(Executors.newCachedThreadPool())),
+            new OkHttpCommandExecutorServiceModule());
+   }
+
+   public void clearsLiveObjectsInBatches() throws Exception {
+      BucketDispatcher bucket = new BucketDispatcher(OBJECTS, true);
+      server.setDispatcher(bucket);
+
+      BlobStoreContext context = builder().buildView(BlobStoreContext.class);
+      try {
+         ContainerClearer clearer = clearer(context);
+         RemoveBlobsResult result = clearer.clear("bucket", new ListObjectOptions());
+
+         assertEquals(result.deleted(), OBJECTS);
+         assertTrue(result.isComplete());
+         assertTrue(clearer.isEmpty("bucket", false));
+         // Deleting a live object of a versioned bucket keeps it as a noncurrent version.
+         assertFalse(clearer.isEmpty("bucket", true));
+      } finally {
+         context.close();
+      }
+      // Three pages listed, three batches of deletes and two emptiness checks.
+      assertEquals(bucket.lists, 5);
+      assertEquals(bucket.batches, 3);
+   }
+
+   public void clearsEveryVersion() throws Exception {
+      BucketDispatcher bucket = new BucketDispatcher(OBJECTS, true);
+      server.setDispatcher(bucket);
+
+      BlobStoreContext context = builder().buildView(BlobStoreContext.class);
+      try {
+         ContainerClearer clearer = clearer(context);
+         RemoveBlobsResult result = clearer.clear("bucket", new ListObjectOptions().versions(true));
+
+         // Each object has a noncurrent and a live generation.
+         assertEquals(result.deleted(), 2 * OBJECTS);
+         assertTrue(clearer.isEmpty("bucket", true));
+      } finally {
+         context.close();
+      }
+   }
+
+   public void deleteContainerRemovesVersionsThenBucket() throws Exception {
+      BucketDispatcher bucket = new BucketDispatcher(OBJECTS, true);
+      server.setDispatcher(bucket);
+
+      BlobStoreContext context = builder().buildView(BlobStoreContext.class);
+      try {
+         context.getBlobStore().deleteContainer("bucket");
+      } finally {
+         context.close();
+      }
+
+      assertTrue(bucket.generations.isEmpty());
+      assertTrue(bucket.deleted);
+      assertTrue(bucket.lastList.contains("maxResults=1"), bucket.lastList);
+      // The versioned clear is the only one; the bucket is not listed again to clear its live objects.
+      assertEquals(bucket.liveClearLists, 0);
+   }
+
+   public void clearContainerThroughBlobStore() throws Exception {
+      BucketDispatcher bucket = new BucketDispatcher(OBJECTS, false);
+      server.setDispatcher(bucket);
+
+      BlobStoreContext context = builder().buildView(BlobStoreContext.class);
+      try {
+         context.getBlobStore().clearContainer("bucket");
+      } finally {
+         context.close();
+      }
+
+      assertTrue(bucket.generations.isEmpty());
+      assertEquals(bucket.batches, 3);
+   }
+
+   private static ContainerClearer clearer(BlobStoreContext context) {
+      return context.utils().injector().getInstance(ContainerClearer.class);
+   }
+
+   /**
+    * Serves a bucket of objects {@code o000} onwards in pages of up to 100, resuming after the name and generation in
+    * the page token. With versioning, each object starts with a noncurrent generation 1 and a live generation 2, and
+    * deleting a live object keeps it as a noncurrent version.
+    */
+   private class BucketDispatcher extends Dispatcher {
+      private final boolean versioning;
+      private final Map<String, SortedSet<Long>> generations = Maps.newTreeMap();
+      private final Set<String> live = Sets.newHashSet();
+      private int lists;
+      /** Full page listings of live objects only, which only a clear of live objects makes. */
+      private int liveClearLists;
+      private int batches;
+      private boolean deleted;
+      private String lastList;
+
+      BucketDispatcher(int objects, boolean versioning) {
+         this.versioning = versioning;
+         for (int i = 0; i < objects; i++) {
+            String name = String.format("o%03d", i);
+            generations.put(name, versioning ? Sets.newTreeSet(ImmutableSet.of(1L, 2L))
+                  : Sets.newTreeSet(ImmutableSet.of(2L)));
+            live.add(name);
+         }
+      }
+
+      @Override
+      public synchronized MockResponse dispatch(RecordedRequest request) {
+         String path = request.getPath();
+         if (request.getMethod().equals("POST")) {
+            batches++;
+            return batch(new String(request.getBody(), UTF_8));
+         } else if (request.getMethod().equals("DELETE") && path.equals("/storage/v1/b/bucket")) {
+            if (!generations.isEmpty()) {
+               return new MockResponse().setResponseCode(409);
+            }
+            deleted = true;
+            return new MockResponse().setResponseCode(204);
+         } else if (path.startsWith("/storage/v1/b/bucket/o")) {
+            lists++;
+            lastList = path;
+            if (!"true".equals(parameter(path, "versions")) && !"1".equals(parameter(path, "maxResults"))) {
+               liveClearLists++;
+            }
+            return list(path);
+         } else if (path.startsWith("/storage/v1/b/bucket") && deleted) {
+            return new MockResponse().setResponseCode(404);
+         }
+         return new MockResponse().setResponseCode(500);
+      }
+
+      private MockResponse list(String path) {
+         boolean versions = "true".equals(parameter(path, "versions"));
+         String maxResults = parameter(path, "maxResults");
+         int pageSize = maxResults == null ? 100 : Integer.parseInt(maxResults);
+         String pageToken = parameter(path, "pageToken");
+         List<String> items = Lists.newArrayList();
+         String last = null;
+         for (Map.Entry<String, SortedSet<Long>> entry : generations.entrySet()) {
+            for (long generation : entry.getValue()) {
+               String key = entry.getKey() + "#" + generation;
+               boolean current = generation == entry.getValue().last() && live.contains(entry.getKey());
+               if ((pageToken != null && key.compareTo(pageToken) <= 0) || (!versions && !current)) {
+                  continue;
+               }
+               if (items.size() == pageSize) {
+                  return json(items, last);
+               }
+               items.add(object(entry.getKey(), generation));
+               last = key;
+            }
+         }
+         return json(items, null);
+      }
+
+      private MockResponse batch(String body) {
+         Matcher matcher = DELETE.matcher(body);
+         StringBuilder response = new StringBuilder();
+         while (matcher.find()) {
+            String status = delete(matcher.group(2), matcher.group(4)) ? "204 No Content" : "404 Not Found";
+            response.append("--batch_test\r\nContent-Type: application/http\r\nContent-ID: <response-")
+                  .append(matcher.group(1)).append(">\r\n\r\nHTTP/1.1 ").append(status).append("\r\n\r\n\r\n");
+         }
+         response.append("--batch_test--\r\n");
+         return new MockResponse().addHeader("Content-Type", "multipart/mixed; boundary=batch_test")
+               .setBody(response.toString());
+      }
+
+      private boolean delete(String name, String generation) {
+         SortedSet<Long> versions = generations.get(name);
+         if (versions == null) {
+            return false;
+         }
+         boolean removed;
+         if (generation == null) {
+            removed = live.remove(name);
+            if (removed && !versioning) {
+               versions.clear();
+            }
+         } else {
+            removed = versions.remove(Long.parseLong(generation));
+         }
+         if (versions.isEmpty()) {
+            generations.remove(name);
+            live.remove(name);
+         }
+         return removed;
+      }
+
+      private MockResponse json(List<String> items, String nextPageToken) {
+         StringBuilder body = new StringBuilder("{\"kind\": \"storage#objects\", ");
+         if (nextPageToken != null) {
+            body.append("\"nextPageToken\": \"").append(nextPageToken).append("\", ");
+         }
+         body.append("\"items\": [");
+         for (int i = 0; i < items.size(); i++) {
+            body.append(i == 0 ? "" : ", ").append(items.get(i));
+         }
+         body.append("]}");
+         return new MockResponse().addHeader("Content-Type", "application/json").setBody(body.toString());
+      }
+
+      private String object(String name, long generation) {
+         return "{\"kind\": \"storage#object\", \"id\": \"bucket/" + name + "/" + generation + "\", "
+               + "\"selfLink\": \"https://www.googleapis.com/storage/v1/b/bucket/o/" + name + "\", "
+               + "\"name\": \"" + name + "\", \"bucket\": \"bucket\", \"generation\": \"" + generation + "\", "
+               + "\"metageneration\": \"1\", \"contentType\": \"text/plain\", "
+               + "\"updated\": \"2014-09-27T00:01:44.819\", \"storageClass\": \"STANDARD\", \"size\": \"10\", "
+               + "\"mediaLink\": \"https://www.googleapis.com/download/storage/v1/b/bucket/o/" + name + "?alt=media\", "
+               + "\"etag\": \"etag\"}";
+      }
+
+      private String parameter(String path, String name) {
+         int query = path.indexOf('?');
+         if (query == -1) {
+            return null;
+         }
+         for (String pair : path.substring(query + 1).split("&")) {
+            if (pair.startsWith(name + "=")) {
+               try {
+                  return URLDecoder.decode(pair.substring(name.length() + 1), "UTF-8");
+               } catch (UnsupportedEncodingException e) {
+                  throw new AssertionError(e);
+               }
+            }
+         }
+         return null;
+      }
+   }
+}
@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.strategy.internal;
+
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.CONTENT_CACHE_DIRECTORY;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.CONTENT_CACHE_MAX_BYTES;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import org.jclouds.blobstore.BlobStoreContext;
+import org.jclouds.blobstore.domain.Blob;
+import org.jclouds.googlecloudstorage.internal.BaseGoogleCloudStorageApiMockTest;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+
+@Test(groups = "unit", testName = "ContentCacheMockTest", singleThreaded = true)
+public class ContentCacheMockTest extends BaseGoogleCloudStorageApiMockTest {
+
+   /** The size object_get.json gives. */
+   private static final byte[] CONTENT = new byte[1000];
+
+   static {
+      new Random(0).nextBytes(CONTENT);
+   }
+
+   private Path directory;
+
+   @BeforeMethod
+   public void createDirectory() throws IOException {
+      directory = Files.createTempDirectory("content-cache");
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void deleteDirectory() throws IOException {
+      for (Path file : cachedFiles()) {
+         Files.delete(file);
+      }
+      Files.deleteIfExists(directory.resolve(".lock"));
+      Files.delete(directory);
+   }
+
+   public void servesRereadFromDisk() throws Exception {
+      server.enqueue(jsonResponse("/object_get.json"));
+      server.enqueue(content());
+      server.enqueue(jsonResponse("/object_get.json"));
+
+      BlobStoreContext context = context(1 << 20);
+      try {
+         assertTrue(Arrays.equals(read(context, "file_name"), CONTENT));
+         assertTrue(Arrays.equals(read(context, "file_name"), CONTENT));
+      } finally {
+         context.close();
+      }
+      assertEquals(server.getRequestCount(), 3);
+      assertSent(server, "GET", "/storage/v1/b/test/o/file_name?projection=noAcl");
+      assertSent(server, "GET", "/storage/v1/b/test/o/file_name?alt=media&generation=1000");
+      assertSent(server, "GET", "/storage/v1/b/test/o/file_name?projection=noAcl");
+      assertEquals(cachedFiles().size(), 1);
+   }
+
+   public void replacesOlderGeneration() throws Exception {
+      server.enqueue(jsonResponse("/object_get.json"));
+      server.enqueue(content());
+      server.enqueue(object("file_name", 1001));
+      server.enqueue(content());
+
+      BlobStoreContext context = context(1 << 20);
+      try {
+         read(context, "file_name");
+         read(context, "file_name");
+      } finally {
+         context.close();
+      }
+      assertEquals(server.getRequestCount(), 4);
+      List<Path> files = cachedFiles();
+      assertEquals(files.size(), 1);
+      assertTrue(files.get(0).getFileName().toString().endsWith("-1001"), files.toString());
+   }
+
+   public void evictsLeastRecentlyUsedBeyondBudget() throws Exception {
+      server.enqueue(jsonResponse("/object_get.json"));
+      server.enqueue(content());
+      server.enqueue(object("file_name2", 1000));
+      server.enqueue(content());
+
+      BlobStoreContext context = context(CONTENT.length * 3 / 2);
+      try {
+         read(context, "file_name");
+         read(context, "file_name2");
+      } finally {
+         context.close();
+      }
+      assertEquals(cachedFiles().size(), 1);
+   }
+
+   public void downloadsObjectLargerThanBudget() throws Exception {
+      server.enqueue(jsonResponse("/object_get.json"));
+      server.enqueue(content());
+
+      BlobStoreContext context = context(CONTENT.length - 1);
+      try {
+         assertTrue(Arrays.equals(read(context, "file_name"), CONTENT));
+      } finally {
+         context.close();
+      }
+      assertSent(server, "GET", "/storage/v1/b/test/o/file_name?projection=noAcl");
+      assertSent(server, "GET", "/storage/v1/b/test/o/file_name?alt=media");
+      assertEquals(cachedFiles().size(), 0);
+   }
+
+   public void downloadsGzipStoredObjectWithoutCaching() throws Exception {
+      // Served decompressed, so the content is longer than the stored size.
+      byte[] decompressed = Arrays.copyOf(CONTENT, CONTENT.length * 2);
+      server.enqueue(new MockResponse().addHeader("Content-Type", "application/json").setBody(
+            stringFromResource("/object_get.json").replace("\"size\": \"1000\",",
+                  "\"size\": \"1000\", \"contentEncoding\": \"gzip\",")));
+      server.enqueue(new MockResponse().addHeader("Content-Type", "application/octet-stream").setBody(decompressed));
+
+      BlobStoreContext context = context(1 << 20);
+      try {
+         assertTrue(Arrays.equals(read(context, "file_name"), decompressed));
+      } finally {
+         context.close();
+      }
+      assertSent(server, "GET", "/storage/v1/b/test/o/file_name?projection=noAcl");
+      assertSent(server, "GET", "/storage/v1/b/test/o/file_name?alt=media");
+      assertEquals(cachedFiles().size(), 0);
+   }
+
+   private BlobStoreContext context(long maxBytes) {
+      Properties overrides = new Properties();
+      overrides.setProperty(CONTENT_CACHE_DIRECTORY, directory.toString());
+      overrides.setProperty(CONTENT_CACHE_MAX_BYTES, maxBytes + "");
+      return builder(overrides).buildView(BlobStoreContext.class);
+   }
+
+   private static byte[] read(BlobStoreContext context, String name) throws IOException {
+      Blob blob = context.getBlobStore().getBlob("test", name);
+      InputStream in = blob.getPayload().openStream();
+      try {
+         return ByteStreams.toByteArray(in);
+      } finally {
+         Closeables.closeQuietly(in);
+      }
+   }
+
+   private List<Path> cachedFiles() throws IOException {
+      List<Path> files = Lists.newArrayList();
+      DirectoryStream<Path> stream = Files.newDirectoryStream(directory);
+      try {
+         for (Path file : stream) {
+            if (!file.getFileName().toString().equals(".lock")) {
+               files.add(file);
+            }
+         }
+      } finally {
+         stream.close();
+      }
+      return files;
+   }
+
+   private MockResponse object(String name, long generation) {
+      return new MockResponse().addHeader("Content-Type", "application/json").setBody(
+            stringFromResource("/object_get.json").replace("\"file_name\"", "\"" + name + "\"")
+                  .replace("\"generation\": \"1000\"", "\"generation\": \"" + generation + "\""));
+   }
+
+   private static MockResponse content() {
+      return new MockResponse().addHeader("Content-Type", "application/octet-stream").setBody(CONTENT);
+   }
+}
@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.strategy.internal;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.EXISTENCE_INDEX_TTL;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.net.URLDecoder;
+import java.util.Properties;
+
+import org.jclouds.blobstore.BlobStore;
+import org.jclouds.blobstore.BlobStoreContext;
+import org.jclouds.googlecloudstorage.blobstore.GoogleCloudStorageBlobStore;
+import org.jclouds.googlecloudstorage.internal.BaseGoogleCloudStorageApiMockTest;
+import org.testng.annotations.Test;
+
+import com.squareup.okhttp.mockwebserver.MockResponse;
+
+@Test(groups = "unit", testName = "ExistenceIndexMockTest", singleThreaded = true)
+public class ExistenceIndexMockTest extends BaseGoogleCloudStorageApiMockTest {
+
+   public void answersAbsentNamesWithoutCall() throws Exception {
+      server.enqueue(jsonResponse("/object_list.json"));
+      server.enqueue(jsonResponse("/object_get.json"));
+
+      BlobStoreContext context = builder().buildView(BlobStoreContext.class);
+      try {
+         GoogleCloudStorageBlobStore blobStore = (GoogleCloudStorageBlobStore) context.getBlobStore();
+         assertEquals(blobStore.indexContainer("test", null), 2);
+
+         assertFalse(blobStore.blobExists("test", "missing"));
+         assertEquals(server.getRequestCount(), 1);
+         assertTrue(blobStore.blobExists("test", "file_name"));
+         assertEquals(server.getRequestCount(), 2);
+      } finally {
+         context.close();
+      }
+      assertEquals(URLDecoder.decode(server.takeRequest().getPath(), "UTF-8"),
+            "/storage/v1/b/test/o?projection=noAcl&fields=items(name,generation,metageneration,size),nextPageToken");
+   }
+
+   public void addsNamesWrittenThroughBlobStore() throws Exception {
+      server.enqueue(emptyList());
+      // The upload is checked against the stored checksum, so the response carries that of "hello".
+      server.enqueue(new MockResponse().addHeader("Content-Type", "application/json").setBody(
+            stringFromResource("/object_get.json").replace("\"crc32c\": \"crc32c\"", "\"crc32c\": \"mnG7TA==\"")));
+      server.enqueue(jsonResponse("/object_get.json"));
+
+      BlobStoreContext context = builder().buildView(BlobStoreContext.class);
+      try {
+         GoogleCloudStorageBlobStore blobStore = (GoogleCloudStorageBlobStore) context.getBlobStore();
+         assertEquals(blobStore.indexContainer("test", null), 0);
+         blobStore.putBlob("test", blobStore.blobBuilder("file_name").payload("hello".getBytes(UTF_8)).build());
+
+         assertTrue(blobStore.blobExists("test", "file_name"));
+         assertFalse(blobStore.blobExists("test", "other"));
+      } finally {
+         context.close();
+      }
+      assertEquals(server.getRequestCount(), 3);
+   }
+
+   public void answersOnlyUnderIndexedPrefix() throws Exception {
+      server.enqueue(emptyList());
+      server.enqueue(response404());
+
+      BlobStoreContext context = builder().buildView(BlobStoreContext.class);
+      try {
+         GoogleCloudStorageBlobStore blobStore = (GoogleCloudStorageBlobStore) context.getBlobStore();
+         blobStore.indexContainer("test", "a/");
+
+         assertFalse(blobStore.blobExists("test", "a/object"));
+         assertFalse(blobStore.blobExists("test", "b/object"));
+      } finally {
+         context.close();
+      }
+      assertEquals(server.getRequestCount(), 2);
+   }
+
+   public void deleteContainerDropsIndex() throws Exception {
+      server.enqueue(emptyList());
+      // The versioned clear and the emptiness check find nothing; the bucket is then gone.
+      server.enqueue(emptyList());
+      server.enqueue(emptyList());
+      server.enqueue(new MockResponse().setResponseCode(204));
+      server.enqueue(response404());
+      server.enqueue(response404());
+
+      BlobStoreContext context = builder().buildView(BlobStoreContext.class);
+      try {
+         GoogleCloudStorageBlobStore blobStore = (GoogleCloudStorageBlobStore) context.getBlobStore();
+         blobStore.indexContainer("test", null);
+         blobStore.deleteContainer("test");
+
+         // A bucket created again under the name may hold anything, so the service is asked.
+         assertFalse(blobStore.blobExists("test", "missing"));
+      } finally {
+         context.close();
+      }
+      assertEquals(server.getRequestCount(), 6);
+   }
+
+   public void stopsAnsweringAfterTtl() throws Exception {
+      server.enqueue(emptyList());
+      server.enqueue(response404());
+
+      Properties overrides = new Properties();
+      overrides.setProperty(EXISTENCE_INDEX_TTL, "1");
+      BlobStoreContext context = builder(overrides).buildView(BlobStoreContext.class);
+      try {
+         BlobStore blobStore = context.getBlobStore();
+         ((GoogleCloudStorageBlobStore) blobStore).indexContainer("test", null);
+         Thread.sleep(10);
+
+         assertFalse(blobStore.blobExists("test", "missing"));
+      } finally {
+         context.close();
+      }
+      assertEquals(server.getRequestCount(), 2);
+   }
+
+   private static MockResponse emptyList() {
+      return new MockResponse().addHeader("Content-Type", "application/json")
+            .setBody("{\"kind\": \"storage#objects\"}");
+   }
+}
@@ -0,0 +1,236 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.strategy.internal;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.jclouds.blobstore.BlobStore;
+import org.jclouds.blobstore.BlobStoreContext;
+import org.jclouds.blobstore.domain.BlobMetadata;
+import org.jclouds.blobstore.domain.MultipartUpload;
+import org.jclouds.concurrent.config.ExecutorServiceModule;
+import org.jclouds.googlecloudstorage.internal.BaseGoogleCloudStorageApiMockTest;
+import org.jclouds.http.okhttp.config.OkHttpCommandExecutorServiceModule;
+import org.jclouds.rest.AuthorizationException;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.inject.Module;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+@Test(groups = "unit", testName = "MultipartComponentCleanerMockTest", singleThreaded = true)
+public class MultipartComponentCleanerMockTest extends BaseGoogleCloudStorageApiMockTest {
+
+   /** The user executor of the next context, or null to run tasks on the calling thread. */
+   private ListeningExecutorService userExecutor;
+
+   @Override
+   protected Set<? extends Module> modules() {
+      return userExecutor == null ? super.modules()
+            : ImmutableSet.of(new ExecutorServiceModule(userExecutor), new OkHttpCommandExecutorServiceModule());
+   }
+
+   public void scheduleDeletesEveryComponent() throws Exception {
+      server.enqueue(new MockResponse().setResponseCode(204));
+      server.enqueue(response404());
+      server.enqueue(new MockResponse().setResponseCode(403));
+
+      BlobStoreContext context = builder().buildView(BlobStoreContext.class);
+      try {
+         MultipartComponentCleaner cleaner = context.utils().injector().getInstance(MultipartComponentCleaner.class);
+         try {
+            cleaner.schedule("bucket", ImmutableList.of("object_00000001", "object_00000002", "object_00000003"))
+                  .get(10, TimeUnit.SECONDS);
+            fail("expected the rejected delete to fail the future");
+         } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof AuthorizationException, expected.getCause().toString());
+         }
+
+         assertEquals(cleaner.getBacklog(), 0);
+         assertEquals(cleaner.getLagMillis(), 0);
+         // A component that is already gone is not counted as deleted.
+         assertEquals(cleaner.getDeletedCount(), 1);
+         assertEquals(cleaner.getNotFoundCount(), 1);
+         assertEquals(cleaner.getFailedCount(), 1);
+      } finally {
+         context.close();
+      }
+
+      assertSent(server, "DELETE", "/storage/v1/b/bucket/o/object_00000001", null);
+      assertSent(server, "DELETE", "/storage/v1/b/bucket/o/object_00000002", null);
+      assertSent(server, "DELETE", "/storage/v1/b/bucket/o/object_00000003", null);
+   }
+
+   public void scheduleWhileWorkerDrainsCompletesAfterWholeBatch() throws Exception {
+      final CountDownLatch heldReceived = new CountDownLatch(1);
+      final CountDownLatch releaseHeld = new CountDownLatch(1);
+      final CountDownLatch releaseLast = new CountDownLatch(1);
+      server.setDispatcher(new Dispatcher() {
+         @Override
+         public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+            if (request.getPath().endsWith("/held")) {
+               heldReceived.countDown();
+               releaseHeld.await(10, TimeUnit.SECONDS);
+            } else if (request.getPath().endsWith("/last")) {
+               releaseLast.await(10, TimeUnit.SECONDS);
+            }
+            return new MockResponse().setResponseCode(204);
+         }
+      });
+
+      userExecutor = MoreExecutors.listeningDecorator(Executors.newCachedThreadPool());
+      BlobStoreContext context;
+      try {
+         context = builder().buildView(BlobStoreContext.class);
+      } finally {
+         userExecutor = null;
+      }
+      try {
+         final MultipartComponentCleaner cleaner = context.utils().injector()
+               .getInstance(MultipartComponentCleaner.class);
+         // Keeps a worker running until the second batch is being read.
+         ListenableFuture<Void> held = cleaner.schedule("bucket", ImmutableList.of("held"));
+         assertTrue(heldReceived.await(10, TimeUnit.SECONDS));
+
+         ListenableFuture<Void> batch = cleaner.schedule("bucket", new Iterable<String>() {
+            @Override
+            public Iterator<String> iterator() {
+               return new AbstractIterator<String>() {
+                  private int next;
+
+                  @Override
+                  protected String computeNext() {
+                     switch (next++) {
+                        case 0:
+                           return "first";
+                        case 1:
+                           // Were the batch queued name by name, the freed worker could delete "first" and complete
+                           // the batch here, before "last" is counted.
+                           releaseHeld.countDown();
+                           awaitDeletedCount(cleaner, 2);
+                           return "last";
+                        default:
+                           return endOfData();
+                     }
+                  }
+               };
+            }
+         });
+
+         assertFalse(batch.isDone(), "the batch completed before its last delete");
+         releaseLast.countDown();
+         batch.get(10, TimeUnit.SECONDS);
+         held.get(10, TimeUnit.SECONDS);
+         assertEquals(cleaner.getDeletedCount(), 3);
+         assertEquals(cleaner.getBacklog(), 0);
+      } finally {
+         context.close();
+      }
+   }
+
+   /** Waits briefly for {@code count} deletes; the batch under test must not have started any of its own yet. */
+   private static void awaitDeletedCount(MultipartComponentCleaner cleaner, long count) {
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+      while (cleaner.getDeletedCount() < count && System.nanoTime() < deadline) {
+         Thread.yield();
+      }
+   }
+
+   public void abortDeletesEncodedPartNamesAndThrowsOnFailure() throws Exception {
+      final Set<String> deletes = Sets.newConcurrentHashSet();
+      server.setDispatcher(new Dispatcher() {
+         @Override
+         public MockResponse dispatch(RecordedRequest request) {
+            if (request.getMethod().equals("GET")) {
+               return new MockResponse().addHeader("Content-Type", "application/json").setBody(
+                     "{\"kind\": \"storage#objects\", \"items\": [" + part(1) + ", " + part(2) + "]}");
+            }
+            deletes.add(request.getPath());
+            return new MockResponse().setResponseCode(request.getPath().endsWith("00000002") ? 403 : 204);
+         }
+      });
+
+      BlobStoreContext context = builder().buildView(BlobStoreContext.class);
+      try {
+         BlobStore blobStore = context.getBlobStore();
+         BlobMetadata metadata = blobStore.blobBuilder("dir/file").payload(new byte[0]).build().getMetadata();
+         blobStore.abortMultipartUpload(MultipartUpload.create("bucket", "dir/file", "dir/file", metadata));
+         fail("expected the rejected delete to fail the abort");
+      } catch (AuthorizationException expected) {
+      } finally {
+         context.close();
+      }
+
+      assertEquals(deletes, ImmutableSet.of("/storage/v1/b/bucket/o/dir%2Ffile_00000001",
+            "/storage/v1/b/bucket/o/dir%2Ffile_00000002"));
+   }
+
+   private static String part(int partNumber) {
+      return String.format("{\"name\": \"dir/file_%08d\", \"bucket\": \"bucket\", \"generation\": \"1\", "
+            + "\"size\": \"5\", \"etag\": \"etag\"}", partNumber);
+   }
+
+   public void scheduleNothingCompletes() throws Exception {
+      BlobStoreContext context = builder().buildView(BlobStoreContext.class);
+      try {
+         MultipartComponentCleaner cleaner = context.utils().injector().getInstance(MultipartComponentCleaner.class);
+         assertTrue(cleaner.schedule("bucket", ImmutableList.<String> of()).isDone());
+      } finally {
+         context.close();
+      }
+      assertEquals(server.getRequestCount(), 0);
+   }
+
+   public void sweepDeletesStaleComponentsOnly() throws Exception {
+      server.enqueue(jsonResponse("/object_list_mpu_components.json"));
+      server.enqueue(new MockResponse().setResponseCode(204));
+      server.enqueue(new MockResponse().setResponseCode(204));
+
+      BlobStoreContext context = builder().buildView(BlobStoreContext.class);
+      try {
+         MultipartComponentCleaner cleaner = context.utils().injector().getInstance(MultipartComponentCleaner.class);
+         // upload_00000002 is recent and upload_notes.txt is not a component.
+         assertEquals(cleaner.sweep("bucket", "upload_", 1, TimeUnit.DAYS), 2);
+         assertEquals(cleaner.getDeletedCount(), 2);
+      } finally {
+         context.close();
+      }
+
+      assertSent(server, "GET", "/storage/v1/b/bucket/o?prefix=upload_");
+      assertSent(server, "DELETE", "/storage/v1/b/bucket/o/upload_00000001", null);
+      assertSent(server, "DELETE", "/storage/v1/b/bucket/o/upload_compose_1_00000000", null);
+      assertEquals(server.getRequestCount(), 3);
+   }
+}
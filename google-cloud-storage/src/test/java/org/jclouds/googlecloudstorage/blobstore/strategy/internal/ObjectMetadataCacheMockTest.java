@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.strategy.internal;
+
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.METADATA_CACHE_REVALIDATE_AFTER;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.METADATA_CACHE_SIZE;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.util.Properties;
+
+import org.jclouds.blobstore.BlobStoreContext;
+import org.jclouds.googlecloudstorage.blobstore.GoogleCloudStorageBlobStore;
+import org.jclouds.googlecloudstorage.internal.BaseGoogleCloudStorageApiMockTest;
+import org.testng.annotations.Test;
+
+import com.squareup.okhttp.mockwebserver.MockResponse;
+
+@Test(groups = "unit", testName = "ObjectMetadataCacheMockTest", singleThreaded = true)
+public class ObjectMetadataCacheMockTest extends BaseGoogleCloudStorageApiMockTest {
+
+   public void servesRepeatedLookupsFromCache() throws Exception {
+      server.enqueue(jsonResponse("/object_get.json"));
+
+      BlobStoreContext context = context(100, 600000);
+      try {
+         GoogleCloudStorageBlobStore blobStore = (GoogleCloudStorageBlobStore) context.getBlobStore();
+         assertEquals(blobStore.blobMetadata("test", "file_name").getETag(), "etag");
+         assertEquals(blobStore.blobMetadata("test", "file_name").getETag(), "etag");
+
+         assertEquals(blobStore.metadataCacheStats().missCount(), 1);
+         assertEquals(blobStore.metadataCacheStats().hitCount(), 1);
+      } finally {
+         context.close();
+      }
+      assertEquals(server.getRequestCount(), 1);
+      assertSent(server, "GET", "/storage/v1/b/test/o/file_name?projection=noAcl");
+   }
+
+   public void revalidatesByGeneration() throws Exception {
+      server.enqueue(jsonResponse("/object_get.json"));
+      server.enqueue(new MockResponse().setResponseCode(304));
+
+      BlobStoreContext context = context(100, 0);
+      try {
+         assertEquals(context.getBlobStore().blobMetadata("test", "file_name").getETag(), "etag");
+         assertEquals(context.getBlobStore().blobMetadata("test", "file_name").getETag(), "etag");
+      } finally {
+         context.close();
+      }
+      assertSent(server, "GET", "/storage/v1/b/test/o/file_name?projection=noAcl");
+      assertSent(server, "GET", "/storage/v1/b/test/o/file_name?ifGenerationNotMatch=1000&projection=noAcl");
+   }
+
+   public void forgetsObjectGoneOnRevalidation() throws Exception {
+      server.enqueue(jsonResponse("/object_get.json"));
+      server.enqueue(response404());
+
+      BlobStoreContext context = context(100, 0);
+      try {
+         context.getBlobStore().blobMetadata("test", "file_name");
+         assertNull(context.getBlobStore().blobMetadata("test", "file_name"));
+      } finally {
+         context.close();
+      }
+   }
+
+   public void removeBlobInvalidates() throws Exception {
+      server.enqueue(jsonResponse("/object_get.json"));
+      server.enqueue(new MockResponse().setResponseCode(204));
+      server.enqueue(response404());
+
+      BlobStoreContext context = context(100, 600000);
+      try {
+         context.getBlobStore().blobMetadata("test", "file_name");
+         context.getBlobStore().removeBlob("test", "file_name");
+         assertNull(context.getBlobStore().blobMetadata("test", "file_name"));
+      } finally {
+         context.close();
+      }
+      assertEquals(server.getRequestCount(), 3);
+   }
+
+   public void offByDefault() throws Exception {
+      server.enqueue(jsonResponse("/object_get.json"));
+      server.enqueue(jsonResponse("/object_get.json"));
+
+      BlobStoreContext context = builder().buildView(BlobStoreContext.class);
+      try {
+         GoogleCloudStorageBlobStore blobStore = (GoogleCloudStorageBlobStore) context.getBlobStore();
+         blobStore.blobMetadata("test", "file_name");
+         blobStore.blobMetadata("test", "file_name");
+
+         assertEquals(blobStore.metadataCacheStats().requestCount(), 0);
+      } finally {
+         context.close();
+      }
+      assertEquals(server.getRequestCount(), 2);
+   }
+
+   private BlobStoreContext context(long size, long revalidateAfter) {
+      Properties overrides = new Properties();
+      overrides.setProperty(METADATA_CACHE_SIZE, size + "");
+      overrides.setProperty(METADATA_CACHE_REVALIDATE_AFTER, revalidateAfter + "");
+      return builder(overrides).buildView(BlobStoreContext.class);
+   }
+}
@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.strategy.internal;
+
+import static org.jclouds.Constants.PROPERTY_MAX_RETRIES;
+import static org.jclouds.Constants.PROPERTY_SO_TIMEOUT;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.REWRITE_MAX_BYTES_PER_CALL;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Executors;
+
+import org.jclouds.blobstore.BlobStoreContext;
+import org.jclouds.blobstore.options.CopyOptions;
+import org.jclouds.concurrent.config.ExecutorServiceModule;
+import org.jclouds.googlecloudstorage.domain.CopyObjectsResult;
+import org.jclouds.googlecloudstorage.internal.BaseGoogleCloudStorageApiMockTest;
+import org.jclouds.http.okhttp.config.OkHttpCommandExecutorServiceModule;
+import org.jclouds.rest.AuthorizationException;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.inject.Module;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+import com.squareup.okhttp.mockwebserver.SocketPolicy;
+
+@Test(groups = "unit", testName = "ObjectRewriterMockTest", singleThreaded = true)
+public class ObjectRewriterMockTest extends BaseGoogleCloudStorageApiMockTest {
+
+   private static final String REWRITE_PATH = "/storage/v1/b/source/o/object/rewriteTo/b/destination/o/object";
+
+   @Override
+   protected Set<? extends Module> modules() {
+      return ImmutableSet.of(
+            new ExecutorServiceModule(MoreExecutors.listeningDecorator(Executors.newCachedThreadPool())),
+            new OkHttpCommandExecutorServiceModule());
+   }
+
+   public void loopsOnRewriteToken() throws Exception {
+      server.enqueue(inProgress(2 * ObjectRewriter.REWRITE_GRANULARITY, "token1"));
+      server.enqueue(inProgress(4 * ObjectRewriter.REWRITE_GRANULARITY, "token2"));
+      server.enqueue(jsonResponse("/object_rewrite.json"));
+      final List<Long> progress = Lists.newArrayList();
+
+      BlobStoreContext context = builder(maxBytesPerCall()).buildView(BlobStoreContext.class);
+      try {
+         assertEquals(rewriter(context).rewrite("source", "object", "destination", "object", null,
+               new ObjectRewriter.Progress() {
+                  @Override
+                  public void rewritten(String sourceBucket, String sourceObject, long totalBytesRewritten,
+                        long objectSize) {
+                     progress.add(totalBytesRewritten);
+                  }
+               }).etag(), "etag");
+      } finally {
+         context.close();
+      }
+
+      assertEquals(progress, ImmutableList.of(2 * ObjectRewriter.REWRITE_GRANULARITY,
+            4 * ObjectRewriter.REWRITE_GRANULARITY, 16L));
+      assertSent(server, "POST", REWRITE_PATH + "?maxBytesRewrittenPerCall=2097152");
+      assertSent(server, "POST", REWRITE_PATH + "?rewriteToken=token1&maxBytesRewrittenPerCall=2097152");
+      assertSent(server, "POST", REWRITE_PATH + "?rewriteToken=token2&maxBytesRewrittenPerCall=2097152");
+   }
+
+   public void retriesWithSameTokenAfterServerError() throws Exception {
+      server.enqueue(inProgress(ObjectRewriter.REWRITE_GRANULARITY, "token1"));
+      server.enqueue(new MockResponse().setResponseCode(503));
+      server.enqueue(jsonResponse("/object_rewrite.json"));
+
+      Properties overrides = maxBytesPerCall();
+      overrides.setProperty(PROPERTY_MAX_RETRIES, "0");
+      BlobStoreContext context = builder(overrides).buildView(BlobStoreContext.class);
+      try {
+         rewriter(context).rewrite("source", "object", "destination", "object", null, null);
+      } finally {
+         context.close();
+      }
+
+      server.takeRequest();
+      assertSent(server, "POST", REWRITE_PATH + "?rewriteToken=token1&maxBytesRewrittenPerCall=2097152");
+      assertSent(server, "POST", REWRITE_PATH + "?rewriteToken=token1&maxBytesRewrittenPerCall=2097152");
+   }
+
+   public void keepsCallLimitOfTokenAfterTimeout() throws Exception {
+      server.enqueue(inProgress(2 * ObjectRewriter.REWRITE_GRANULARITY, "token1"));
+      server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+      server.enqueue(jsonResponse("/object_rewrite.json"));
+
+      Properties overrides = maxBytesPerCall();
+      overrides.setProperty(PROPERTY_MAX_RETRIES, "0");
+      overrides.setProperty(PROPERTY_SO_TIMEOUT, "500");
+      BlobStoreContext context = builder(overrides).buildView(BlobStoreContext.class);
+      try {
+         assertEquals(rewriter(context).rewrite("source", "object", "destination", "object", null, null).etag(),
+               "etag");
+      } finally {
+         context.close();
+      }
+
+      server.takeRequest();
+      assertSent(server, "POST", REWRITE_PATH + "?rewriteToken=token1&maxBytesRewrittenPerCall=2097152");
+      // The token was issued for a limit of 2 MiB, so the retry does not halve it.
+      assertSent(server, "POST", REWRITE_PATH + "?rewriteToken=token1&maxBytesRewrittenPerCall=2097152");
+      assertEquals(server.getRequestCount(), 3);
+   }
+
+   public void copiesManyObjectsConcurrently() throws Exception {
+      server.setDispatcher(new Dispatcher() {
+         @Override
+         public MockResponse dispatch(RecordedRequest request) {
+            if (request.getPath().contains("/o/denied/")) {
+               return new MockResponse().setResponseCode(403);
+            }
+            return jsonResponse("/object_rewrite.json");
+         }
+      });
+      List<String> names = Lists.newArrayList("denied");
+      for (int i = 0; i < 20; i++) {
+         names.add("object" + i);
+      }
+
+      CopyObjectsResult result;
+      BlobStoreContext context = builder().buildView(BlobStoreContext.class);
+      try {
+         result = rewriter(context).rewriteAll("source", names, "destination", null);
+      } finally {
+         context.close();
+      }
+
+      assertEquals(result.copied(), 20);
+      // Every object of the mock response is 1000 bytes.
+      assertEquals(result.bytesCopied(), 20 * 1000);
+      assertEquals(result.failures().keySet(), ImmutableSet.of("denied"));
+      assertTrue(result.failures().get("denied") instanceof AuthorizationException);
+   }
+
+   public void copyBlobRewrites() throws Exception {
+      server.enqueue(jsonResponse("/object_rewrite.json"));
+
+      BlobStoreContext context = builder().buildView(BlobStoreContext.class);
+      try {
+         assertEquals(context.getBlobStore().copyBlob("source", "dir/object", "destination", "dir/object",
+               CopyOptions.NONE), "etag");
+      } finally {
+         context.close();
+      }
+
+      assertSent(server, "POST", "/storage/v1/b/source/o/dir%2Fobject/rewriteTo/b/destination/o/dir%2Fobject");
+   }
+
+   private static Properties maxBytesPerCall() {
+      Properties overrides = new Properties();
+      overrides.setProperty(REWRITE_MAX_BYTES_PER_CALL, 2 * ObjectRewriter.REWRITE_GRANULARITY + "");
+      return overrides;
+   }
+
+   private static ObjectRewriter rewriter(BlobStoreContext context) {
+      return context.utils().injector().getInstance(ObjectRewriter.class);
+   }
+
+   private static MockResponse inProgress(long totalBytesRewritten, String token) {
+      return new MockResponse().addHeader("Content-Type", "application/json").setBody(
+            "{\"kind\": \"storage#rewriteResponse\", \"totalBytesRewritten\": \"" + totalBytesRewritten + "\", "
+                  + "\"objectSize\": \"" + 8 * ObjectRewriter.REWRITE_GRANULARITY + "\", \"done\": false, "
+                  + "\"rewriteToken\": \"" + token + "\"}");
+   }
+}
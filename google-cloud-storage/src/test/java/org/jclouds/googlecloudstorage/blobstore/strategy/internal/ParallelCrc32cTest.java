@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.strategy.internal;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.Executors;
+
+import org.jclouds.googlecloudstorage.util.Crc32c;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+@Test(groups = "unit", testName = "ParallelCrc32cTest")
+public class ParallelCrc32cTest {
+
+   private final ListeningExecutorService executor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(4));
+   private File file;
+   private long expected;
+
+   @BeforeClass
+   public void writeFile() throws IOException {
+      byte[] content = new byte[10 * 1000 + 123];
+      new Random(0).nextBytes(content);
+      file = File.createTempFile("parallel-crc32c", ".bin");
+      Files.write(content, file);
+      Crc32c checksum = new Crc32c();
+      checksum.update(content, 0, content.length);
+      expected = checksum.getValue();
+   }
+
+   @AfterClass(alwaysRun = true)
+   public void cleanUp() {
+      executor.shutdownNow();
+      if (file != null) {
+         file.delete();
+      }
+   }
+
+   public void segmentsCombineToWholeFile() throws IOException {
+      assertEquals(new ParallelCrc32c(executor, 1000, 3).checksum(file.toPath()), expected);
+   }
+
+   public void singleSegmentCoversSmallFile() throws IOException {
+      assertEquals(new ParallelCrc32c(executor, 1024 * 1024, 3).checksum(file.toPath()), expected);
+   }
+
+   public void emptyFileHasZeroChecksum() throws IOException {
+      File empty = File.createTempFile("parallel-crc32c", ".bin");
+      try {
+         assertEquals(new ParallelCrc32c(executor, 1000, 3).checksum(empty.toPath()), 0L);
+      } finally {
+         empty.delete();
+      }
+   }
+}
@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.strategy.internal;
+
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.CRC32C_VALIDATION;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.MPU_MAX_BUFFERED_BYTES;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.MPU_PARALLEL_DEGREE;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jclouds.blobstore.BlobStore;
+import org.jclouds.blobstore.BlobStoreContext;
+import org.jclouds.blobstore.domain.Blob;
+import org.jclouds.concurrent.config.ExecutorServiceModule;
+import org.jclouds.googlecloudstorage.internal.BaseGoogleCloudStorageApiMockTest;
+import org.jclouds.http.HttpResponseException;
+import org.jclouds.http.okhttp.config.OkHttpCommandExecutorServiceModule;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.inject.Module;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+@Test(groups = "unit", testName = "ParallelMultipartUploadStrategyMockTest", singleThreaded = true)
+public class ParallelMultipartUploadStrategyMockTest extends BaseGoogleCloudStorageApiMockTest {
+
+   private static final int PART_SIZE = 64 * 1024;
+   private static final int PART_COUNT = 16;
+
+   @Override
+   protected Set<? extends Module> modules() {
+      return ImmutableSet.of(
+            new ExecutorServiceModule(MoreExecutors.listeningDecorator(Executors.newCachedThreadPool())),
+            new OkHttpCommandExecutorServiceModule());
+   }
+
+   public void partsUploadUpToParallelDegreeAtOnce() throws Exception {
+      for (int degree : new int[] { 1, 2, 4, 8 }) {
+         PartDispatcher dispatcher = new PartDispatcher(-1, degree);
+         server.setDispatcher(dispatcher);
+
+         upload(degree, Long.MAX_VALUE);
+
+         assertEquals(dispatcher.uploads.get(), PART_COUNT);
+         assertEquals(dispatcher.maxInFlight.get(), degree, "parts in flight at parallel degree " + degree);
+      }
+   }
+
+   public void bufferedBytesLimitPartsInFlight() throws Exception {
+      PartDispatcher dispatcher = new PartDispatcher(-1, 2);
+      server.setDispatcher(dispatcher);
+
+      upload(8, 2 * PART_SIZE);
+
+      assertEquals(dispatcher.uploads.get(), PART_COUNT);
+      assertEquals(dispatcher.maxInFlight.get(), 2);
+   }
+
+   public void failedPartAbortsUpload() throws Exception {
+      PartDispatcher dispatcher = new PartDispatcher(3, 1);
+      // Keeps the other parts uploading when part 3 fails.
+      dispatcher.holdMillis = 300;
+      server.setDispatcher(dispatcher);
+
+      try {
+         upload(4, Long.MAX_VALUE);
+         fail("expected the failed part to abort the upload");
+      } catch (HttpResponseException expected) {
+         assertEquals(expected.getResponse().getStatusCode(), 400);
+      }
+      assertTrue(dispatcher.listed.get() > 0, "the upload was not aborted");
+      assertEquals(dispatcher.inFlightWhenListed, 0, "the upload was aborted while parts were still uploading");
+      assertEquals(dispatcher.composed.get(), 0);
+   }
+
+   private void upload(int parallelDegree, long maxBufferedBytes) {
+      Properties overrides = new Properties();
+      overrides.setProperty(MPU_PARALLEL_DEGREE, parallelDegree + "");
+      overrides.setProperty(MPU_MAX_BUFFERED_BYTES, maxBufferedBytes + "");
+      // Every part is answered with the same object, so its checksum is left unchecked.
+      overrides.setProperty(CRC32C_VALIDATION, "false");
+      BlobStoreContext context = builder(overrides).buildView(BlobStoreContext.class);
+      try {
+         BlobStore blobStore = context.getBlobStore();
+         Blob blob = blobStore.blobBuilder("object").payload(new byte[PART_SIZE * PART_COUNT])
+               .contentType("application/octet-stream").build();
+         ParallelMultipartUploadStrategy strategy = context.utils().injector()
+               .getInstance(ParallelMultipartUploadStrategy.class);
+         assertEquals(strategy.execute(blobStore, "bucket", blob, PART_SIZE), "etag");
+      } finally {
+         context.close();
+      }
+   }
+
+   /**
+    * Answers every request, optionally failing one part upload. The first part uploads are held until
+    * {@code concurrency} of them are in flight, so that the peak observed does not depend on timing.
+    */
+   private class PartDispatcher extends Dispatcher {
+      private final int failingPart;
+      private final CountDownLatch gate;
+      private final AtomicInteger inFlight = new AtomicInteger();
+      private final AtomicInteger maxInFlight = new AtomicInteger();
+      private final AtomicInteger uploads = new AtomicInteger();
+      private final AtomicInteger listed = new AtomicInteger();
+      private final AtomicInteger composed = new AtomicInteger();
+      private volatile long holdMillis;
+      private volatile int inFlightWhenListed = -1;
+
+      PartDispatcher(int failingPart, int concurrency) {
+         this.failingPart = failingPart;
+         this.gate = new CountDownLatch(concurrency);
+      }
+
+      @Override
+      public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+         String path = request.getPath();
+         if (path.startsWith("/upload/storage/v1/b/bucket/o")) {
+            int current = inFlight.incrementAndGet();
+            try {
+               int max;
+               while ((max = maxInFlight.get()) < current && !maxInFlight.compareAndSet(max, current)) {
+                  // retry
+               }
+               gate.countDown();
+               gate.await(10, TimeUnit.SECONDS);
+               if (path.contains(String.format("name=object_%08d", failingPart))) {
+                  return new MockResponse().setResponseCode(400);
+               }
+               Thread.sleep(holdMillis);
+               uploads.incrementAndGet();
+               return jsonResponse("/object_get.json");
+            } finally {
+               inFlight.decrementAndGet();
+            }
+         } else if (path.startsWith("/storage/v1/b/bucket/o?")) {
+            if (listed.getAndIncrement() == 0) {
+               inFlightWhenListed = inFlight.get();
+            }
+            return new MockResponse().addHeader("Content-Type", "application/json")
+                  .setBody("{\"kind\": \"storage#objects\"}");
+         } else if (path.endsWith("/compose")) {
+            composed.incrementAndGet();
+         }
+         return jsonResponse("/object_get.json");
+      }
+   }
+}
@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.strategy.internal;
+
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.DOWNLOAD_PARALLEL_DEGREE;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.DOWNLOAD_RANGE_ATTEMPTS;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.DOWNLOAD_RANGE_SIZE;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.EOFException;
+import java.net.URLDecoder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jclouds.blobstore.BlobStoreContext;
+import org.jclouds.concurrent.config.ExecutorServiceModule;
+import org.jclouds.googlecloudstorage.internal.BaseGoogleCloudStorageApiMockTest;
+import org.jclouds.http.HttpResponseException;
+import org.jclouds.http.okhttp.config.OkHttpCommandExecutorServiceModule;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.inject.Module;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+@Test(groups = "unit", testName = "ParallelRangedDownloaderMockTest", singleThreaded = true)
+public class ParallelRangedDownloaderMockTest extends BaseGoogleCloudStorageApiMockTest {
+
+   private static final int RANGE_SIZE = 1024;
+   private static final byte[] CONTENT = new byte[10 * RANGE_SIZE + 17];
+
+   static {
+      new Random(0).nextBytes(CONTENT);
+   }
+
+   @Override
+   protected Set<? extends Module> modules() {
+      return ImmutableSet.of(
+            new ExecutorServiceModule(MoreExecutors.listeningDecorator(Executors.newCachedThreadPool())),
+            new OkHttpCommandExecutorServiceModule());
+   }
+
+   public void writesEveryRangeAtItsOffset() throws Exception {
+      RangeDispatcher dispatcher = new RangeDispatcher(0, 0);
+      server.setDispatcher(dispatcher);
+
+      assertEquals(download(4, 1), CONTENT.length);
+
+      assertEquals(dispatcher.mediaRequests.get(), 11);
+      for (String path : dispatcher.mediaPaths) {
+         assertTrue(path.contains("generation=1000"), path);
+      }
+      assertEquals(URLDecoder.decode(dispatcher.metadataPath, "UTF-8"),
+            "/storage/v1/b/bucket/o/object?projection=noAcl&fields=name,generation,metageneration,size");
+   }
+
+   public void retriesTruncatedRangeFromTheLastByteWritten() throws Exception {
+      RangeDispatcher dispatcher = new RangeDispatcher(RANGE_SIZE, 1);
+      server.setDispatcher(dispatcher);
+
+      assertEquals(download(4, 3), CONTENT.length);
+
+      assertEquals(dispatcher.mediaRequests.get(), 12);
+      assertTrue(dispatcher.ranges.contains("bytes=" + (RANGE_SIZE + RANGE_SIZE / 2) + "-" + (2 * RANGE_SIZE - 1)),
+            dispatcher.ranges.toString());
+   }
+
+   public void failsOnceRangeAttemptsAreUsed() throws Exception {
+      server.setDispatcher(new RangeDispatcher(RANGE_SIZE, Integer.MAX_VALUE));
+      try {
+         download(4, 3);
+         fail("expected the truncated range to fail the download");
+      } catch (RuntimeException expected) {
+         assertTrue(expected.getCause() instanceof EOFException, expected.toString());
+      }
+   }
+
+   public void failedDownloadWaitsForRunningRanges() throws Exception {
+      RangeDispatcher dispatcher = new RangeDispatcher(0, 0);
+      dispatcher.failingRange = 0;
+      // Keeps the other ranges writing when the first one fails.
+      dispatcher.holdMillis = 500;
+      server.setDispatcher(dispatcher);
+
+      try {
+         download(4, 1);
+         fail("expected the failed range to fail the download");
+      } catch (HttpResponseException expected) {
+         assertEquals(expected.getResponse().getStatusCode(), 400);
+      }
+      assertEquals(dispatcher.inFlight.get(), 0, "ranges still running after the download failed");
+   }
+
+   public void rangesDownloadUpToParallelDegreeAtOnce() throws Exception {
+      for (int degree : new int[] { 1, 4 }) {
+         RangeDispatcher dispatcher = new RangeDispatcher(0, 0);
+         dispatcher.gate = new CountDownLatch(degree);
+         server.setDispatcher(dispatcher);
+
+         assertEquals(download(degree, 1), CONTENT.length);
+
+         assertEquals(dispatcher.maxInFlight.get(), degree, "ranges in flight at parallel degree " + degree);
+      }
+   }
+
+   /** Downloads the object into a temporary file, checks its content and returns the reported size. */
+   private long download(int parallelDegree, int rangeAttempts) throws Exception {
+      Properties overrides = new Properties();
+      overrides.setProperty(DOWNLOAD_RANGE_SIZE, RANGE_SIZE + "");
+      overrides.setProperty(DOWNLOAD_PARALLEL_DEGREE, parallelDegree + "");
+      overrides.setProperty(DOWNLOAD_RANGE_ATTEMPTS, rangeAttempts + "");
+      Path file = Files.createTempFile("download", null);
+      BlobStoreContext context = builder(overrides).buildView(BlobStoreContext.class);
+      try {
+         long size;
+         FileChannel target = FileChannel.open(file, WRITE);
+         try {
+            ParallelRangedDownloader downloader = context.utils().injector()
+                  .getInstance(ParallelRangedDownloader.class);
+            size = downloader.download("bucket", "object", target);
+         } finally {
+            target.close();
+         }
+         assertTrue(Arrays.equals(Files.readAllBytes(file), CONTENT));
+         return size;
+      } finally {
+         context.close();
+         Files.delete(file);
+      }
+   }
+
+   /**
+    * Serves the object's metadata and byte ranges of {@link #CONTENT}. The range starting at {@code truncatedRange} is
+    * cut short, after half its bytes, for its first {@code truncations} requests. The first range requests are held
+    * until the {@code gate} opens, so that the peak number in flight does not depend on timing.
+    */
+   private static class RangeDispatcher extends Dispatcher {
+      private final long truncatedRange;
+      private final AtomicInteger truncations;
+      private final AtomicInteger mediaRequests = new AtomicInteger();
+      private final ConcurrentLinkedQueue<String> mediaPaths = new ConcurrentLinkedQueue<String>();
+      private final ConcurrentLinkedQueue<String> ranges = new ConcurrentLinkedQueue<String>();
+      private final AtomicInteger inFlight = new AtomicInteger();
+      private final AtomicInteger maxInFlight = new AtomicInteger();
+      private volatile CountDownLatch gate = new CountDownLatch(0);
+      private volatile long failingRange = -1;
+      private volatile long holdMillis;
+      private volatile String metadataPath;
+
+      RangeDispatcher(long truncatedRange, int truncations) {
+         this.truncatedRange = truncatedRange;
+         this.truncations = new AtomicInteger(truncations);
+      }
+
+      @Override
+      public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+         if (!request.getPath().contains("alt=media")) {
+            metadataPath = request.getPath();
+            return new MockResponse().addHeader("Content-Type", "application/json").setBody("{\"kind\": "
+                  + "\"storage#object\", \"id\": \"bucket/object/1000\", "
+                  + "\"selfLink\": \"https://www.googleapis.com/storage/v1/b/bucket/o/object\", "
+                  + "\"name\": \"object\", \"bucket\": \"bucket\", \"generation\": \"1000\", "
+                  + "\"metageneration\": \"1\", \"contentType\": \"application/octet-stream\", "
+                  + "\"updated\": \"2014-09-27T00:01:44.819\", \"storageClass\": \"STANDARD\", "
+                  + "\"size\": \"" + CONTENT.length + "\", "
+                  + "\"mediaLink\": \"https://www.googleapis.com/download/storage/v1/b/bucket/o/object?alt=media\", "
+                  + "\"etag\": \"etag\"}");
+         }
+         mediaRequests.incrementAndGet();
+         mediaPaths.add(request.getPath());
+         int current = inFlight.incrementAndGet();
+         try {
+            int max;
+            while ((max = maxInFlight.get()) < current && !maxInFlight.compareAndSet(max, current)) {
+               // retry
+            }
+            gate.countDown();
+            gate.await(10, TimeUnit.SECONDS);
+            return range(request);
+         } finally {
+            inFlight.decrementAndGet();
+         }
+      }
+
+      private MockResponse range(RecordedRequest request) throws InterruptedException {
+         String range = request.getHeader("Range");
+         ranges.add(range);
+         String[] bounds = range.substring("bytes=".length()).split("-");
+         int first = Integer.parseInt(bounds[0]);
+         int last = Integer.parseInt(bounds[1]);
+         if (first == failingRange) {
+            return new MockResponse().setResponseCode(400);
+         }
+         Thread.sleep(holdMillis);
+         int end = last + 1;
+         if (first == truncatedRange && truncations.getAndDecrement() > 0) {
+            end = first + (end - first) / 2;
+         }
+         return new MockResponse().setResponseCode(206)
+               .addHeader("Content-Type", "application/octet-stream")
+               .addHeader("Content-Range", "bytes " + first + "-" + last + "/" + CONTENT.length)
+               .setBody(Arrays.copyOfRange(CONTENT, first, end));
+      }
+   }
+}
@@ -0,0 +1,256 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.strategy.internal;
+
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.LIST_PARALLELISM;
+import static org.testng.Assert.assertEquals;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.jclouds.blobstore.BlobStoreContext;
+import org.jclouds.concurrent.config.ExecutorServiceModule;
+import org.jclouds.googlecloudstorage.domain.GoogleCloudStorageObject;
+import org.jclouds.googlecloudstorage.internal.BaseGoogleCloudStorageApiMockTest;
+import org.jclouds.googlecloudstorage.options.ListObjectOptions;
+import org.jclouds.http.okhttp.config.OkHttpCommandExecutorServiceModule;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.inject.Module;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+@Test(groups = "unit", testName = "PartitionedObjectListerMockTest", singleThreaded = true)
+public class PartitionedObjectListerMockTest extends BaseGoogleCloudStorageApiMockTest {
+
+   private static final int DIRECTORIES = 4;
+   private static final int PAGES_PER_DIRECTORY = 5;
+   private static final Pattern START_OFFSET = Pattern.compile("[?&]startOffset=([^&]*)");
+
+   @Override
+   protected Set<? extends Module> modules() {
+      return ImmutableSet.of(
+            new ExecutorServiceModule(MoreExecutors.listeningDecorator(Executors.newCachedThreadPool())),
+            new OkHttpCommandExecutorServiceModule());
+   }
+
+   public void sampledRangesKeepNameOrder() throws Exception {
+      server.setDispatcher(new DirectoryDispatcher());
+      assertEquals(list(4), expectedNames());
+   }
+
+   public void suppliedSplitPointsKeepNameOrder() throws Exception {
+      server.setDispatcher(new DirectoryDispatcher());
+      BlobStoreContext context = builder(parallelism(2)).buildView(BlobStoreContext.class);
+      try {
+         Iterable<GoogleCloudStorageObject> objects = lister(context).objects("bucket", new ListObjectOptions(),
+               ImmutableList.of("d2/", "d1/", "d3/"));
+         assertEquals(names(objects), expectedNames());
+      } finally {
+         context.close();
+      }
+      // No sampling request when split points are supplied.
+      assertEquals(server.getRequestCount(), DIRECTORIES * PAGES_PER_DIRECTORY);
+   }
+
+   public void splitPointsFollowCodePointOrder() throws Exception {
+      final List<String> startOffsets = Collections.synchronizedList(Lists.<String> newArrayList());
+      server.setDispatcher(new Dispatcher() {
+         @Override
+         public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+            try {
+               Matcher startOffset = START_OFFSET.matcher(URLDecoder.decode(request.getPath(), "UTF-8"));
+               startOffsets.add(startOffset.find() ? startOffset.group(1) : null);
+            } catch (UnsupportedEncodingException e) {
+               throw new AssertionError(e);
+            }
+            return new MockResponse().addHeader("Content-Type", "application/json")
+                  .setBody("{\"kind\": \"storage#objects\"}");
+         }
+      });
+      BlobStoreContext context = builder(parallelism(1)).buildView(BlobStoreContext.class);
+      try {
+         // In UTF-16 order the surrogate pair of U+1F600 would sort before U+FFFD.
+         Iterables.size(lister(context).objects("bucket", new ListObjectOptions(),
+               ImmutableList.of("\uD83D\uDE00", "\uFFFD")));
+      } finally {
+         context.close();
+      }
+      assertEquals(startOffsets, Arrays.asList(null, "\uFFFD", "\uD83D\uDE00"));
+   }
+
+   public void rangesListConcurrentlyUpToParallelism() throws Exception {
+      for (int parallelism : new int[] { 2, DIRECTORIES }) {
+         DirectoryDispatcher dispatcher = new DirectoryDispatcher(parallelism);
+         server.setDispatcher(dispatcher);
+         BlobStoreContext context = builder(parallelism(parallelism)).buildView(BlobStoreContext.class);
+         try {
+            Iterable<GoogleCloudStorageObject> objects = lister(context).objects("bucket", new ListObjectOptions(),
+                  ImmutableList.of("d1/", "d2/", "d3/"));
+            assertEquals(names(objects), expectedNames());
+         } finally {
+            context.close();
+         }
+         assertEquals(dispatcher.maxInFlight.get(), parallelism, "range listings in flight at parallelism "
+               + parallelism);
+      }
+   }
+
+   private List<String> list(int parallelism) throws Exception {
+      BlobStoreContext context = builder(parallelism(parallelism)).buildView(BlobStoreContext.class);
+      try {
+         return names(lister(context).objects("bucket", new ListObjectOptions()));
+      } finally {
+         context.close();
+      }
+   }
+
+   private static List<String> names(Iterable<GoogleCloudStorageObject> objects) {
+      ImmutableList.Builder<String> names = ImmutableList.builder();
+      for (GoogleCloudStorageObject object : objects) {
+         names.add(object.name());
+      }
+      return names.build();
+   }
+
+   private static List<String> expectedNames() {
+      ImmutableList.Builder<String> names = ImmutableList.builder();
+      for (int directory = 0; directory < DIRECTORIES; directory++) {
+         for (int page = 0; page < PAGES_PER_DIRECTORY; page++) {
+            names.add("d" + directory + "/" + page);
+         }
+      }
+      return names.build();
+   }
+
+   private static Properties parallelism(int parallelism) {
+      Properties overrides = new Properties();
+      overrides.setProperty(LIST_PARALLELISM, parallelism + "");
+      return overrides;
+   }
+
+   private static PartitionedObjectLister lister(BlobStoreContext context) {
+      return context.utils().injector().getInstance(PartitionedObjectLister.class);
+   }
+
+   /**
+    * Serves directories {@code d0/} to {@code d3/}, each holding one object per page. Page tokens are
+    * {@code <directory>:<page>} and continue into the next directory unless the request has an end offset. The first
+    * page requests are held until {@code concurrency} requests are in flight, so that the peak observed does not
+    * depend on timing.
+    */
+   private class DirectoryDispatcher extends Dispatcher {
+      private final CountDownLatch gate;
+      private final AtomicInteger inFlight = new AtomicInteger();
+      private final AtomicInteger maxInFlight = new AtomicInteger();
+
+      DirectoryDispatcher() {
+         this(1);
+      }
+
+      DirectoryDispatcher(int concurrency) {
+         this.gate = new CountDownLatch(concurrency);
+      }
+
+      @Override
+      public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+         int current = inFlight.incrementAndGet();
+         try {
+            int max;
+            while ((max = maxInFlight.get()) < current && !maxInFlight.compareAndSet(max, current)) {
+               // retry
+            }
+            gate.countDown();
+            gate.await(10, TimeUnit.SECONDS);
+            return page(request.getPath());
+         } finally {
+            inFlight.decrementAndGet();
+         }
+      }
+
+      private MockResponse page(String path) {
+         if (parameter(path, "delimiter") != null) {
+            return json("{\"kind\": \"storage#objects\", \"prefixes\": [\"d0/\", \"d1/\", \"d2/\", \"d3/\"]}");
+         }
+         String pageToken = parameter(path, "pageToken");
+         String startOffset = parameter(path, "startOffset");
+         int directory;
+         int page;
+         if (pageToken != null) {
+            directory = Integer.parseInt(pageToken.substring(0, pageToken.indexOf(':')));
+            page = Integer.parseInt(pageToken.substring(pageToken.indexOf(':') + 1));
+         } else {
+            directory = startOffset == null ? 0 : Integer.parseInt(startOffset.substring(1, 2));
+            page = 0;
+         }
+         String nextPageToken = null;
+         if (page + 1 < PAGES_PER_DIRECTORY) {
+            nextPageToken = directory + ":" + (page + 1);
+         } else if (parameter(path, "endOffset") == null && directory + 1 < DIRECTORIES) {
+            nextPageToken = (directory + 1) + ":0";
+         }
+         String name = "d" + directory + "/" + page;
+         return json("{\"kind\": \"storage#objects\", "
+               + (nextPageToken == null ? "" : "\"nextPageToken\": \"" + nextPageToken + "\", ")
+               + "\"items\": [{\"kind\": \"storage#object\", \"id\": \"bucket/" + name + "/1000\", "
+               + "\"selfLink\": \"https://www.googleapis.com/storage/v1/b/bucket/o/" + name + "\", "
+               + "\"name\": \"" + name + "\", \"bucket\": \"bucket\", \"generation\": \"1000\", "
+               + "\"metageneration\": \"1\", \"contentType\": \"text/plain\", "
+               + "\"updated\": \"2014-09-27T00:01:44.819\", \"storageClass\": \"STANDARD\", \"size\": \"10\", "
+               + "\"mediaLink\": \"https://www.googleapis.com/download/storage/v1/b/bucket/o/" + name + "?alt=media\", "
+               + "\"etag\": \"etag\"}]}");
+      }
+
+      private MockResponse json(String body) {
+         return new MockResponse().addHeader("Content-Type", "application/json").setBody(body);
+      }
+
+      private String parameter(String path, String name) {
+         int query = path.indexOf('?');
+         if (query == -1) {
+            return null;
+         }
+         for (String pair : path.substring(query + 1).split("&")) {
+            if (pair.startsWith(name + "=")) {
+               try {
+                  return URLDecoder.decode(pair.substring(name.length() + 1), "UTF-8");
+               } catch (UnsupportedEncodingException e) {
+                  throw new AssertionError(e);
+               }
+            }
+         }
+         return null;
+      }
+   }
+}
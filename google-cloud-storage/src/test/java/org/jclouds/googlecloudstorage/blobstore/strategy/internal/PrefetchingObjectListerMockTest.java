@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.strategy.internal;
+
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.LIST_PREFETCH_DEPTH;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jclouds.blobstore.BlobStoreContext;
+import org.jclouds.concurrent.config.ExecutorServiceModule;
+import org.jclouds.googlecloudstorage.domain.GoogleCloudStorageObject;
+import org.jclouds.googlecloudstorage.domain.ListPageWithPrefixes;
+import org.jclouds.googlecloudstorage.internal.BaseGoogleCloudStorageApiMockTest;
+import org.jclouds.googlecloudstorage.options.ListObjectOptions;
+import org.jclouds.http.okhttp.config.OkHttpCommandExecutorServiceModule;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.inject.Module;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+@Test(groups = "unit", testName = "PrefetchingObjectListerMockTest", singleThreaded = true)
+public class PrefetchingObjectListerMockTest extends BaseGoogleCloudStorageApiMockTest {
+
+   private static final int PAGES = 10;
+   private static final long LATENCY_MILLIS = 50;
+
+   @Override
+   protected Set<? extends Module> modules() {
+      return ImmutableSet.of(
+            new ExecutorServiceModule(MoreExecutors.listeningDecorator(Executors.newCachedThreadPool())),
+            new OkHttpCommandExecutorServiceModule());
+   }
+
+   public void listsEveryPageWithTheOriginalOptions() throws Exception {
+      PageDispatcher dispatcher = new PageDispatcher();
+      server.setDispatcher(dispatcher);
+
+      BlobStoreContext context = builder().buildView(BlobStoreContext.class);
+      try {
+         PrefetchingObjectLister lister = lister(context);
+         Iterable<GoogleCloudStorageObject> objects = lister.objects("bucket", new ListObjectOptions().prefix("p"));
+         assertEquals(Iterables.size(objects), PAGES);
+      } finally {
+         context.close();
+      }
+
+      assertEquals(dispatcher.requests.get(), PAGES);
+      assertSent(server, "GET", "/storage/v1/b/bucket/o?prefix=p");
+      for (int page = 1; page < PAGES; page++) {
+         assertSent(server, "GET", "/storage/v1/b/bucket/o?prefix=p&pageToken=" + page);
+      }
+   }
+
+   public void abandonedIterationStopsAtPrefetchDepth() throws Exception {
+      PageDispatcher dispatcher = new PageDispatcher();
+      server.setDispatcher(dispatcher);
+
+      BlobStoreContext context = builder(depth(2)).buildView(BlobStoreContext.class);
+      try {
+         Iterator<ListPageWithPrefixes<GoogleCloudStorageObject>> pages = lister(context)
+               .pages("bucket", new ListObjectOptions()).iterator();
+         pages.next();
+         assertTrue(dispatcher.requested[2].await(10, TimeUnit.SECONDS), "page 2 was not prefetched");
+         // Page 3 could only be requested once page 2 is answered, which the dispatcher does after LATENCY_MILLIS.
+         assertFalse(dispatcher.requested[3].await(PAGES * LATENCY_MILLIS, TimeUnit.MILLISECONDS),
+               "page 3 was requested beyond the prefetch depth");
+      } finally {
+         context.close();
+      }
+
+      assertEquals(dispatcher.requests.get(), 3);
+   }
+
+   public void requestsNextPageBeforeCurrentIsConsumed() throws Exception {
+      PageDispatcher dispatcher = new PageDispatcher();
+      server.setDispatcher(dispatcher);
+
+      BlobStoreContext context = builder(depth(1)).buildView(BlobStoreContext.class);
+      int page = 0;
+      try {
+         for (ListPageWithPrefixes<GoogleCloudStorageObject> objects : lister(context).pages("bucket",
+               new ListObjectOptions())) {
+            assertEquals(Iterables.getOnlyElement(objects).name(), "object" + page);
+            // Page N is still being consumed, so page N + 1 can only have been requested ahead of it.
+            if (page + 1 < PAGES) {
+               assertTrue(dispatcher.requested[page + 1].await(10, TimeUnit.SECONDS),
+                     "page " + (page + 1) + " was not requested while page " + page + " was consumed");
+            }
+            page++;
+         }
+      } finally {
+         context.close();
+      }
+      assertEquals(page, PAGES);
+   }
+
+   private static Properties depth(int prefetchDepth) {
+      Properties overrides = new Properties();
+      overrides.setProperty(LIST_PREFETCH_DEPTH, prefetchDepth + "");
+      return overrides;
+   }
+
+   private static PrefetchingObjectLister lister(BlobStoreContext context) {
+      return context.utils().injector().getInstance(PrefetchingObjectLister.class);
+   }
+
+   /** Serves {@value #PAGES} pages of one object each, numbering the page tokens. */
+   private class PageDispatcher extends Dispatcher {
+      private final AtomicInteger requests = new AtomicInteger();
+      private final CountDownLatch[] requested = new CountDownLatch[PAGES];
+
+      PageDispatcher() {
+         for (int page = 0; page < PAGES; page++) {
+            requested[page] = new CountDownLatch(1);
+         }
+      }
+
+      @Override
+      public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+         requests.incrementAndGet();
+         String path = request.getPath();
+         int tokenIndex = path.indexOf("pageToken=");
+         int page = tokenIndex == -1 ? 0 : Integer.parseInt(path.substring(tokenIndex + "pageToken=".length()));
+         requested[page].countDown();
+         Thread.sleep(LATENCY_MILLIS);
+         String nextPageToken = page + 1 < PAGES ? "\"nextPageToken\": \"" + (page + 1) + "\", " : "";
+         String name = "object" + page;
+         return new MockResponse().addHeader("Content-Type", "application/json").setBody("{\"kind\": \"storage#objects\", "
+               + nextPageToken + "\"items\": [{\"kind\": \"storage#object\", \"id\": \"bucket/" + name + "/1000\", "
+               + "\"selfLink\": \"https://www.googleapis.com/storage/v1/b/bucket/o/" + name + "\", "
+               + "\"name\": \"" + name + "\", \"bucket\": \"bucket\", \"generation\": \"1000\", "
+               + "\"metageneration\": \"1\", \"contentType\": \"text/plain\", "
+               + "\"updated\": \"2014-09-27T00:01:44.819\", \"storageClass\": \"STANDARD\", \"size\": \"10\", "
+               + "\"mediaLink\": \"https://www.googleapis.com/download/storage/v1/b/bucket/o/" + name + "?alt=media\", "
+               + "\"etag\": \"etag\"}]}");
+      }
+   }
+}
@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.strategy.internal;
+
+import static org.jclouds.Constants.PROPERTY_MAX_RETRIES;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.RESUMABLE_CHUNK_SIZE;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executors;
+
+import org.jclouds.blobstore.BlobStoreContext;
+import org.jclouds.concurrent.config.ExecutorServiceModule;
+import org.jclouds.googlecloudstorage.domain.ResumableUpload;
+import org.jclouds.googlecloudstorage.domain.templates.ObjectTemplate;
+import org.jclouds.googlecloudstorage.internal.BaseGoogleCloudStorageApiMockTest;
+import org.jclouds.http.HttpResponseException;
+import org.jclouds.http.okhttp.config.OkHttpCommandExecutorServiceModule;
+import org.jclouds.io.Payload;
+import org.jclouds.io.Payloads;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.inject.Module;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+@Test(groups = "unit", testName = "ResumableUploaderMockTest", singleThreaded = true)
+public class ResumableUploaderMockTest extends BaseGoogleCloudStorageApiMockTest {
+
+   private static final int CHUNK_SIZE = 2 * ResumableUploader.CHUNK_GRANULARITY;
+   private static final byte[] CONTENT = new byte[2 * CHUNK_SIZE + 1000];
+
+   static {
+      new Random(0).nextBytes(CONTENT);
+   }
+
+   @Override
+   protected Set<? extends Module> modules() {
+      return ImmutableSet.of(
+            new ExecutorServiceModule(MoreExecutors.listeningDecorator(Executors.newCachedThreadPool())),
+            new OkHttpCommandExecutorServiceModule());
+   }
+
+   public void uploadsInAlignedChunks() throws Exception {
+      SessionDispatcher session = new SessionDispatcher(CONTENT.length, -1, 0, 0);
+      server.setDispatcher(session);
+
+      assertEquals(upload(CONTENT).statusCode(), 200);
+
+      assertTrue(Arrays.equals(session.stored, CONTENT));
+      assertEquals(session.contentRanges, ImmutableList.of(
+            "bytes 0-524287/" + CONTENT.length,
+            "bytes 524288-1048575/" + CONTENT.length,
+            "bytes 1048576-1049575/" + CONTENT.length));
+   }
+
+   public void resumesFromCommittedOffsetAfterServerError() throws Exception {
+      SessionDispatcher session = new SessionDispatcher(CONTENT.length, CHUNK_SIZE, 1,
+            ResumableUploader.CHUNK_GRANULARITY);
+      server.setDispatcher(session);
+
+      assertEquals(upload(CONTENT).statusCode(), 200);
+
+      assertTrue(Arrays.equals(session.stored, CONTENT));
+      // Half of the failed chunk was committed, so only its second half is sent again.
+      assertEquals(session.contentRanges, ImmutableList.of(
+            "bytes 0-524287/" + CONTENT.length,
+            "bytes 524288-1048575/" + CONTENT.length,
+            "bytes */" + CONTENT.length,
+            "bytes 786432-1048575/" + CONTENT.length,
+            "bytes 1048576-1049575/" + CONTENT.length));
+   }
+
+   @Test(expectedExceptions = HttpResponseException.class)
+   public void failsOnceAttemptsAreUsed() throws Exception {
+      server.setDispatcher(new SessionDispatcher(CONTENT.length, CHUNK_SIZE, Integer.MAX_VALUE, 0));
+      upload(CONTENT);
+   }
+
+   public void uploadsEmptyPayload() throws Exception {
+      SessionDispatcher session = new SessionDispatcher(0, -1, 0, 0);
+      server.setDispatcher(session);
+
+      assertEquals(upload(new byte[0]).statusCode(), 200);
+
+      assertEquals(session.contentRanges, ImmutableList.of("bytes */0"));
+   }
+
+   public void streamsPayloadOfUnknownLength() throws Exception {
+      SessionDispatcher session = new SessionDispatcher(CONTENT.length, -1, 0, 0);
+      server.setDispatcher(session);
+
+      assertEquals(upload(Payloads.newInputStreamPayload(new ByteArrayInputStream(CONTENT))).statusCode(), 200);
+
+      assertTrue(Arrays.equals(session.stored, CONTENT));
+      assertEquals(session.contentRanges, ImmutableList.of(
+            "bytes 0-524287/*",
+            "bytes 524288-1048575/*",
+            "bytes 1048576-1049575/" + CONTENT.length));
+      assertEquals(session.initRequest.getHeader("X-Upload-Content-Length"), null);
+   }
+
+   public void finishesUnknownLengthEndingOnChunkBoundary() throws Exception {
+      byte[] content = Arrays.copyOf(CONTENT, 2 * CHUNK_SIZE);
+      SessionDispatcher session = new SessionDispatcher(content.length, -1, 0, 0);
+      server.setDispatcher(session);
+
+      assertEquals(upload(Payloads.newInputStreamPayload(new ByteArrayInputStream(content))).statusCode(), 200);
+
+      assertTrue(Arrays.equals(session.stored, content));
+      assertEquals(session.contentRanges, ImmutableList.of(
+            "bytes 0-524287/*",
+            "bytes 524288-1048575/*",
+            "bytes */" + content.length));
+   }
+
+   public void resumesPayloadOfUnknownLength() throws Exception {
+      SessionDispatcher session = new SessionDispatcher(CONTENT.length, 0, 1, ResumableUploader.CHUNK_GRANULARITY);
+      server.setDispatcher(session);
+
+      assertEquals(upload(Payloads.newInputStreamPayload(new ByteArrayInputStream(CONTENT))).statusCode(), 200);
+
+      assertTrue(Arrays.equals(session.stored, CONTENT));
+      assertEquals(session.contentRanges.subList(0, 3), ImmutableList.of(
+            "bytes 0-524287/*",
+            "bytes */*",
+            "bytes 262144-524287/*"));
+   }
+
+   private ResumableUpload upload(byte[] content) throws Exception {
+      return upload(Payloads.newByteArrayPayload(content));
+   }
+
+   private ResumableUpload upload(Payload payload) throws Exception {
+      Properties overrides = new Properties();
+      overrides.setProperty(RESUMABLE_CHUNK_SIZE, CHUNK_SIZE + "");
+      // Surface server errors to the uploader instead of retrying them in the HTTP layer.
+      overrides.setProperty(PROPERTY_MAX_RETRIES, "0");
+      BlobStoreContext context = builder(overrides).buildView(BlobStoreContext.class);
+      try {
+         payload.getContentMetadata().setContentType("application/octet-stream");
+         return context.utils().injector().getInstance(ResumableUploader.class)
+               .upload("bucket", new ObjectTemplate().name("object"), payload);
+      } finally {
+         context.close();
+      }
+   }
+
+   /**
+    * Keeps the bytes of one upload session, which completes once all bytes of a known total have arrived. For its first
+    * {@code failures} requests, the chunk starting at {@code failingOffset} commits only {@code kept} bytes and answers
+    * 503.
+    */
+   private class SessionDispatcher extends Dispatcher {
+      private final byte[] stored;
+      private final long failingOffset;
+      private final int kept;
+      private int failures;
+      private int committed;
+      private boolean totalKnown;
+      private RecordedRequest initRequest;
+      private final List<String> contentRanges = Lists.newArrayList();
+
+      SessionDispatcher(int length, long failingOffset, int failures, int kept) {
+         this.stored = new byte[length];
+         this.failingOffset = failingOffset;
+         this.failures = failures;
+         this.kept = kept;
+      }
+
+      @Override
+      public synchronized MockResponse dispatch(RecordedRequest request) {
+         if (request.getMethod().equals("POST")) {
+            initRequest = request;
+            return new MockResponse().addHeader("Location",
+                  url("/upload/storage/v1/b/bucket/o?uploadType=resumable&upload_id=session"));
+         }
+         String contentRange = request.getHeader("Content-Range");
+         contentRanges.add(contentRange);
+         totalKnown |= !contentRange.endsWith("/*");
+         if (!contentRange.startsWith("bytes */")) {
+            String[] bounds = contentRange.substring("bytes ".length(), contentRange.indexOf('/')).split("-");
+            int first = Integer.parseInt(bounds[0]);
+            byte[] body = request.getBody();
+            if (first > committed || Integer.parseInt(bounds[1]) - first + 1 != body.length) {
+               return new MockResponse().setResponseCode(400);
+            }
+            if (first == failingOffset && failures-- > 0) {
+               System.arraycopy(body, 0, stored, first, kept);
+               committed = Math.max(committed, first + kept);
+               return new MockResponse().setResponseCode(503);
+            }
+            System.arraycopy(body, 0, stored, first, body.length);
+            committed = Math.max(committed, first + body.length);
+         }
+         if (totalKnown && committed == stored.length) {
+            return new MockResponse().setResponseCode(200);
+         }
+         MockResponse incomplete = new MockResponse().setResponseCode(308);
+         return committed == 0 ? incomplete : incomplete.addHeader("Range", "bytes=0-" + (committed - 1));
+      }
+   }
+}
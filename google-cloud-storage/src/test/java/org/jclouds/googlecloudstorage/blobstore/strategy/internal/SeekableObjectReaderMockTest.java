@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.blobstore.strategy.internal;
+
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.READ_AHEAD_MAX_BYTES;
+import static org.jclouds.googlecloudstorage.reference.GoogleCloudStorageConstants.READ_AHEAD_MIN_BYTES;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import org.jclouds.blobstore.BlobStoreContext;
+import org.jclouds.blobstore.KeyNotFoundException;
+import org.jclouds.googlecloudstorage.internal.BaseGoogleCloudStorageApiMockTest;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+@Test(groups = "unit", testName = "SeekableObjectReaderMockTest", singleThreaded = true)
+public class SeekableObjectReaderMockTest extends BaseGoogleCloudStorageApiMockTest {
+
+   /** The size object_get.json gives. */
+   private static final byte[] CONTENT = new byte[1000];
+
+   static {
+      new Random(0).nextBytes(CONTENT);
+   }
+
+   private RangeDispatcher dispatcher;
+   private BlobStoreContext context;
+
+   @BeforeMethod
+   public void createContext() {
+      dispatcher = new RangeDispatcher();
+      server.setDispatcher(dispatcher);
+      Properties overrides = new Properties();
+      overrides.setProperty(READ_AHEAD_MIN_BYTES, "64");
+      overrides.setProperty(READ_AHEAD_MAX_BYTES, "256");
+      context = builder(overrides).buildView(BlobStoreContext.class);
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void closeContext() {
+      context.close();
+   }
+
+   public void sequentialReadsGrowReadAhead() throws Exception {
+      SeekableByteChannel channel = open();
+      try {
+         assertEquals(channel.size(), CONTENT.length);
+         ByteArrayOutputStream read = new ByteArrayOutputStream();
+         ByteBuffer buffer = ByteBuffer.allocate(50);
+         while (channel.read(buffer) != -1) {
+            read.write(buffer.array(), 0, buffer.position());
+            buffer.clear();
+         }
+         assertTrue(Arrays.equals(read.toByteArray(), CONTENT));
+      } finally {
+         channel.close();
+      }
+      assertEquals(dispatcher.ranges, ImmutableList.of("bytes=0-63", "bytes=64-191", "bytes=192-447",
+            "bytes=448-703", "bytes=704-959", "bytes=960-999"));
+      assertEquals(dispatcher.mediaPaths.get(0), "/storage/v1/b/test/o/file_name?alt=media&generation=1000");
+   }
+
+   public void shortForwardSeekReusesStream() throws Exception {
+      SeekableByteChannel channel = open();
+      try {
+         assertRead(channel, 0, 10);
+         assertRead(channel, 40, 10);
+         assertRead(channel, 63, 1);
+      } finally {
+         channel.close();
+      }
+      assertEquals(dispatcher.ranges, ImmutableList.of("bytes=0-63"));
+   }
+
+   public void randomAccessShrinksReadAhead() throws Exception {
+      SeekableByteChannel channel = open();
+      try {
+         assertRead(channel, 0, 64);
+         assertRead(channel, 64, 128);
+         assertRead(channel, 500, 10);
+         assertRead(channel, 20, 10);
+      } finally {
+         channel.close();
+      }
+      assertEquals(dispatcher.ranges, ImmutableList.of("bytes=0-63", "bytes=64-191", "bytes=500-563",
+            "bytes=20-83"));
+   }
+
+   public void readAtEndReturnsEndOfStream() throws Exception {
+      SeekableByteChannel channel = open();
+      try {
+         channel.position(CONTENT.length);
+         assertEquals(channel.read(ByteBuffer.allocate(1)), -1);
+      } finally {
+         channel.close();
+      }
+      assertEquals(dispatcher.ranges.size(), 0);
+   }
+
+   @Test(expectedExceptions = KeyNotFoundException.class)
+   public void missingObject() throws Exception {
+      server.setDispatcher(new Dispatcher() {
+         @Override
+         public MockResponse dispatch(RecordedRequest request) {
+            return response404();
+         }
+      });
+      open();
+   }
+
+   private SeekableByteChannel open() {
+      return context.utils().injector().getInstance(SeekableObjectReader.class).open("test", "file_name");
+   }
+
+   /** Reads {@code count} bytes at {@code position}, in as many reads as the channel needs. */
+   private static void assertRead(SeekableByteChannel channel, int position, int count) throws Exception {
+      channel.position(position);
+      ByteBuffer buffer = ByteBuffer.allocate(count);
+      while (buffer.hasRemaining()) {
+         assertTrue(channel.read(buffer) > 0);
+      }
+      assertTrue(Arrays.equals(buffer.array(), Arrays.copyOfRange(CONTENT, position, position + count)));
+      assertEquals(channel.position(), position + count);
+   }
+
+   /** Serves the object's metadata and byte ranges of {@link #CONTENT}, recording the ranges asked for. */
+   private class RangeDispatcher extends Dispatcher {
+      private final List<String> ranges = Lists.newArrayList();
+      private final List<String> mediaPaths = Lists.newArrayList();
+
+      @Override
+      public synchronized MockResponse dispatch(RecordedRequest request) {
+         if (!request.getPath().contains("alt=media")) {
+            return jsonResponse("/object_get.json");
+         }
+         mediaPaths.add(request.getPath());
+         String range = request.getHeader("Range");
+         ranges.add(range);
+         String[] bounds = range.substring("bytes=".length()).split("-");
+         int first = Integer.parseInt(bounds[0]);
+         int last = Integer.parseInt(bounds[1]);
+         return new MockResponse().setResponseCode(206)
+               .addHeader("Content-Type", "application/octet-stream")
+               .addHeader("Content-Range", "bytes " + first + "-" + last + "/" + CONTENT.length)
+               .setBody(Arrays.copyOfRange(CONTENT, first, last + 1));
+      }
+   }
+}
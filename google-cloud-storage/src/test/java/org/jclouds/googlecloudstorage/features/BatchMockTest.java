@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.features;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+
+import org.jclouds.googlecloudstorage.binders.BindRequestsToMultipartMixed;
+import org.jclouds.googlecloudstorage.config.GoogleCloudStorageOAuthScopes;
+import org.jclouds.googlecloudstorage.domain.BatchResult;
+import org.jclouds.googlecloudstorage.internal.BaseGoogleCloudStorageApiMockTest;
+import org.jclouds.googlecloudstorage.parse.ParseGoogleCloudStorageObject;
+import org.jclouds.http.HttpRequest;
+import org.jclouds.rest.AuthorizationException;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+@Test(groups = "unit", testName = "BatchMockTest", singleThreaded = true)
+public class BatchMockTest extends BaseGoogleCloudStorageApiMockTest {
+
+   private static final String NO_CONTENT = "HTTP/1.1 204 No Content\r\nContent-Length: 0\r\n\r\n";
+   private static final String NOT_FOUND = "HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\n\r\n";
+
+   public void executesQueuedCallsInOneRequest() throws Exception {
+      // Parts may arrive in any order; the Content-ID says which request each answers.
+      server.enqueue(batchResponse(
+            part(2, NOT_FOUND),
+            part(1, "HTTP/1.1 200 OK\r\nContent-Type: application/json; charset=UTF-8\r\n\r\n"
+                  + stringFromResource("/object_get.json")),
+            part(3, NO_CONTENT),
+            part(4, "HTTP/1.1 403 Forbidden\r\nContent-Type: text/plain\r\n\r\nForbidden")));
+
+      Batch batch = batch();
+      assertEquals(batch.queue().getObjectApi().getObject("test", "file_name"), null);
+      batch.queue().getObjectApi().deleteObject("test", "gone");
+      batch.queue().getObjectApi().deleteObject("test", "file_name");
+      batch.queue().getBucketApi().getBucket("denied");
+      assertEquals(batch.size(), 4);
+
+      List<BatchResult> results = batch.execute();
+
+      assertEquals(batch.size(), 0);
+      assertEquals(results.size(), 4);
+      assertEquals(results.get(0).value(), new ParseGoogleCloudStorageObject().expected());
+      // The 404 of a delete goes to its fallback, as it would outside a batch.
+      assertEquals(results.get(1), BatchResult.success(404, false));
+      assertEquals(results.get(2), BatchResult.success(204, true));
+      assertFalse(results.get(3).isSuccess());
+      assertEquals(results.get(3).statusCode(), 403);
+      assertTrue(results.get(3).error() instanceof AuthorizationException);
+
+      RecordedRequest request = assertSent(server, "POST", "/batch/storage/v1", null);
+      assertTrue(request.getHeader("Content-Type").startsWith("multipart/mixed; boundary="));
+      String body = new String(request.getBody(), UTF_8);
+      assertTrue(body.contains("Content-ID: <1>\r\n\r\nGET /storage/v1/b/test/o/file_name HTTP/1.1\r\n"), body);
+      assertTrue(body.contains("Content-ID: <2>\r\n\r\nDELETE /storage/v1/b/test/o/gone HTTP/1.1\r\n"), body);
+      assertTrue(body.contains("Content-ID: <3>\r\n\r\nDELETE /storage/v1/b/test/o/file_name HTTP/1.1\r\n"), body);
+      assertTrue(body.contains("Content-ID: <4>\r\n\r\nGET /storage/v1/b/denied HTTP/1.1\r\n"), body);
+   }
+
+   public void batchNeedsTheWidestScopesOfItsParts() {
+      GoogleCloudStorageOAuthScopes scopes = GoogleCloudStorageOAuthScopes.create();
+      HttpRequest get = request("GET", "/storage/v1/b/test/o/file_name");
+      HttpRequest delete = request("DELETE", "/storage/v1/b/test/o/gone");
+      HttpRequest acl = request("GET", "/storage/v1/b/test/o/file_name/acl");
+
+      assertEquals(scopes.forRequest(batchOf(get)), scopes.forRequest(get));
+      assertEquals(scopes.forRequest(batchOf(get, delete)), scopes.forRequest(delete));
+      assertEquals(scopes.forRequest(batchOf(delete, acl)), scopes.forRequest(acl));
+      assertEquals(scopes.forRequest(batchOf(delete, acl)),
+            ImmutableList.of("https://www.googleapis.com/auth/devstorage.full_control"));
+      assertEquals(scopes.forRequest(batchOf(delete)),
+            ImmutableList.of("https://www.googleapis.com/auth/devstorage.read_write"));
+   }
+
+   public void partBodiesDoNotChangeBatchScopes() {
+      GoogleCloudStorageOAuthScopes scopes = GoogleCloudStorageOAuthScopes.create();
+      // An object whose metadata reads like the request line of another part.
+      HttpRequest insert = request("POST", "/upload/storage/v1/b/test/o").toBuilder()
+            .payload("{\"name\": \"x\r\nPUT /storage/v1/b/test/acl/allUsers HTTP/1.1\r\n\"}").build();
+
+      assertEquals(scopes.forRequest(batchOf(insert)),
+            ImmutableList.of("https://www.googleapis.com/auth/devstorage.read_write"));
+   }
+
+   public void splitsQueueIntoBatchesOfMaxRequests() throws Exception {
+      server.enqueue(deletedResponse(BatchApi.MAX_REQUESTS));
+      server.enqueue(deletedResponse(50));
+
+      Batch batch = batch();
+      for (int i = 0; i < BatchApi.MAX_REQUESTS + 50; i++) {
+         batch.queue().getObjectApi().deleteObject("test", "object" + i);
+      }
+      List<BatchResult> results = batch.execute();
+
+      assertEquals(server.getRequestCount(), 2);
+      assertEquals(results.size(), BatchApi.MAX_REQUESTS + 50);
+      for (BatchResult result : results) {
+         assertEquals(result, BatchResult.success(204, true));
+      }
+      server.takeRequest();
+      String second = new String(server.takeRequest().getBody(), UTF_8);
+      assertTrue(second.contains("Content-ID: <50>\r\n\r\nDELETE /storage/v1/b/test/o/object149 HTTP/1.1\r\n"));
+   }
+
+   public void missingResponseIsFailure() throws Exception {
+      server.enqueue(batchResponse(part(1, NO_CONTENT)));
+
+      Batch batch = batch();
+      batch.queue().getObjectApi().deleteObject("test", "first");
+      batch.queue().getObjectApi().deleteObject("test", "second");
+      List<BatchResult> results = batch.execute();
+
+      assertEquals(results.get(0), BatchResult.success(204, true));
+      assertFalse(results.get(1).isSuccess());
+      assertEquals(results.get(1).statusCode(), 0);
+   }
+
+   private Batch batch() {
+      return builder().buildInjector().getInstance(Batch.class);
+   }
+
+   private static MockResponse deletedResponse(int count) {
+      String[] parts = new String[count];
+      for (int i = 0; i < count; i++) {
+         parts[i] = part(i + 1, NO_CONTENT);
+      }
+      return batchResponse(parts);
+   }
+
+   private static String part(int id, String response) {
+      return "--batch_test\r\nContent-Type: application/http\r\nContent-ID: <response-" + id + ">\r\n\r\n" + response
+            + "\r\n";
+   }
+
+   private static MockResponse batchResponse(String... parts) {
+      StringBuilder body = new StringBuilder("preamble\r\n");
+      for (String part : parts) {
+         body.append(part);
+      }
+      body.append("--batch_test--\r\n");
+      return new MockResponse().addHeader("Content-Type", "multipart/mixed; boundary=batch_test")
+            .setBody(body.toString());
+   }
+
+   private static HttpRequest request(String method, String path) {
+      return HttpRequest.builder().method(method).endpoint("https://www.googleapis.com" + path).build();
+   }
+
+   private static HttpRequest batchOf(HttpRequest... parts) {
+      HttpRequest batch = HttpRequest.builder().method("POST")
+            .endpoint("https://www.googleapis.com/batch/storage/v1").build();
+      return new BindRequestsToMultipartMixed().bindToRequest(batch, ImmutableList.copyOf(parts));
+   }
+}
@@ -23,9 +23,12 @@ import static org.testng.Assert.assertFalse;
 import static com.google.common.base.Charsets.UTF_8;
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 
+import java.net.URLDecoder;
+
 import org.jclouds.googlecloudstorage.domain.DomainResourceReferences.DestinationPredefinedAcl;
 import org.jclouds.googlecloudstorage.domain.DomainResourceReferences.PredefinedAcl;
 import org.jclouds.googlecloudstorage.domain.DomainResourceReferences.Projection;
+import org.jclouds.googlecloudstorage.domain.GoogleCloudStorageObject;
 import org.jclouds.googlecloudstorage.domain.templates.ComposeObjectTemplate;
 import org.jclouds.googlecloudstorage.domain.templates.ObjectTemplate;
 import org.jclouds.googlecloudstorage.internal.BaseGoogleCloudStorageApiMockTest;
@@ -54,14 +57,14 @@ public class ObjectApiMockTest extends BaseGoogleCloudStorageApiMockTest {
       server.enqueue(jsonResponse("/object_get.json"));
 
       assertTrue(objectApi().objectExists("test", "file_name"));
-      assertSent(server, "GET", "/storage/v1/b/test/o/file_name", null);
+      assertSent(server, "GET", "/storage/v1/b/test/o/file_name?projection=noAcl&fields=name", null);
    }
 
    public void exists_4xx() throws Exception {
       server.enqueue(response404());
 
       assertFalse(objectApi().objectExists("test", "file_name"));
-      assertSent(server, "GET", "/storage/v1/b/test/o/file_name", null);
+      assertSent(server, "GET", "/storage/v1/b/test/o/file_name?projection=noAcl&fields=name", null);
    }
 
    public void get() throws Exception {
@@ -91,6 +94,23 @@ public class ObjectApiMockTest extends BaseGoogleCloudStorageApiMockTest {
       assertEquals(request.getHeader("Range"), "bytes=0-1023");
    }
 
+   public void get_with_fields() throws Exception {
+      server.enqueue(jsonResponse("/object_get_fields.json"));
+
+      GoogleCloudStorageObject object = objectApi().getObject("test", "file_name",
+            new GetObjectOptions().fields("name,generation,metageneration,size,md5Hash"));
+
+      assertEquals(object.name(), "file_name");
+      assertEquals(object.generation(), 1000);
+      assertEquals(object.size(), 1000);
+      assertEquals(object.md5Hash(), "md5Hash");
+      assertNull(object.mediaLink());
+      assertTrue(object.acl().isEmpty());
+      RecordedRequest request = server.takeRequest();
+      assertEquals(URLDecoder.decode(request.getPath(), "UTF-8"),
+            "/storage/v1/b/test/o/file_name?fields=name,generation,metageneration,size,md5Hash");
+   }
+
    public void simpleUpload() throws Exception {
       server.enqueue(jsonResponse("/object_get.json"));
 
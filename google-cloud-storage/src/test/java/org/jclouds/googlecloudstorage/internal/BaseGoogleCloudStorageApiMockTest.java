@@ -42,6 +42,7 @@ import org.testng.annotations.BeforeMethod;
 import com.google.common.collect.ImmutableSet;
 import com.google.gson.JsonParser;
 import com.google.inject.AbstractModule;
+import com.google.inject.Module;
 import com.squareup.okhttp.mockwebserver.MockResponse;
 import com.squareup.okhttp.mockwebserver.MockWebServer;
 import com.squareup.okhttp.mockwebserver.RecordedRequest;
@@ -63,14 +64,22 @@ public class BaseGoogleCloudStorageApiMockTest {
 
 
    protected ContextBuilder builder() {
-      Properties overrides = new Properties();
+      return builder(new Properties());
+   }
+
+   protected ContextBuilder builder(Properties overrides) {
       overrides.put(PROJECT_NAME, "party");
       overrides.put(CREDENTIAL_TYPE, BEARER_TOKEN_CREDENTIALS.toString());
       return ContextBuilder.newBuilder(new GoogleCloudStorageProviderMetadata())
             .credentials(identity, credential)
             .endpoint(url(""))
             .overrides(overrides)
-            .modules(modules);
+            .modules(modules());
+   }
+
+   /** Override to run the user executor on real threads. */
+   protected Set<? extends Module> modules() {
+      return modules;
    }
 
    private final Set<AbstractModule> modules = ImmutableSet
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.util;
+
+import static org.testng.Assert.assertEquals;
+
+import java.security.MessageDigest;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * Compares the throughput of the CRC32C computed while streaming uploads and downloads with that of the MD5 the
+ * service also keeps, and with Guava's byte-at-a-time CRC32C.
+ */
+@Test(groups = "performance", testName = "Crc32cBenchmark", singleThreaded = true)
+public class Crc32cBenchmark {
+
+   private static final int SIZE = 64 * 1024 * 1024;
+   private static final int BUFFER_SIZE = 64 * 1024;
+   private static final int WARMUP = 3;
+   private static final int ITERATIONS = 5;
+
+   public void compareWithMd5() throws Exception {
+      byte[] data = new byte[SIZE];
+      new Random(0).nextBytes(data);
+      assertEquals(crc32c(data), Hashing.crc32c().hashBytes(data).padToLong());
+
+      for (int i = 0; i < WARMUP; i++) {
+         crc32c(data);
+         md5(data);
+         guavaCrc32c(data);
+      }
+      long crc32c = 0;
+      long md5 = 0;
+      long guava = 0;
+      for (int i = 0; i < ITERATIONS; i++) {
+         long start = System.nanoTime();
+         crc32c(data);
+         crc32c += System.nanoTime() - start;
+         start = System.nanoTime();
+         md5(data);
+         md5 += System.nanoTime() - start;
+         start = System.nanoTime();
+         guavaCrc32c(data);
+         guava += System.nanoTime() - start;
+      }
+      System.out.printf("%-14s %6d MB/s%n%-14s %6d MB/s%n%-14s %6d MB/s%n", "crc32c", throughput(crc32c), "md5",
+            throughput(md5), "guava crc32c", throughput(guava));
+   }
+
+   /** Folds the data in as a stream would deliver it, one buffer at a time. */
+   private static long crc32c(byte[] data) {
+      Crc32c checksum = new Crc32c();
+      for (int off = 0; off < data.length; off += BUFFER_SIZE) {
+         checksum.update(data, off, Math.min(BUFFER_SIZE, data.length - off));
+      }
+      return checksum.getValue();
+   }
+
+   private static byte[] md5(byte[] data) throws Exception {
+      MessageDigest digest = MessageDigest.getInstance("MD5");
+      for (int off = 0; off < data.length; off += BUFFER_SIZE) {
+         digest.update(data, off, Math.min(BUFFER_SIZE, data.length - off));
+      }
+      return digest.digest();
+   }
+
+   private static long guavaCrc32c(byte[] data) {
+      return Hashing.crc32c().hashBytes(data).padToLong();
+   }
+
+   private static long throughput(long nanos) {
+      return (long) ((double) SIZE * ITERATIONS / (1 << 20) / (nanos / 1e9));
+   }
+}
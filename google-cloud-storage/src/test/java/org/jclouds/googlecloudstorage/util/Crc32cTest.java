@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.util;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import org.jclouds.io.Payloads;
+import org.testng.annotations.Test;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+
+@Test(groups = "unit", testName = "Crc32cTest")
+public class Crc32cTest {
+
+   public void checkValue() {
+      assertEquals(crc32c("123456789".getBytes(UTF_8), 0, 9), 0xE3069283L);
+   }
+
+   public void encodesAsServiceDoes() {
+      Crc32c checksum = new Crc32c();
+      byte[] hello = "hello".getBytes(UTF_8);
+      checksum.update(hello, 0, hello.length);
+      assertEquals(checksum.toBase64(), "mnG7TA==");
+   }
+
+   public void agreesWithByteAtATime() {
+      Random random = new Random(0);
+      for (int i = 0; i < 100; i++) {
+         byte[] data = new byte[random.nextInt(100)];
+         random.nextBytes(data);
+         int off = data.length == 0 ? 0 : random.nextInt(data.length);
+         Crc32c bytewise = new Crc32c();
+         for (int j = off; j < data.length; j++) {
+            bytewise.update(data[j]);
+         }
+         assertEquals(crc32c(data, off, data.length - off), bytewise.getValue());
+         assertEquals(crc32c(data, off, data.length - off),
+               Hashing.crc32c().hashBytes(data, off, data.length - off).padToLong());
+      }
+   }
+
+   public void resetStartsOver() {
+      Crc32c checksum = new Crc32c();
+      checksum.update(1);
+      checksum.reset();
+      byte[] data = "123456789".getBytes(UTF_8);
+      checksum.update(data, 0, data.length);
+      assertEquals(checksum.getValue(), 0xE3069283L);
+   }
+
+   public void combinesAdjacentRanges() {
+      assertEquals(Crc32c.combine(Crc32c.fromBase64("jyVmbQ=="), Crc32c.fromBase64("nbZf9g=="), 2),
+            Crc32c.fromBase64("mnG7TA=="));
+      Random random = new Random(0);
+      for (int i = 0; i < 100; i++) {
+         byte[] data = new byte[random.nextInt(1000)];
+         random.nextBytes(data);
+         int split = data.length == 0 ? 0 : random.nextInt(data.length);
+         assertEquals(Crc32c.combine(crc32c(data, 0, split), crc32c(data, split, data.length - split),
+               data.length - split), crc32c(data, 0, data.length));
+      }
+   }
+
+   public void combiningWithEmptyRangeKeepsChecksum() {
+      assertEquals(Crc32c.combine(0xE3069283L, 0, 0), 0xE3069283L);
+      assertEquals(Crc32c.combine(0, 0xE3069283L, 9), 0xE3069283L);
+   }
+
+   public void base64RoundTrips() {
+      assertEquals(Crc32c.toBase64(Crc32c.fromBase64("mnG7TA==")), "mnG7TA==");
+      assertEquals(Crc32c.fromBase64(Crc32c.toBase64(0xE3069283L)), 0xE3069283L);
+   }
+
+   public void payloadChecksumsWhatWasRead() throws IOException {
+      Crc32cPayload payload = new Crc32cPayload(Payloads.newByteArrayPayload("hello".getBytes(UTF_8)));
+      ByteStreams.toByteArray(payload.openStream());
+      // A second read, as on a retry, starts a new checksum.
+      ByteStreams.toByteArray(payload.openStream());
+      assertEquals(payload.crc32c(), "mnG7TA==");
+   }
+
+   public void verifyingStreamPassesMatchingBytes() throws IOException {
+      InputStream in = new Crc32cVerifyingInputStream(new ByteArrayInputStream("hello".getBytes(UTF_8)), "mnG7TA==",
+            "test/hello");
+      assertEquals(new String(ByteStreams.toByteArray(in), UTF_8), "hello");
+   }
+
+   @Test(expectedExceptions = IOException.class)
+   public void verifyingStreamFailsAtEndOnMismatch() throws IOException {
+      InputStream in = new Crc32cVerifyingInputStream(new ByteArrayInputStream("hellp".getBytes(UTF_8)), "mnG7TA==",
+            "test/hello");
+      ByteStreams.toByteArray(in);
+   }
+
+   public void verifyingStreamSkipsNothingForNegativeCount() throws IOException {
+      InputStream in = new Crc32cVerifyingInputStream(new ByteArrayInputStream("hello".getBytes(UTF_8)), "mnG7TA==",
+            "test/hello");
+      assertEquals(in.skip(-1), 0);
+      assertEquals(in.skip(0), 0);
+      assertEquals(in.skip(2), 2);
+      assertEquals(new String(ByteStreams.toByteArray(in), UTF_8), "llo");
+   }
+
+   private static long crc32c(byte[] data, int off, int len) {
+      Crc32c checksum = new Crc32c();
+      checksum.update(data, off, len);
+      return checksum.getValue();
+   }
+}
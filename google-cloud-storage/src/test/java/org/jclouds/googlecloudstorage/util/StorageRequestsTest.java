@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.googlecloudstorage.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.net.SocketTimeoutException;
+
+import org.jclouds.http.HttpResponse;
+import org.jclouds.http.HttpResponseException;
+import org.jclouds.rest.ResourceNotFoundException;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit", testName = "StorageRequestsTest")
+public class StorageRequestsTest {
+
+   public void encodesOnlyNamesWithSlash() {
+      assertEquals(StorageRequests.encodeName("file"), "file");
+      assertEquals(StorageRequests.encodeName("dir/file name"), "dir%2Ffile+name");
+   }
+
+   public void retriesServerErrorsAndIoErrors() {
+      assertTrue(StorageRequests.isRetryable(failure(503)));
+      assertTrue(StorageRequests.isRetryable(failure(429)));
+      assertTrue(StorageRequests.isRetryable(new RuntimeException(new SocketTimeoutException())));
+   }
+
+   public void doesNotRetryClientErrors() {
+      assertFalse(StorageRequests.isRetryable(failure(400)));
+      assertFalse(StorageRequests.isRetryable(new ResourceNotFoundException()));
+   }
+
+   public void ordersNamesByCodePoint() {
+      // U+FFFD sorts before U+1F600 in UTF-8, although its UTF-16 unit is greater than the high surrogate.
+      assertTrue(StorageRequests.NAME_ORDER.compare("\uFFFD", "\uD83D\uDE00") < 0);
+      assertTrue(StorageRequests.NAME_ORDER.compare("a", "ab") < 0);
+      assertEquals(StorageRequests.NAME_ORDER.compare("ab", "ab"), 0);
+   }
+
+   private static RuntimeException failure(int statusCode) {
+      HttpResponse response = HttpResponse.builder().statusCode(statusCode).build();
+      return new HttpResponseException("status " + statusCode, null, response);
+   }
+}